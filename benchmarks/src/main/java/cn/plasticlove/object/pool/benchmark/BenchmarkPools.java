@@ -0,0 +1,77 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.ObtainPolicy;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.impl.AbstractObjectPoolFactory;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPoolConfig;
+
+import java.util.List;
+
+/**
+ * 测试用的对象池和对象工厂
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+final class BenchmarkPools {
+
+    private BenchmarkPools() {
+    }
+
+    /**
+     * 创建测试用的对象池
+     *
+     * @param policy      获取策略，lifo或lru
+     * @param maxTotal    最大容量
+     * @param minIdel     最小空闲对象数
+     * @param maxWaitTime 最长阻塞时间
+     * @param maxLiveTime 空闲对象的最长生命周期
+     * @param created     不为null时记录创建的每一个对象
+     * @return 对象池
+     */
+    static SimpleBaseObjectPool<Object> newPool(String policy, int maxTotal, int minIdel, long maxWaitTime,
+                                                long maxLiveTime, List<PooledObject<Object>> created) {
+        return new SimpleBaseObjectPool<>(newFactory(created), newConfig(policy, maxTotal, minIdel, maxWaitTime, maxLiveTime));
+    }
+
+    /**
+     * 创建测试用的对象池配置
+     *
+     * @param policy      获取策略，lifo或lru
+     * @param maxTotal    最大容量
+     * @param minIdel     最小空闲对象数
+     * @param maxWaitTime 最长阻塞时间
+     * @param maxLiveTime 空闲对象的最长生命周期
+     * @return 对象池配置
+     */
+    static SimpleBaseObjectPoolConfig newConfig(String policy, int maxTotal, int minIdel, long maxWaitTime,
+                                                long maxLiveTime) {
+        return new SimpleBaseObjectPoolConfig(new ObtainPolicy(policy), maxWaitTime, maxLiveTime, maxTotal, minIdel, true);
+    }
+
+    /**
+     * 创建测试用的对象工厂
+     *
+     * @param created 不为null时记录创建的每一个对象
+     * @return 对象工厂
+     */
+    static AbstractObjectPoolFactory<Object> newFactory(final List<PooledObject<Object>> created) {
+        return new AbstractObjectPoolFactory<Object>() {
+            @Override
+            public Object create() {
+                return new Object();
+            }
+
+            @Override
+            public PooledObject<Object> wrap(Object o) {
+                PooledObject<Object> p = new PooledObject<>(o);
+                if (created != null) {
+                    created.add(p);
+                }
+                return p;
+            }
+        };
+    }
+}
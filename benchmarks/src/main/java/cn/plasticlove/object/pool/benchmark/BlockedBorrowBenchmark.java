@@ -0,0 +1,55 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对象池耗尽时的阻塞等待测试
+ * 线程数远多于对象池容量，大部分获取都要在getObject(long)中等待其他线程返还，
+ * 采样模式下可以看到等待时间的分布。
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class BlockedBorrowBenchmark {
+
+    @Param({"lifo", "lru"})
+    private String policy;
+
+    @Param({"1", "4"})
+    private int poolSize;
+
+    @Param({"1000", "10000"})
+    private long holdTokens;
+
+    private SimpleBaseObjectPool<Object> pool;
+
+    @Setup
+    public void setUp() {
+        pool = BenchmarkPools.newPool(policy, poolSize, poolSize, 60_000L, 60_000L, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Object borrowBlocked() throws Exception {
+        Object o = pool.getObject();
+        Blackhole.consumeCPU(holdTokens);
+        pool.returnObject(o);
+        return o;
+    }
+}
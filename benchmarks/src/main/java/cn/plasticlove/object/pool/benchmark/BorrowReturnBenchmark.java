@@ -0,0 +1,69 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 获取、返还对象的吞吐量测试
+ * 对象池容量足够，不会进入阻塞等待，测量的是获取和返还本身的开销。
+ * holdTokens为借出期间消耗的CPU量（{@link Blackhole#consumeCPU(long)}），模拟对象的持有时间。
+ * <p>
+ * 直接运行main方法会依次以1（无竞争）、4、16、64个线程执行。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BorrowReturnBenchmark {
+
+    @Param({"lifo", "lru"})
+    private String policy;
+
+    @Param({"8", "64", "1024"})
+    private int poolSize;
+
+    @Param({"0", "100"})
+    private long holdTokens;
+
+    private SimpleBaseObjectPool<Object> pool;
+
+    @Setup
+    public void setUp() {
+        pool = BenchmarkPools.newPool(policy, poolSize, poolSize, 10_000L, 60_000L, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Object borrowReturn() throws Exception {
+        Object o = pool.getObject();
+        Blackhole.consumeCPU(holdTokens);
+        pool.returnObject(o);
+        return o;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(BorrowReturnBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
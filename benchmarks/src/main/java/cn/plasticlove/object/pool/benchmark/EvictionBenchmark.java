@@ -0,0 +1,68 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 清除过期空闲对象（removeTimeOutedObject）的耗时测试
+ * 每次调用前向对象池放入objects个空闲对象，其中expiredPercent比例的对象已经过期：
+ * 先放入过期的对象，等待超过最长生命周期后再放入其余的对象。
+ * 清除只检查可能过期的对象，耗时应当和过期对象数成正比，expiredPercent为0时和对象总数无关。
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EvictionBenchmark {
+
+    @Param({"lifo", "lru"})
+    private String policy;
+
+    @Param({"10000", "100000", "1000000"})
+    private int objects;
+
+    @Param({"0", "10", "100"})
+    private int expiredPercent;
+
+    /**
+     * 空闲对象的最长生命周期，要大于放入其余对象的耗时，否则先放入的未过期对象在测试时也已经过期
+     */
+    private static final long MAX_LIVE_MILLIS = 5000L;
+
+    private SimpleBaseObjectPool<Object> pool;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws InterruptedException {
+        //定时任务延后10s才第一次清除，不会在测试期间清除对象
+        pool = BenchmarkPools.newPool(policy, objects, 0, 10_000L, MAX_LIVE_MILLIS, null);
+        int expired = (int) ((long) objects * expiredPercent / 100);
+        for (int i = 0; i < expired; i++) {
+            pool.addObject();
+        }
+        if (expired > 0) {
+            Thread.sleep(MAX_LIVE_MILLIS + 100);
+        }
+        for (int i = expired; i < objects; i++) {
+            pool.addObject();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public int removeTimeOutedObject() throws Exception {
+        pool.removeTimeOutedObject();
+        return pool.getActiveNum();
+    }
+}
@@ -0,0 +1,130 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.impl.FifoIdleObjectStore;
+import cn.plasticlove.object.pool.impl.IdleObjectStore;
+import cn.plasticlove.object.pool.impl.LifoIdleObjectStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 空闲对象容器的吞吐量测试
+ * 对比{@link LinkedBlockingDeque}和无锁的{@link LifoIdleObjectStore}、{@link FifoIdleObjectStore}
+ * 在多线程同时取出、放回时的吞吐量。
+ * <p>
+ * 直接运行main方法会依次以8、32、128个线程执行。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdleObjectStoreBenchmark {
+
+    @Param({"deque-lifo", "deque-fifo", "store-lifo", "store-fifo"})
+    private String store;
+
+    @Param({"64", "1024"})
+    private int capacity;
+
+    private Store<Object> idle;
+
+    @Setup
+    public void setUp() {
+        switch (store) {
+            case "deque-lifo":
+                idle = new DequeStore<>(capacity, true);
+                break;
+            case "deque-fifo":
+                idle = new DequeStore<>(capacity, false);
+                break;
+            case "store-lifo":
+                idle = new IdleStore<>(new LifoIdleObjectStore<>(capacity));
+                break;
+            default:
+                idle = new IdleStore<>(new FifoIdleObjectStore<>(capacity));
+                break;
+        }
+        for (int i = 0; i < capacity; i++) {
+            idle.offer(new PooledObject<Object>(new Object()));
+        }
+    }
+
+    @Benchmark
+    public PooledObject<Object> pollAndOffer() {
+        PooledObject<Object> p = idle.poll();
+        if (p != null) {
+            idle.offer(p);
+        }
+        return p;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{8, 32, 128}) {
+            Options options = new OptionsBuilder()
+                    .include(IdleObjectStoreBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    /**
+     * 统一两种容器的接口
+     */
+    interface Store<T> {
+        PooledObject<T> poll();
+
+        boolean offer(PooledObject<T> p);
+    }
+
+    static class DequeStore<T> implements Store<T> {
+        private final LinkedBlockingDeque<PooledObject<T>> deque;
+        private final boolean lifo;
+
+        DequeStore(int capacity, boolean lifo) {
+            this.deque = new LinkedBlockingDeque<>(capacity);
+            this.lifo = lifo;
+        }
+
+        @Override
+        public PooledObject<T> poll() {
+            return deque.pollFirst();
+        }
+
+        @Override
+        public boolean offer(PooledObject<T> p) {
+            return lifo ? deque.offerFirst(p) : deque.offerLast(p);
+        }
+    }
+
+    static class IdleStore<T> implements Store<T> {
+        private final IdleObjectStore<T> store;
+
+        IdleStore(IdleObjectStore<T> store) {
+            this.store = store;
+        }
+
+        @Override
+        public PooledObject<T> poll() {
+            return store.poll();
+        }
+
+        @Override
+        public boolean offer(PooledObject<T> p) {
+            return store.offer(p);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPoolConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 补充最小空闲对象（ensureMinIdel）对获取对象耗时的影响
+ * 每次调用前清空空闲对象，调用时的获取会触发把空闲对象补充到minIdel个。
+ * refillConcurrency为0时由获取对象的线程直接补充，大于0时由后台线程补充，获取对象的线程只新建自己需要的一个对象。
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefillBenchmark {
+
+    @Param({"lifo", "lru"})
+    private String policy;
+
+    @Param({"16", "256", "4096"})
+    private int minIdel;
+
+    @Param({"0", "2"})
+    private int refillConcurrency;
+
+    private SimpleBaseObjectPool<Object> pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleBaseObjectPoolConfig config = BenchmarkPools.newConfig(policy, minIdel + 1, minIdel, 10_000L, 60_000L);
+        config.setRefillConcurrency(refillConcurrency);
+        pool = new SimpleBaseObjectPool<>(BenchmarkPools.newFactory(null), config);
+    }
+
+    @Setup(Level.Invocation)
+    public void drain() {
+        pool.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public Object borrowAndRefill() throws Exception {
+        Object o = pool.getObject();
+        pool.returnObject(o);
+        return o;
+    }
+}
@@ -0,0 +1,90 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.impl.AbstractObjectPoolFactory;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPoolConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 返还时重置对象的耗时测试
+ * 对象是一个列表，借出期间写入entries个元素，返还时由{@link AbstractObjectPoolFactory#resetObject(PooledObject)}清空。
+ * resetConcurrency为0时在返还的线程中重置，大于0时交给后台线程重置；
+ * 测量的是调用方看到的一次获取、写入、返还的耗时分布，后台重置的耗时不计入。
+ * <p>
+ * 直接运行main方法会依次以1、4、16个线程执行。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResetBenchmark {
+
+    @Param({"0", "2"})
+    private int resetConcurrency;
+
+    @Param({"16", "4096"})
+    private int entries;
+
+    private SimpleBaseObjectPool<List<Integer>> pool;
+
+    @Setup
+    public void setUp() {
+        SimpleBaseObjectPoolConfig config = BenchmarkPools.newConfig("lifo", 64, 64, 10_000L, 60_000L);
+        config.setResetConcurrency(resetConcurrency);
+        pool = new SimpleBaseObjectPool<>(new AbstractObjectPoolFactory<List<Integer>>() {
+            @Override
+            public List<Integer> create() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public PooledObject<List<Integer>> wrap(List<Integer> list) {
+                return new PooledObject<>(list);
+            }
+
+            @Override
+            public void resetObject(PooledObject<List<Integer>> p) {
+                p.getObject().clear();
+            }
+        }, config);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public List<Integer> borrowFillReturn() throws Exception {
+        List<Integer> list = pool.getObject();
+        for (int i = 0; i < entries; i++) {
+            list.add(i);
+        }
+        pool.returnObject(list);
+        return list;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            new Runner(new OptionsBuilder()
+                    .include(ResetBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
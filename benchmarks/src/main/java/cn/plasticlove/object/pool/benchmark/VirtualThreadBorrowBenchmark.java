@@ -0,0 +1,147 @@
+package cn.plasticlove.object.pool.benchmark;
+
+import cn.plasticlove.object.pool.ObtainPolicy;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.impl.AbstractObjectPoolFactory;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
+import cn.plasticlove.object.pool.impl.SimpleBaseObjectPoolConfig;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大量虚拟线程同时获取对象的测试
+ * 每次调用提交borrowers个任务，每个任务获取一个对象、持有holdMillis毫秒后返还，测量全部完成的时间。
+ * 对象工厂创建对象时休眠createMillis毫秒，模拟建立连接等I/O。
+ * <p>
+ * 在JDK 21及以上通过反射使用{@code Executors.newVirtualThreadPerTaskExecutor()}，
+ * 低版本退回到{@link #PLATFORM_THREADS}个平台线程，结果只能作为对照。
+ * 加上-Djdk.tracePinnedThreads=full可以检查虚拟线程是否被占住载体线程。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBorrowBenchmark {
+    /**
+     * 没有虚拟线程时使用的平台线程数
+     */
+    private static final int PLATFORM_THREADS = 512;
+
+    @Param({"100000"})
+    private int borrowers;
+
+    @Param({"64"})
+    private int poolSize;
+
+    @Param({"0", "1"})
+    private long holdMillis;
+
+    @Param({"0", "5"})
+    private long createMillis;
+
+    private SimpleBaseObjectPool<Object> pool;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        SimpleBaseObjectPoolConfig config = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                -1, 60_000L, poolSize, poolSize / 4, true);
+        pool = new SimpleBaseObjectPool<>(newSlowFactory(createMillis), config);
+        executor = newBorrowerExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        pool.close();
+    }
+
+    @Benchmark
+    public void borrowAll() throws Exception {
+        final CountDownLatch done = new CountDownLatch(borrowers);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < borrowers; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Object o = pool.getObject();
+                        if (holdMillis > 0) {
+                            Thread.sleep(holdMillis);
+                        }
+                        pool.returnObject(o);
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " borrowers failed");
+        }
+    }
+
+    /**
+     * 创建执行获取任务的线程池，JDK 21及以上每个任务一个虚拟线程
+     *
+     * @return 线程池
+     */
+    static ExecutorService newBorrowerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            System.err.println("virtual threads are not available, falling back to " + PLATFORM_THREADS + " platform threads");
+            return Executors.newFixedThreadPool(PLATFORM_THREADS);
+        }
+    }
+
+    /**
+     * 创建对象时休眠的对象工厂
+     *
+     * @param createMillis 创建一个对象的耗时
+     * @return 对象工厂
+     */
+    static AbstractObjectPoolFactory<Object> newSlowFactory(final long createMillis) {
+        return new AbstractObjectPoolFactory<Object>() {
+            @Override
+            public Object create() throws Exception {
+                if (createMillis > 0) {
+                    Thread.sleep(createMillis);
+                }
+                return new Object();
+            }
+
+            @Override
+            public PooledObject<Object> wrap(Object o) {
+                return new PooledObject<>(o);
+            }
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(VirtualThreadBorrowBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -6,6 +6,10 @@ import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
 import cn.plasticlove.object.pool.exception.ObjectDestroyException;
 import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 这是对象池的基本接口。提供了实现对象池的一些基本功能。
  * 对象池里的实例主要有对象池工厂 {@link ObjectPoolFactory}创建.
@@ -45,6 +49,57 @@ public interface BaseObjectPool<T> {
      */
     public void returnObject(T obj) throws ObjectDestroyException, IllegalObjectStateException;
 
+    /**
+     * 从对象池中获取实例的包装类
+     * 和{@link BaseObjectPool#getObject()}相同，但是返回包装类本身，
+     * 使用完毕后通过{@link BaseObjectPool#returnPooledObject(PooledObject)}返还，返还时不需要再查找对象
+     *
+     * @return 对象实例的包装类，通过{@link PooledObject#getObject()}获取实际对象
+     * @throws NoMoreIdleSpaceException 当空闲队列为空时抛出异常
+     */
+    public PooledObject<T> getPooledObject() throws NoMoreIdleSpaceException;
+
+    /**
+     * 将{@link BaseObjectPool#getPooledObject()}获取的包装类返还到对象池中
+     *
+     * @param p 待返还的包装类
+     * @throws IllegalObjectStateException 当待返还的对象不是正在使用的对象，抛出此异常.
+     * @throws ObjectDestroyException      当待返还的实例因为某种原因（比如被其他线程从对象池中移除）不在对象池中，直接删除
+     */
+    public void returnPooledObject(PooledObject<T> p) throws ObjectDestroyException, IllegalObjectStateException;
+
+    /**
+     * 异步获取实例
+     * 有空闲对象时返回已经完成的future；否则按先后顺序排队等待，不阻塞调用线程，
+     * 其他线程返还对象时直接交给等待最久的请求。
+     * 等待超过最长阻塞时间后future以{@link NoMoreIdleSpaceException}失败，取消future会退出等待。
+     *
+     * @return 获取到对象时完成的future
+     */
+    public CompletableFuture<T> borrowAsync();
+
+    /**
+     * 一次获取多个实例
+     * 要么获取到全部n个实例，要么一个也不获取：凑不齐时已经取到的实例会放回对象池。
+     * 同一时间只有一个批量获取在凑齐实例，多个批量获取之间不会因为各自持有一部分实例而互相等待
+     *
+     * @param n                实例数，不能超过对象池的最大容量
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return n个对象实例
+     * @throws NoMoreIdleSpaceException 等待超时仍然凑不齐n个实例时抛出异常
+     */
+    public List<T> getObjects(int n, long maxTimeWaitMills) throws NoMoreIdleSpaceException;
+
+    /**
+     * 一次返还多个实例
+     * 先检查所有实例，都可以返还时再一起放回空闲队列
+     *
+     * @param objs 待返还的对象
+     * @throws IllegalObjectStateException 当其中有对象不是正在使用的对象，抛出此异常，所有对象都不返还.
+     * @throws ObjectDestroyException      销毁放不回空闲队列的对象时出现异常
+     */
+    public void returnObjects(Collection<T> objs) throws ObjectDestroyException, IllegalObjectStateException;
+
     /**
      * 获取对象池所能承载的最大对象实例数
      *
@@ -60,6 +115,14 @@ public interface BaseObjectPool<T> {
      */
     public int getActiveNum();
 
+    /**
+     * 获取对象池的运行指标
+     * 包括获取对象、阻塞等待、创建和销毁对象的耗时分布，对象的持有时间，以及超时、创建、清除的次数
+     *
+     * @return 对象池的运行指标
+     */
+    public PoolMetrics getMetrics();
+
     /**
      * 关闭对象池
      * 当对象池使用完毕后，不要忘记关闭对象池.
@@ -0,0 +1,140 @@
+package cn.plasticlove.object.pool;
+
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+import cn.plasticlove.object.pool.impl.SimpleKeyedObjectPool;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 按键分组的对象池接口
+ * 每个键有自己的空闲对象和对象数上限，所有键的对象总数受同一个上限限制，
+ * 比如按后端分片分别缓存连接，同时限制到所有分片的连接总数。
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see SimpleKeyedObjectPool 按键分组的对象池的简单实现
+ */
+public interface KeyedObjectPool<K, T> {
+    /**
+     * 获取指定键的实例
+     * 该键没有空闲实例时新建；对象总数达到上限时先销毁最久没有使用的其他键的空闲实例，仍然不够时阻塞等待
+     *
+     * @param key 键
+     * @return 对象实例
+     * @throws NoMoreIdleSpaceException 等待超时仍然没有空闲实例时抛出异常
+     */
+    public T getObject(K key) throws NoMoreIdleSpaceException;
+
+    /**
+     * 获取指定键的实例的包装类
+     * 使用完毕后通过{@link KeyedObjectPool#returnPooledObject(Object, PooledObject)}返还，返还时不需要再查找对象
+     *
+     * @param key 键
+     * @return 对象实例的包装类
+     * @throws NoMoreIdleSpaceException 等待超时仍然没有空闲实例时抛出异常
+     */
+    public PooledObject<T> getPooledObject(K key) throws NoMoreIdleSpaceException;
+
+    /**
+     * 异步获取指定键的实例
+     *
+     * @param key 键
+     * @return 获取到对象时完成的future
+     */
+    public CompletableFuture<T> borrowAsync(K key);
+
+    /**
+     * 将实例返还到指定键下
+     *
+     * @param key 获取实例时的键
+     * @param obj 待返还的对象
+     * @throws IllegalObjectStateException 当待返还的对象不是正在使用的对象，抛出此异常.
+     * @throws ObjectDestroyException      销毁放不回对象池的对象时出现异常
+     */
+    public void returnObject(K key, T obj) throws ObjectDestroyException, IllegalObjectStateException;
+
+    /**
+     * 将{@link KeyedObjectPool#getPooledObject(Object)}获取的包装类返还到指定键下
+     *
+     * @param key 获取实例时的键
+     * @param p   待返还的包装类
+     * @throws IllegalObjectStateException 当待返还的对象不是正在使用的对象，抛出此异常.
+     * @throws ObjectDestroyException      销毁放不回对象池的对象时出现异常
+     */
+    public void returnPooledObject(K key, PooledObject<T> p) throws ObjectDestroyException, IllegalObjectStateException;
+
+    /**
+     * 获取所有键的对象总数上限
+     *
+     * @return 对象总数上限
+     */
+    public int getMaxNum();
+
+    /**
+     * 获取所有键的对象总数，包括空闲和正在使用的对象
+     *
+     * @return 对象总数
+     */
+    public int getTotalNum();
+
+    /**
+     * 获取指定键正在使用的实例数
+     *
+     * @param key 键
+     * @return 正在使用的实例数，没有这个键时返回0
+     */
+    public int getActiveNum(K key);
+
+    /**
+     * 获取指定键的空闲实例数
+     *
+     * @param key 键
+     * @return 空闲实例数，没有这个键时返回0
+     */
+    public int getIdleNum(K key);
+
+    /**
+     * 获取所有用过的键
+     *
+     * @return 所有用过的键
+     */
+    public Set<K> getKeys();
+
+    /**
+     * 获取指定键的运行指标
+     *
+     * @param key 键
+     * @return 运行指标，没有这个键时返回null
+     */
+    public PoolMetrics getMetrics(K key);
+
+    /**
+     * 清除指定键的空闲实例
+     *
+     * @param key 键
+     * @throws ObjectDestroyException
+     */
+    public void clear(K key) throws ObjectDestroyException;
+
+    /**
+     * 清除所有键的空闲实例
+     *
+     * @throws ObjectDestroyException
+     */
+    public void clear() throws ObjectDestroyException;
+
+    /**
+     * 关闭对象池
+     */
+    public void close();
+
+    /**
+     * 判断当前对象池是否已经关闭
+     *
+     * @return
+     */
+    public boolean isClosed();
+}
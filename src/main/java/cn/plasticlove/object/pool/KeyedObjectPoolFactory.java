@@ -0,0 +1,34 @@
+package cn.plasticlove.object.pool;
+
+import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+import cn.plasticlove.object.pool.impl.AbstractKeyedObjectPoolFactory;
+
+/**
+ * 用于创建和销毁按键分组的对象池中对象实例的对象工厂接口.
+ * 和{@link ObjectPoolFactory}相同，只是创建和销毁时多了对象所属的键.
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see AbstractKeyedObjectPoolFactory 对象工厂的一种实现
+ */
+public interface KeyedObjectPoolFactory<K, T> {
+
+    /**
+     * 为指定键创建对象，采用包装类的方式获取创建的对象
+     *
+     * @param key 对象所属的键
+     * @return 创建的包装类对象
+     * @throws Exception 创建对象出现异常时，向上抛出
+     */
+    public PooledObject<T> makeObject(K key) throws Exception;
+
+    /**
+     * 销毁对象
+     *
+     * @param key 对象所属的键
+     * @param obj 待销毁的对象包装类
+     * @throws ObjectDestroyException 销毁对象时出现异常，向上抛出
+     */
+    public void destroyObject(K key, PooledObject<T> obj) throws ObjectDestroyException;
+
+}
@@ -41,4 +41,13 @@ public class ObtainPolicy {
     public void setPolicy(String policy) {
         this.policy = policy;
     }
+
+    /**
+     * 判断是否为LIFO机制，不区分大小写
+     *
+     * @return 是否为LIFO机制
+     */
+    public boolean isLifo() {
+        return LIFO.equalsIgnoreCase(policy);
+    }
 }
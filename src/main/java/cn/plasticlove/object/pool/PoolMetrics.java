@@ -0,0 +1,100 @@
+package cn.plasticlove.object.pool;
+
+import cn.plasticlove.object.pool.metrics.LatencyHistogram;
+
+/**
+ * 对象池的运行指标
+ * 耗时类指标以纳秒为单位记录在{@link LatencyHistogram}中，可以查询分位数；
+ * 次数类指标为累计值。
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see BaseObjectPool#getMetrics()
+ **/
+
+public interface PoolMetrics {
+
+    /**
+     * 获取对象的耗时，从调用获取方法到拿到对象，包括阻塞等待和新建对象的时间
+     *
+     * @return 获取对象耗时的分布
+     */
+    public LatencyHistogram getBorrowLatency();
+
+    /**
+     * 对象池耗尽时阻塞等待其他线程返还对象的时间
+     *
+     * @return 阻塞等待时间的分布
+     */
+    public LatencyHistogram getWaitLatency();
+
+    /**
+     * 对象工厂创建对象的耗时，次数即为创建的对象数
+     *
+     * @return 创建对象耗时的分布
+     */
+    public LatencyHistogram getCreateLatency();
+
+    /**
+     * 对象工厂销毁对象的耗时，次数即为销毁的对象数
+     *
+     * @return 销毁对象耗时的分布
+     */
+    public LatencyHistogram getDestroyLatency();
+
+    /**
+     * 对象从借出到返还的持有时间
+     *
+     * @return 持有时间的分布
+     */
+    public LatencyHistogram getHoldTime();
+
+    /**
+     * 获取对象等待超时（抛出{@link cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException}）的次数
+     *
+     * @return 等待超时的次数
+     */
+    public long getTimeoutCount();
+
+    /**
+     * 创建的对象数
+     *
+     * @return 创建的对象数
+     */
+    public long getCreatedCount();
+
+    /**
+     * 因空闲时间超过最长生命周期而被清除的对象数
+     *
+     * @return 被清除的对象数
+     */
+    public long getEvictedCount();
+
+    /**
+     * 借出后超过泄漏检测时间仍没有返还的对象数，同一次借出只计一次
+     *
+     * @return 发现的泄漏对象数
+     */
+    public long getAbandonedCount();
+
+    /**
+     * 激活、校验或钝化失败而被销毁的对象数
+     *
+     * @return 校验失败的对象数
+     */
+    public long getValidationFailedCount();
+
+    /**
+     * 自适应调整中增大最小空闲对象数的次数
+     *
+     * @return 增大最小空闲对象数的次数
+     */
+    public long getAdaptiveGrowCount();
+
+    /**
+     * 自适应调整中减小最小空闲对象数的次数
+     *
+     * @return 减小最小空闲对象数的次数
+     */
+    public long getAdaptiveShrinkCount();
+}
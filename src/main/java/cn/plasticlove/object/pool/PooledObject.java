@@ -1,27 +1,56 @@
 package cn.plasticlove.object.pool;
 
+import cn.plasticlove.object.pool.exception.AbandonedObjectException;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * 对象池对象的包装类，通过包装类给对象赋予其他的属性
  * 比如当前状态{@link PooledObjectState}
  * 以及上次使用时间，用来判断空闲对象是否达到最大空闲时间
+ * <p>
+ * 状态保存为volatile的int，通过{@link AtomicIntegerFieldUpdater}做CAS转换，不使用对象监视器，
+ * 返还和清除时不会因为争夺同一个对象而膨胀成重量级锁
+ * </p>
  *
  * @author luka-seu
  * @version 1.0
  **/
 
 public class PooledObject<T> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<PooledObject> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(PooledObject.class, "state");
     /**
      * 真实的对象池对象
      */
     private final T obj;
     /**
-     * 当前状态{@link PooledObjectState}
+     * 当前状态{@link PooledObjectState}的code
      */
-    private PooledObjectState state;
+    private volatile int state = PooledObjectState.IDEL.getCode();
     /**
      * 上次使用时间
      */
     private long lastUsedTime;
+    /**
+     * 上次借出的时间点，取自{@link System#nanoTime()}
+     */
+    private long lastBorrowTime;
+    /**
+     * 对象所属的对象池，对象登记到对象池时设置，销毁时清空
+     * 返还时直接比较该字段即可判断对象是否还属于对象池，不需要查找map
+     */
+    private volatile BaseObjectPool<T> pool;
+    /**
+     * 对象在空闲对象容器中的位置，放入容器时设置，移除时直接检查该位置，不需要遍历容器
+     * 取出后不清空，检查时如果该位置已经不是这个对象，说明对象不在容器中
+     */
+    private volatile int idleIndex = -1;
+    /**
+     * 抽样记录的借出时的调用栈，没有抽中时为null
+     */
+    private volatile AbandonedObjectException borrowTrace;
 
     /**
      * 获取当前对象状态
@@ -29,7 +58,7 @@ public class PooledObject<T> {
      * @return 当前对象状态
      */
     public PooledObjectState getState() {
-        return state;
+        return PooledObjectState.of(state);
     }
 
     /**
@@ -38,7 +67,19 @@ public class PooledObject<T> {
      * @param state 当前对象状态
      */
     public void setState(PooledObjectState state) {
-        this.state = state;
+        this.state = state.getCode();
+    }
+
+    /**
+     * 当前状态等于expect时设置为update
+     * 返还对象和回收泄漏对象通过它争夺同一个借出的对象，只有一方会成功；重复返还时当前状态已经不是使用中，直接失败
+     *
+     * @param expect 期望的当前状态
+     * @param update 新状态
+     * @return 当前状态不等于expect时返回false
+     */
+    public boolean compareAndSetState(PooledObjectState expect, PooledObjectState update) {
+        return STATE.compareAndSet(this, expect.getCode(), update.getCode());
     }
 
     public PooledObject(T object) {
@@ -60,7 +101,7 @@ public class PooledObject<T> {
      * @return 当前对象是否是空闲状态
      */
     public boolean isIdel() {
-        return this.state == PooledObjectState.IDEL;
+        return this.state == PooledObjectState.IDEL.getCode();
     }
 
     /**
@@ -80,4 +121,76 @@ public class PooledObject<T> {
     public void setLastUsedTime(long lastUsedTime) {
         this.lastUsedTime = lastUsedTime;
     }
+
+    /**
+     * 获取对象上次借出的时间点
+     *
+     * @return 上次借出的时间点，取自{@link System#nanoTime()}
+     */
+    public long getLastBorrowTime() {
+        return lastBorrowTime;
+    }
+
+    /**
+     * 设置对象上次借出的时间点
+     *
+     * @param lastBorrowTime 上次借出的时间点，取自{@link System#nanoTime()}
+     */
+    public void setLastBorrowTime(long lastBorrowTime) {
+        this.lastBorrowTime = lastBorrowTime;
+    }
+
+    /**
+     * 获取对象所属的对象池
+     *
+     * @return 对象所属的对象池，还未登记或者已经销毁时返回null
+     */
+    public BaseObjectPool<T> getPool() {
+        return pool;
+    }
+
+    /**
+     * 设置对象所属的对象池，由对象池在登记和销毁对象时调用
+     *
+     * @param pool 对象所属的对象池
+     */
+    public void setPool(BaseObjectPool<T> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 获取对象在空闲对象容器中的位置
+     *
+     * @return 最近一次放入空闲对象容器时的位置，从未放入时返回-1
+     */
+    public int getIdleIndex() {
+        return idleIndex;
+    }
+
+    /**
+     * 设置对象在空闲对象容器中的位置，由空闲对象容器在放入对象时调用
+     *
+     * @param idleIndex 对象在空闲对象容器中的位置
+     */
+    public void setIdleIndex(int idleIndex) {
+        this.idleIndex = idleIndex;
+    }
+
+    /**
+     * 获取借出时的调用栈
+     *
+     * @return 借出时的调用栈，这次借出没有被抽样时返回null
+     */
+    public AbandonedObjectException getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    /**
+     * 设置借出时的调用栈，由对象池在借出对象时调用
+     *
+     * @param borrowTrace 借出时的调用栈
+     */
+    public void setBorrowTrace(AbandonedObjectException borrowTrace) {
+        this.borrowTrace = borrowTrace;
+    }
 }
@@ -2,7 +2,11 @@ package cn.plasticlove.object.pool;
 
 /**
  * 对象池中对象所处于的状态
- * 包括空闲状态和使用中状态
+ * 包括空闲状态、使用中状态、返还、校验和清除过程中的中间状态，以及销毁后的终止状态
+ * <p>
+ * 状态之间的转换通过{@link PooledObject#compareAndSetState(PooledObjectState, PooledObjectState)}完成，
+ * 只有当前状态符合预期的一方能转换成功，重复返还、清除和借出争夺同一个对象时失败的一方直接放弃
+ * </p>
  * @author luka-seu
  * @version 1.0
  **/
@@ -15,7 +19,31 @@ public enum PooledObjectState {
     /**
      * 使用状态
      */
-    USING(1,"using");
+    USING(1,"using"),
+    /**
+     * 借出后长时间没有返还，被当作泄漏对象回收，之后不能再返还
+     */
+    ABANDONED(2,"abandoned"),
+    /**
+     * 已经从空闲对象中取出，正在作为过期对象清除
+     */
+    EVICTING(3,"evicting"),
+    /**
+     * 已经从空闲对象中取出，正在后台校验，校验通过后恢复为空闲状态
+     */
+    VALIDATING(4,"validating"),
+    /**
+     * 已经返还，正在重置或钝化，放回空闲对象或交给等待的请求后结束
+     */
+    RETURNING(5,"returning"),
+    /**
+     * 已经销毁，之后不能再借出或返还
+     */
+    INVALID(6,"invalid");
+    /**
+     * 按code排列的所有状态
+     */
+    private static final PooledObjectState[] STATES = values();
     /**
      * code
      */
@@ -30,4 +58,23 @@ public enum PooledObjectState {
         this.msg = msg;
     }
 
+    /**
+     * 获取状态的code
+     *
+     * @return code
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * 根据code获取状态
+     *
+     * @param code 状态的code
+     * @return 对应的状态
+     */
+    public static PooledObjectState of(int code) {
+        return STATES[code];
+    }
+
 }
@@ -0,0 +1,19 @@
+package cn.plasticlove.object.pool.exception;
+
+/**
+ * 记录对象被借出时的调用栈，用于报告借出后一直没有返还的泄漏对象
+ * 只在抽样的借出中创建，不会被抛出
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class AbandonedObjectException extends Exception {
+    public AbandonedObjectException() {
+        super();
+    }
+
+    public AbandonedObjectException(String message) {
+        super(message);
+    }
+}
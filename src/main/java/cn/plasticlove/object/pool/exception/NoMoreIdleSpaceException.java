@@ -9,10 +9,35 @@ package cn.plasticlove.object.pool.exception;
  **/
 
 public class NoMoreIdleSpaceException extends Exception {
+    /**
+     * 预先创建的没有调用栈的实例，所有对象池共用
+     */
+    private static final NoMoreIdleSpaceException STACKLESS =
+            new NoMoreIdleSpaceException("there is no more idle object (preallocated, no stack trace)", false);
+
     public NoMoreIdleSpaceException() {
     }
 
     public NoMoreIdleSpaceException(String message) {
         super(message);
     }
+
+    /**
+     * @param message            异常信息
+     * @param writableStackTrace 是否填充调用栈，为false时创建和抛出都不需要遍历调用栈
+     */
+    protected NoMoreIdleSpaceException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * 获取预先创建的没有调用栈的实例
+     * 过载时每秒可能抛出大量异常，填充调用栈的开销会成为瓶颈，共用一个实例抛出时不再分配对象；
+     * 代价是无法从异常中看出在哪里获取失败
+     *
+     * @return 共用的实例
+     */
+    public static NoMoreIdleSpaceException stackless() {
+        return STACKLESS;
+    }
 }
@@ -0,0 +1,148 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.PooledObjectState;
+import cn.plasticlove.object.pool.exception.AbandonedObjectException;
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
+import cn.plasticlove.object.pool.util.LogUtil;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检测借出后长时间没有返还的泄漏对象
+ * <p>
+ * 借出对象时按{@link SimpleBaseObjectPoolConfig#getAbandonedTracePercent()}抽样记录调用栈，
+ * 没有抽中的借出只清空上次的调用栈，不创建异常对象。
+ * 后台维护任务检查所有正在使用的对象，借出时间超过{@link SimpleBaseObjectPoolConfig#getAbandonedTimeout()}的对象
+ * 连同借出时的调用栈一起打印警告日志，同一次借出只报告一次；配置了回收时再交给对象池销毁。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class AbandonedObjectDetector<T> {
+    private static final String TAG = AbandonedObjectDetector.class.getSimpleName();
+    /**
+     * 借出超过多长时间视为泄漏，单位纳秒，小于1时不检测
+     */
+    private final long timeoutNanos;
+    /**
+     * 记录借出调用栈的百分比
+     */
+    private final int tracePercent;
+    /**
+     * 是否回收泄漏对象
+     */
+    private final boolean remove;
+    /**
+     * 对象池的运行指标
+     */
+    private final DefaultPoolMetrics metrics;
+    /**
+     * 已经报告过的泄漏对象和报告时的借出时间点，只在维护任务中访问
+     */
+    private Map<PooledObject<T>, Long> reported = new IdentityHashMap<>();
+
+    AbandonedObjectDetector(SimpleBaseObjectPoolConfig config, DefaultPoolMetrics metrics) {
+        this.timeoutNanos = config.getAbandonedTimeout() < 1 ? 0L : TimeUnit.MILLISECONDS.toNanos(config.getAbandonedTimeout());
+        this.tracePercent = config.getAbandonedTracePercent();
+        this.remove = config.isRemoveAbandoned();
+        this.metrics = metrics;
+    }
+
+    /**
+     * 是否检测泄漏对象
+     *
+     * @return 是否检测泄漏对象
+     */
+    boolean isEnabled() {
+        return timeoutNanos > 0;
+    }
+
+    /**
+     * 借出对象时抽样记录调用栈，需要在设置为使用状态之前调用
+     *
+     * @param p 借出的对象
+     */
+    void onBorrow(PooledObject<T> p) {
+        if (timeoutNanos < 1) {
+            return;
+        }
+        if (tracePercent > 0 && (tracePercent >= 100 || ThreadLocalRandom.current().nextInt(100) < tracePercent)) {
+            p.setBorrowTrace(new AbandonedObjectException("the object was borrowed here"));
+        } else if (p.getBorrowTrace() != null) {
+            p.setBorrowTrace(null);
+        }
+    }
+
+    /**
+     * 检查对象池中所有正在使用的对象，报告并按配置回收泄漏对象
+     *
+     * @param objects   对象池中的所有对象
+     * @param reclaimer 回收泄漏对象的操作
+     * @return 本次新发现的泄漏对象数
+     */
+    int detect(Collection<PooledObject<T>> objects, Reclaimer<T> reclaimer) {
+        if (timeoutNanos < 1) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        int found = 0;
+        Map<PooledObject<T>, Long> stillAbandoned = new IdentityHashMap<>();
+        for (PooledObject<T> p : objects) {
+            if (p.getState() != PooledObjectState.USING) {
+                continue;
+            }
+            long borrowTime = p.getLastBorrowTime();
+            long held = now - borrowTime;
+            if (held < timeoutNanos) {
+                continue;
+            }
+            if (remove) {
+                if (reclaimer.reclaim(p)) {
+                    report(p, held, true);
+                    found++;
+                }
+                continue;
+            }
+            Long reportedBorrowTime = reported.get(p);
+            if (reportedBorrowTime == null || reportedBorrowTime != borrowTime) {
+                report(p, held, false);
+                found++;
+            }
+            stillAbandoned.put(p, borrowTime);
+        }
+        //已经返还或销毁的对象不再记录
+        reported = stillAbandoned;
+        return found;
+    }
+
+    private void report(PooledObject<T> p, long heldNanos, boolean removed) {
+        metrics.incrementAbandoned();
+        AbandonedObjectException trace = p.getBorrowTrace();
+        String msg = String.format("object %s has been borrowed for %d ms without being returned%s%s", p.getObject(),
+                TimeUnit.NANOSECONDS.toMillis(heldNanos), removed ? ", it is removed from the pool" : "",
+                trace == null ? ", the borrow site was not sampled" : "");
+        LogUtil.warn(TAG, msg, trace);
+    }
+
+    /**
+     * 回收泄漏对象的操作
+     *
+     * @param <T>
+     */
+    interface Reclaimer<T> {
+        /**
+         * 把泄漏对象从使用状态改为{@link PooledObjectState#ABANDONED}并销毁
+         *
+         * @param p 泄漏对象
+         * @return 是否回收成功，对象已经被返还时返回false
+         */
+        boolean reclaim(PooledObject<T> p);
+    }
+}
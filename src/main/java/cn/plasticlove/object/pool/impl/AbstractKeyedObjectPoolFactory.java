@@ -0,0 +1,131 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.KeyedObjectPoolFactory;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+
+/**
+ * 针对于{@link SimpleKeyedObjectPool}对象池的对象工厂
+ * 和{@link AbstractObjectPoolFactory}相同，创建、销毁、激活、钝化和校验对象时多了对象所属的键
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public abstract class AbstractKeyedObjectPoolFactory<K, T> implements KeyedObjectPoolFactory<K, T> {
+    /**
+     * 为指定键创建对象池实际对象的抽象方法
+     *
+     * @param key 对象所属的键
+     * @return 实际的对象池对象
+     * @throws Exception
+     */
+    public abstract T create(K key) throws Exception;
+
+    /**
+     * 包装对象池对象成为{@link PooledObject}
+     *
+     * @param t 实际的对象池对象
+     * @return
+     */
+    public abstract PooledObject<T> wrap(T t);
+
+    /**
+     * 校验对象是否还可以使用，默认总是有效
+     *
+     * @param key 对象所属的键
+     * @param p   待校验的对象
+     * @return 对象是否有效
+     * @see AbstractObjectPoolFactory#validateObject(PooledObject)
+     */
+    public boolean validateObject(K key, PooledObject<T> p) {
+        return true;
+    }
+
+    /**
+     * 借出对象前调用，默认什么都不做
+     *
+     * @param key 对象所属的键
+     * @param p   即将借出的对象
+     * @throws Exception 激活失败
+     * @see AbstractObjectPoolFactory#activateObject(PooledObject)
+     */
+    public void activateObject(K key, PooledObject<T> p) throws Exception {
+    }
+
+    /**
+     * 对象返还到对象池后、钝化前调用，用于清除使用者留下的状态，默认什么都不做
+     *
+     * @param key 对象所属的键
+     * @param p   返还的对象
+     * @throws Exception 重置失败
+     * @see AbstractObjectPoolFactory#resetObject(PooledObject)
+     */
+    public void resetObject(K key, PooledObject<T> p) throws Exception {
+    }
+
+    /**
+     * 对象返还到对象池后、重新变为空闲前调用，默认什么都不做
+     *
+     * @param key 对象所属的键
+     * @param p   返还的对象
+     * @throws Exception 钝化失败
+     * @see AbstractObjectPoolFactory#passivateObject(PooledObject)
+     */
+    public void passivateObject(K key, PooledObject<T> p) throws Exception {
+    }
+
+    @Override
+    public PooledObject<T> makeObject(K key) throws Exception {
+        return wrap(create(key));
+    }
+
+    @Override
+    public void destroyObject(K key, PooledObject<T> obj) throws ObjectDestroyException {
+    }
+
+    /**
+     * 把指定键的操作包装成{@link AbstractObjectPoolFactory}，交给这个键的对象池使用
+     *
+     * @param key 键
+     * @return 这个键的对象工厂
+     */
+    AbstractObjectPoolFactory<T> forKey(final K key) {
+        return new AbstractObjectPoolFactory<T>() {
+            @Override
+            public T create() throws Exception {
+                return AbstractKeyedObjectPoolFactory.this.create(key);
+            }
+
+            @Override
+            public PooledObject<T> wrap(T t) {
+                return AbstractKeyedObjectPoolFactory.this.wrap(t);
+            }
+
+            @Override
+            public boolean validateObject(PooledObject<T> p) {
+                return AbstractKeyedObjectPoolFactory.this.validateObject(key, p);
+            }
+
+            @Override
+            public void activateObject(PooledObject<T> p) throws Exception {
+                AbstractKeyedObjectPoolFactory.this.activateObject(key, p);
+            }
+
+            @Override
+            public void resetObject(PooledObject<T> p) throws Exception {
+                AbstractKeyedObjectPoolFactory.this.resetObject(key, p);
+            }
+
+            @Override
+            public void passivateObject(PooledObject<T> p) throws Exception {
+                AbstractKeyedObjectPoolFactory.this.passivateObject(key, p);
+            }
+
+            @Override
+            public void destroyObject(PooledObject<T> obj) throws ObjectDestroyException {
+                AbstractKeyedObjectPoolFactory.this.destroyObject(key, obj);
+            }
+        };
+    }
+}
@@ -8,7 +8,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 针对于{@link SimpleBaseObjectPool}对象池的对象工厂
- * 主要包括创建和销毁对象
+ * 主要包括创建和销毁对象，以及借出前激活、返还后重置、钝化和校验对象
  * 通过包装的方式创建对象的包装类
  * 如果需要工厂中更多的关于对象本身的操作，可以继承此类加以扩展
  *
@@ -39,6 +39,49 @@ public abstract class AbstractObjectPoolFactory<T> implements ObjectPoolFactory<
      */
     private ReentrantLock lock = new ReentrantLock();
 
+    /**
+     * 校验对象是否还可以使用，默认总是有效
+     * 子类可以重写，比如检查连接是否已经断开；校验失败的对象会被销毁
+     *
+     * @param p 待校验的对象
+     * @return 对象是否有效
+     */
+    public boolean validateObject(PooledObject<T> p) {
+        return true;
+    }
+
+    /**
+     * 借出对象前调用，默认什么都不做
+     * 抛出异常时对象会被销毁，对象池会换一个对象借出
+     *
+     * @param p 即将借出的对象
+     * @throws Exception 激活失败
+     */
+    public void activateObject(PooledObject<T> p) throws Exception {
+    }
+
+    /**
+     * 对象返还到对象池后、钝化前调用，用于清除使用者留下的状态，比如清空集合、重置缓冲区，默认什么都不做
+     * 配置了{@link SimpleBaseObjectPoolConfig#setResetConcurrency(int)}时在后台线程中调用，不计入返还的耗时；
+     * 无论哪种方式，对象都在重置完成后才能被再次借出
+     * 抛出异常时对象会被销毁
+     *
+     * @param p 返还的对象
+     * @throws Exception 重置失败
+     */
+    public void resetObject(PooledObject<T> p) throws Exception {
+    }
+
+    /**
+     * 对象返还到对象池后、重新变为空闲前调用，默认什么都不做
+     * 抛出异常时对象会被销毁
+     *
+     * @param p 返还的对象
+     * @throws Exception 钝化失败
+     */
+    public void passivateObject(PooledObject<T> p) throws Exception {
+    }
+
     @Override
     public PooledObject<T> makeObject() throws Exception {
         return wrap(create());
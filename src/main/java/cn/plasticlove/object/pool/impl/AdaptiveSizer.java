@@ -0,0 +1,222 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
+import cn.plasticlove.object.pool.metrics.LatencyHistogram;
+import cn.plasticlove.object.pool.util.LogUtil;
+
+/**
+ * 根据观测到的负载调整对象池的最小空闲对象数
+ * <p>
+ * 后台维护任务每个间隔调用一次{@link AdaptiveSizer#resize()}。持有时间和等待时间在这个间隔内的总和除以间隔，
+ * 就是平均持有对象和等待对象的线程数，和此刻正在使用、正在等待的数目取较大值作为这个间隔的并发数；
+ * 新建对象的耗时另外做移动平均。
+ * </p>
+ * <p>
+ * 并发数分别做快、慢两个指数移动平均，快的高于慢的说明负载在上升，按两者的差值向后外推，
+ * 新建对象越慢外推得越远，让空闲对象在负载到来之前补充好。预测的并发数加上多保留的百分比，减去正在使用的对象数，
+ * 就是需要的空闲对象数，限制在配置的上下限之间：负载上升或者有请求等待过时立即增大并在后台补充；
+ * 负载不再上升时每次只减小差值的一半，并销毁一半多余的空闲对象，避免负载短暂回落后又要重新新建。
+ * 每次调整记入{@link DefaultPoolMetrics}并输出日志。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see SimpleBaseObjectPoolConfig#setAdaptiveSizing(boolean)
+ **/
+
+class AdaptiveSizer {
+    private static final String TAG = AdaptiveSizer.class.getSimpleName();
+    /**
+     * 快、慢两个移动平均每次采样的权重
+     */
+    private static final double FAST_WEIGHT = 0.5;
+    private static final double SLOW_WEIGHT = 0.1;
+    /**
+     * 负载上升时最多向后外推的间隔数
+     */
+    private static final double MAX_HORIZON = 4;
+    /**
+     * 是否调整
+     */
+    private final boolean enabled;
+    /**
+     * 最小空闲对象数的下限和上限
+     */
+    private final int floor;
+    private final int ceiling;
+    /**
+     * 在预测的并发数之上多保留的百分比
+     */
+    private final int sparePercent;
+    private final DefaultPoolMetrics metrics;
+    private final Target target;
+    /**
+     * 上次采样的时间和各项总和，只在维护任务中读写
+     */
+    private boolean sampled;
+    private long lastTime;
+    private long lastHoldSum;
+    private long lastWaitSum;
+    private long lastCreateSum;
+    private long lastCreateCount;
+    /**
+     * 并发数的快、慢移动平均
+     */
+    private double fastDemand;
+    private double slowDemand;
+    /**
+     * 新建一个对象的平均耗时，单位纳秒
+     */
+    private double createNanos;
+
+    /**
+     * @param config   配置类
+     * @param maxTotal 对象池最大容量
+     * @param metrics  对象池的运行指标
+     * @param target   被调整的对象池
+     */
+    AdaptiveSizer(SimpleBaseObjectPoolConfig config, int maxTotal, DefaultPoolMetrics metrics, Target target) {
+        this.enabled = config.isAdaptiveSizing() && config.getEvictionPeriod() > 0;
+        this.floor = Math.max(0, Math.min(config.getMinIdel(), maxTotal));
+        int max = config.getAdaptiveMaxIdel() < 1 ? maxTotal : Math.min(config.getAdaptiveMaxIdel(), maxTotal);
+        this.ceiling = Math.max(floor, max);
+        this.sparePercent = Math.max(0, config.getAdaptiveSparePercent());
+        this.metrics = metrics;
+        this.target = target;
+    }
+
+    /**
+     * 是否自动调整最小空闲对象数
+     *
+     * @return 是否自动调整
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 采样一次负载并调整最小空闲对象数
+     * 第一次调用只记录采样的起点
+     */
+    synchronized void resize() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        long holdSum = metrics.getHoldTime().getSum();
+        long waitSum = metrics.getWaitLatency().getSum();
+        LatencyHistogram create = metrics.getCreateLatency();
+        long createSum = create.getSum();
+        long createCount = create.getCount();
+        int active = target.getActiveNum();
+        double current = active + target.getWaitingNum();
+        if (!sampled) {
+            sampled = true;
+            fastDemand = current;
+            slowDemand = current;
+        } else {
+            long interval = now - lastTime;
+            if (interval <= 0) {
+                return;
+            }
+            //利特尔法则：间隔内持有和等待的时间总和除以间隔就是平均的持有数和等待数
+            double demand = Math.max((double) (holdSum - lastHoldSum + waitSum - lastWaitSum) / interval, current);
+            fastDemand += FAST_WEIGHT * (demand - fastDemand);
+            slowDemand += SLOW_WEIGHT * (demand - slowDemand);
+            if (createCount > lastCreateCount) {
+                double cost = (double) (createSum - lastCreateSum) / (createCount - lastCreateCount);
+                createNanos = createNanos == 0 ? cost : createNanos + SLOW_WEIGHT * (cost - createNanos);
+            }
+            boolean waited = waitSum > lastWaitSum || target.getWaitingNum() > 0;
+            adjust(active, waited, Math.min(MAX_HORIZON, 1 + createNanos / interval));
+        }
+        lastTime = now;
+        lastHoldSum = holdSum;
+        lastWaitSum = waitSum;
+        lastCreateSum = createSum;
+        lastCreateCount = createCount;
+    }
+
+    /**
+     * 根据预测的并发数调整最小空闲对象数
+     * 只在负载上升或者有请求等待过时增大，负载回落时此刻正在使用的对象数偏少，不据此增大
+     *
+     * @param active  正在使用的对象数
+     * @param waited  这个间隔内是否有请求等待过
+     * @param horizon 向后外推的间隔数
+     */
+    private void adjust(int active, boolean waited, double horizon) {
+        boolean rising = fastDemand > slowDemand;
+        double forecast = fastDemand + (rising ? (fastDemand - slowDemand) * horizon : 0);
+        int wanted = (int) Math.ceil(forecast * (100 + sparePercent) / 100) - active;
+        wanted = Math.max(floor, Math.min(ceiling, wanted));
+        int minIdel = target.getMinIdel();
+        if (wanted > minIdel && (rising || waited)) {
+            target.setMinIdel(wanted);
+            metrics.incrementAdaptiveGrow();
+            log(minIdel, wanted, forecast);
+            return;
+        }
+        if (rising) {
+            return;
+        }
+        if (wanted < minIdel) {
+            int next = minIdel - (minIdel - wanted + 1) / 2;
+            target.setMinIdel(next);
+            metrics.incrementAdaptiveShrink();
+            log(minIdel, next, forecast);
+        }
+        //负载不再上升时销毁一半多余的空闲对象
+        for (int excess = (target.getIdleNum() - target.getMinIdel() + 1) / 2; excess > 0; excess--) {
+            if (!target.evictIdle()) {
+                break;
+            }
+        }
+    }
+
+    private void log(int from, int to, double forecast) {
+        if (LogUtil.isInfoEnabled()) {
+            LogUtil.info(TAG, "adaptive sizing changed minIdle from %d to %d, forecast concurrency %s",
+                    from, to, String.format("%.1f", forecast));
+        }
+    }
+
+    /**
+     * 被调整的对象池
+     */
+    interface Target {
+        /**
+         * @return 正在使用的对象数
+         */
+        int getActiveNum();
+
+        /**
+         * @return 正在等待对象的请求数
+         */
+        int getWaitingNum();
+
+        /**
+         * @return 空闲对象数
+         */
+        int getIdleNum();
+
+        /**
+         * @return 当前的最小空闲对象数
+         */
+        int getMinIdel();
+
+        /**
+         * 设置最小空闲对象数，增大时在后台补充空闲对象
+         *
+         * @param minIdel 最小空闲对象数
+         */
+        void setMinIdel(int minIdel);
+
+        /**
+         * 销毁一个空闲对象
+         *
+         * @return 是否销毁了一个对象
+         */
+        boolean evictIdle();
+    }
+}
@@ -0,0 +1,226 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPoolConfig;
+
+/**
+ * 针对{@link PrimitiveArrayPool}的配置类
+ * 相比于{@link BaseObjectPoolConfig}增加了数组长度的范围、每个长度级别保留的数组数和线程本地缓存
+ * 默认配置下一个对象池保留的空闲数组不超过几百万个元素：长数组的级别保留的数组更少，线程本地缓存只缓存短数组
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class ArrayPoolConfig extends BaseObjectPoolConfig {
+    /**
+     * 最小数组长度默认值
+     */
+    static final int MIN_LENGTH = 64;
+    /**
+     * 最大数组长度默认值
+     */
+    static final int MAX_LENGTH = 16 * 1024 * 1024;
+    /**
+     * 每个长度级别保留的空闲数组数默认值
+     */
+    static final int BUCKET_CAPACITY = 16;
+    /**
+     * 每个长度级别保留的空闲数组的元素总数默认值
+     */
+    static final int MAX_BUCKET_ELEMENTS = 256 * 1024;
+    /**
+     * 每个线程在每个长度级别缓存的数组数默认值
+     */
+    static final int THREAD_CACHE_SIZE = 1;
+    /**
+     * 放入线程本地缓存的最大数组长度默认值
+     */
+    static final int THREAD_CACHE_MAX_LENGTH = 16 * 1024;
+    /**
+     * 最小数组长度，向上取整为2的幂
+     */
+    private int minLength = MIN_LENGTH;
+    /**
+     * 最大数组长度，向上取整为2的幂；更长的数组每次新建，返还时直接丢弃
+     */
+    private int maxLength = MAX_LENGTH;
+    /**
+     * 每个长度级别共用的空闲数组数上限，超出的数组返还时丢弃
+     */
+    private int bucketCapacity = BUCKET_CAPACITY;
+    /**
+     * 每个长度级别共用的空闲数组的元素总数上限
+     * 级别保留的数组数取bucketCapacity和这个值除以级别长度中较小的一个，比它还长的级别不保留空闲数组
+     */
+    private int maxBucketElements = MAX_BUCKET_ELEMENTS;
+    /**
+     * 每个线程在每个长度级别缓存的数组数，小于1时不使用线程本地缓存
+     */
+    private int threadCacheSize = THREAD_CACHE_SIZE;
+    /**
+     * 放入线程本地缓存的最大数组长度，更长的数组只放入共用的空闲数组中
+     * 小于1时不限制
+     */
+    private int threadCacheMaxLength = THREAD_CACHE_MAX_LENGTH;
+    /**
+     * 返还时是否把数组清零
+     */
+    private boolean clearOnReturn;
+    /**
+     * 两次丢弃长时间没有借出的级别的空闲数组之间的最短间隔
+     * 小于1时不在后台丢弃，只能手动调用{@link PrimitiveArrayPool#removeTimeOutedObject()}
+     */
+    private long evictionPeriod = SimpleBaseObjectPoolConfig.EVICTION_PERIOD_MILLS;
+    /**
+     * 执行后台丢弃的调度器
+     * 为null时使用所有对象池共用的{@link PoolMaintenanceScheduler#getShared()}
+     */
+    private PoolMaintenanceScheduler maintenanceScheduler;
+
+    public ArrayPoolConfig() {
+        super();
+    }
+
+    public ArrayPoolConfig(int minLength, int maxLength, int bucketCapacity) {
+        super();
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.bucketCapacity = bucketCapacity;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(int minLength) {
+        this.minLength = minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * 获取每个长度级别共用的空闲数组数上限
+     *
+     * @return 空闲数组数上限
+     */
+    public int getBucketCapacity() {
+        return bucketCapacity;
+    }
+
+    /**
+     * 设置每个长度级别共用的空闲数组数上限
+     *
+     * @param bucketCapacity 空闲数组数上限
+     */
+    public void setBucketCapacity(int bucketCapacity) {
+        this.bucketCapacity = bucketCapacity;
+    }
+
+    /**
+     * 获取每个长度级别共用的空闲数组的元素总数上限
+     *
+     * @return 元素总数上限
+     */
+    public int getMaxBucketElements() {
+        return maxBucketElements;
+    }
+
+    /**
+     * 设置每个长度级别共用的空闲数组的元素总数上限
+     * 长度为length的级别最多保留min(bucketCapacity, maxBucketElements / length)个空闲数组，
+     * 长度超过这个值的级别不保留空闲数组，返还时直接丢弃
+     *
+     * @param maxBucketElements 元素总数上限
+     */
+    public void setMaxBucketElements(int maxBucketElements) {
+        this.maxBucketElements = maxBucketElements;
+    }
+
+    /**
+     * 获取每个线程在每个长度级别缓存的数组数
+     *
+     * @return 线程本地缓存的数组数
+     */
+    public int getThreadCacheSize() {
+        return threadCacheSize;
+    }
+
+    /**
+     * 设置每个线程在每个长度级别缓存的数组数
+     * 缓存的数组在所属线程结束后才会被回收，线程很多时应当配合{@link ArrayPoolConfig#setThreadCacheMaxLength(int)}使用
+     *
+     * @param threadCacheSize 线程本地缓存的数组数
+     */
+    public void setThreadCacheSize(int threadCacheSize) {
+        this.threadCacheSize = threadCacheSize;
+    }
+
+    /**
+     * 获取放入线程本地缓存的最大数组长度
+     *
+     * @return 最大数组长度，小于1时不限制
+     */
+    public int getThreadCacheMaxLength() {
+        return threadCacheMaxLength;
+    }
+
+    /**
+     * 设置放入线程本地缓存的最大数组长度，默认16K
+     * 每个线程缓存的元素数最多约为这个值的两倍乘以每个级别缓存的数组数
+     *
+     * @param threadCacheMaxLength 最大数组长度，小于1时不限制
+     */
+    public void setThreadCacheMaxLength(int threadCacheMaxLength) {
+        this.threadCacheMaxLength = threadCacheMaxLength;
+    }
+
+    public boolean isClearOnReturn() {
+        return clearOnReturn;
+    }
+
+    public void setClearOnReturn(boolean clearOnReturn) {
+        this.clearOnReturn = clearOnReturn;
+    }
+
+    /**
+     * 获取两次丢弃长时间没有借出的级别的空闲数组之间的最短间隔
+     *
+     * @return 间隔，单位毫秒
+     */
+    public long getEvictionPeriod() {
+        return evictionPeriod;
+    }
+
+    /**
+     * 设置两次丢弃长时间没有借出的级别的空闲数组之间的最短间隔
+     *
+     * @param evictionPeriod 间隔，单位毫秒，小于1时不在后台丢弃
+     */
+    public void setEvictionPeriod(long evictionPeriod) {
+        this.evictionPeriod = evictionPeriod;
+    }
+
+    /**
+     * 获取执行后台丢弃的调度器
+     *
+     * @return 调度器，没有设置时为所有对象池共用的调度器
+     */
+    public PoolMaintenanceScheduler getMaintenanceScheduler() {
+        return maintenanceScheduler == null ? PoolMaintenanceScheduler.getShared() : maintenanceScheduler;
+    }
+
+    /**
+     * 设置执行后台丢弃的调度器
+     *
+     * @param maintenanceScheduler 调度器
+     */
+    public void setMaintenanceScheduler(PoolMaintenanceScheduler maintenanceScheduler) {
+        this.maintenanceScheduler = maintenanceScheduler;
+    }
+}
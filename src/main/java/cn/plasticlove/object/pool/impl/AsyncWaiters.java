@@ -0,0 +1,570 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.PooledObjectState;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
+
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * 对象池所有等待对象的请求的队列
+ * <p>
+ * 没有空闲对象时，{@link cn.plasticlove.object.pool.BaseObjectPool#borrowAsync()}把请求放入队列，不阻塞调用线程；
+ * 同步获取和批量获取的线程也通过{@link AsyncWaiters#enlist(int, long)}在同一个队列中排队，再阻塞等待自己的请求完成。
+ * 返还对象时由对象池调用{@link AsyncWaiters#handOff(PooledObject, Lender)}直接把对象交给排在最前面的请求：
+ * 优先级高的在前，优先级相同时截止时间早的在前，截止时间也相同时先到的在前，没有截止时间的排在有截止时间的后面。
+ * 不指定优先级的同步获取和异步获取的优先级都是0，等待时间相同时就是先到先得，同步获取不会排在异步获取后面。
+ * </p>
+ * <p>
+ * 异步请求的等待超时由对象池的定时任务线程完成，同步请求由等待的线程自己完成；
+ * 交出对象时已经过了截止时间但还没有超时的请求直接以超时失败，不会拿到对象。
+ * 取消或超时的请求不立即从队列中移除，交出对象时跳过，累计到队列长度的一半时再一起清理，不会每次取消都遍历队列。
+ * </p>
+ * <p>
+ * 注意：交接成功后{@link CompletableFuture}的回调在返还对象的线程中执行。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class AsyncWaiters<T> {
+    /**
+     * 等待请求的排列顺序：优先级高的在前，然后截止时间早的在前，最后先到的在前
+     */
+    private static final Comparator<Waiter<?>> ORDER = new Comparator<Waiter<?>>() {
+        @Override
+        public int compare(Waiter<?> a, Waiter<?> b) {
+            if (a.priority != b.priority) {
+                return a.priority > b.priority ? -1 : 1;
+            }
+            if (a.timed != b.timed) {
+                return a.timed ? -1 : 1;
+            }
+            if (a.timed && a.deadline != b.deadline) {
+                return a.deadline - b.deadline < 0 ? -1 : 1;
+            }
+            return Long.compare(a.seq, b.seq);
+        }
+    };
+    /**
+     * 取消或超时但还在队列中的请求至少累计到这个数目才清理
+     */
+    private static final int PURGE_THRESHOLD = 64;
+    /**
+     * 按优先级和截止时间排列的等待请求
+     */
+    private final PriorityBlockingQueue<Waiter<T>> queue = new PriorityBlockingQueue<>(11, ORDER);
+    /**
+     * 队列中的请求数，包括已经取消或超时还没有清理的请求；返还对象时只读取这个计数判断是否有请求，不需要获取队列的锁
+     */
+    private final AtomicInteger queuedNum = new AtomicInteger();
+    /**
+     * 上次清理后取消或超时的请求数，用来决定什么时候清理队列
+     */
+    private final AtomicInteger cancelledNum = new AtomicInteger();
+    /**
+     * 清理队列时移除已经完成的请求
+     */
+    private final Predicate<Waiter<T>> completed = new Predicate<Waiter<T>>() {
+        @Override
+        public boolean test(Waiter<T> waiter) {
+            if (waiter.future.isDone() && waiter.dequeue()) {
+                queuedNum.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    /**
+     * 请求到达的顺序
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * 对象池的等待数，请求在队列中时计入，有请求等待时返还的对象不再进入线程本地缓存或分片
+     */
+    private final AtomicInteger waitingNum;
+    /**
+     * 对象池的运行指标
+     */
+    private final DefaultPoolMetrics metrics;
+    /**
+     * 执行等待超时的定时任务
+     */
+    private final ScheduledExecutorService service;
+    /**
+     * 交出对象时抽样记录调用栈
+     */
+    private final AbandonedObjectDetector<T> abandonedDetector;
+    /**
+     * 超时时是否使用预先创建的没有调用栈的异常
+     */
+    private final boolean stacklessException;
+
+    AsyncWaiters(AtomicInteger waitingNum, DefaultPoolMetrics metrics, ScheduledExecutorService service,
+                 AbandonedObjectDetector<T> abandonedDetector, boolean stacklessException) {
+        this.waitingNum = waitingNum;
+        this.metrics = metrics;
+        this.service = service;
+        this.abandonedDetector = abandonedDetector;
+        this.stacklessException = stacklessException;
+    }
+
+    /**
+     * 判断队列中是否可能有请求在等待，取消或超时还没有清理的请求也算在内
+     *
+     * @return 队列是否为空
+     */
+    boolean isEmpty() {
+        return queuedNum.get() == 0;
+    }
+
+    /**
+     * 获取正在等待的请求数，包括同步请求和异步请求
+     *
+     * @return 等待的请求数
+     */
+    int getWaitingNum() {
+        return waitingNum.get();
+    }
+
+    /**
+     * 添加一个默认优先级的异步请求
+     *
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 获取到对象时完成的future
+     */
+    CompletableFuture<T> add(long maxTimeWaitMills) {
+        return add(0, maxTimeWaitMills);
+    }
+
+    /**
+     * 添加一个异步请求
+     *
+     * @param priority         优先级，越大越先拿到返还的对象
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 获取到对象时完成的future
+     */
+    CompletableFuture<T> add(int priority, long maxTimeWaitMills) {
+        final Waiter<T> waiter = new Waiter<>(priority, maxTimeWaitMills, sequence.getAndIncrement(), true);
+        register(waiter);
+        if (maxTimeWaitMills >= 0 && !waiter.future.isDone()) {
+            waiter.timeout = service.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire(waiter);
+                }
+            }, maxTimeWaitMills, TimeUnit.MILLISECONDS);
+        }
+        return waiter.future;
+    }
+
+    /**
+     * 添加一个同步请求，调用方之后通过{@link AsyncWaiters#awaitObject(Waiter)}阻塞等待
+     * 交出的对象只激活，登记借出由等待的线程完成；超时和等待时间也由等待的线程自己记录
+     *
+     * @param priority         优先级，越大越先拿到返还的对象
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 请求
+     */
+    Waiter<T> enlist(int priority, long maxTimeWaitMills) {
+        Waiter<T> waiter = new Waiter<>(priority, maxTimeWaitMills, sequence.getAndIncrement(), false);
+        register(waiter);
+        return waiter;
+    }
+
+    /**
+     * 阻塞等待同步请求拿到对象
+     * 超时或被中断时让请求失败，和交出对象同时发生时以先完成的一方为准
+     *
+     * @param waiter 通过{@link AsyncWaiters#enlist(int, long)}添加的请求
+     * @return 拿到的对象，已经激活；等待超时、被中断或者对象池已经关闭时返回null
+     */
+    PooledObject<T> awaitObject(Waiter<T> waiter) {
+        try {
+            if (waiter.timed) {
+                waiter.future.get(Math.max(0L, waiter.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } else {
+                waiter.future.get();
+            }
+        } catch (TimeoutException e) {
+            waiter.future.completeExceptionally(timeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            waiter.future.completeExceptionally(new NoMoreIdleSpaceException("interrupted while waiting for an idle object"));
+        } catch (ExecutionException e) {
+            //对象池已经关闭
+            return null;
+        }
+        return waiter.future.isCompletedExceptionally() ? null : waiter.object;
+    }
+
+    /**
+     * 登记请求并放入队列
+     * 完成、超时或取消后不再计入等待数，超时或取消的请求留在队列中，累计多了再清理
+     *
+     * @param waiter 请求
+     */
+    private void register(final Waiter<T> waiter) {
+        waitingNum.incrementAndGet();
+        enqueue(waiter);
+        waiter.future.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T t, Throwable throwable) {
+                waitingNum.decrementAndGet();
+                ScheduledFuture<?> timeout = waiter.timeout;
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                if (throwable != null) {
+                    cancelled();
+                }
+            }
+        });
+    }
+
+    /**
+     * 记录一个取消或超时的请求，累计超过队列中请求数的一半时清理队列
+     * 每次清理前至少有一半的请求已经取消，清理的开销分摊到每个取消的请求上是常数
+     */
+    private void cancelled() {
+        int cancelled = cancelledNum.incrementAndGet();
+        if (cancelled < PURGE_THRESHOLD || cancelled * 2 < queuedNum.get()) {
+            return;
+        }
+        if (cancelledNum.compareAndSet(cancelled, 0)) {
+            queue.removeIf(completed);
+        }
+    }
+
+    /**
+     * 放入队列
+     *
+     * @param waiter 请求
+     */
+    private void enqueue(Waiter<T> waiter) {
+        waiter.queued.set(true);
+        queuedNum.incrementAndGet();
+        queue.add(waiter);
+    }
+
+    /**
+     * 取出排在最前面的请求，跳过已经取消或超时的请求；已经过了截止时间的请求以超时失败后跳过
+     *
+     * @return 请求，没有时返回null
+     */
+    private Waiter<T> poll() {
+        for (; ; ) {
+            Waiter<T> waiter = queue.poll();
+            if (waiter == null) {
+                return null;
+            }
+            //已经被清理的请求不再计数
+            if (!waiter.dequeue()) {
+                continue;
+            }
+            queuedNum.decrementAndGet();
+            if (waiter.future.isDone()) {
+                continue;
+            }
+            if (!waiter.isExpired(System.nanoTime())) {
+                return waiter;
+            }
+            expire(waiter);
+        }
+    }
+
+    /**
+     * 请求等待超时，同步请求的超时由等待的线程记录
+     *
+     * @param waiter 请求
+     */
+    private void expire(Waiter<T> waiter) {
+        if (waiter.future.completeExceptionally(timeout()) && waiter.async) {
+            metrics.incrementTimeout();
+            metrics.recordWait(System.nanoTime() - waiter.start);
+        }
+    }
+
+    /**
+     * 创建等待超时的异常
+     *
+     * @return 等待超时的异常
+     */
+    private NoMoreIdleSpaceException timeout() {
+        return stacklessException ? NoMoreIdleSpaceException.stackless()
+                : new NoMoreIdleSpaceException("there is no more idle object and the wait time is out");
+    }
+
+    /**
+     * 把空闲对象直接交给排在最前面的请求
+     * 已经超时或取消的请求会被跳过；交出前先激活对象，激活失败的对象已经被销毁，还在等待的请求按原来的顺序放回。
+     * 交给异步请求时一并登记借出，交给同步请求时由等待的线程登记。
+     * 多个对象池共用一个队列时，对象由它所属的对象池交出，激活失败时也由所属的对象池销毁
+     *
+     * @param p      空闲对象
+     * @param lender 对象所属的对象池交出对象时的操作
+     * @return 是否已经处理了这个对象（交出或者销毁），返回false时对象仍然是空闲状态
+     */
+    boolean handOff(PooledObject<T> p, Lender<T> lender) {
+        Waiter<T> waiter = poll();
+        if (waiter == null) {
+            return false;
+        }
+        if (!lender.activate(p)) {
+            //请求可能在激活期间取消，已经完成的请求不再放回；放回后再补充，补充的对象才能交给这个请求
+            if (!waiter.future.isDone()) {
+                enqueue(waiter);
+                lender.replace();
+            }
+            return true;
+        }
+        while (waiter != null) {
+            if (waiter.async) {
+                abandonedDetector.onBorrow(p);
+            }
+            if (waiter.complete(p)) {
+                if (waiter.async) {
+                    lender.lent(p);
+                    long elapsed = System.nanoTime() - waiter.start;
+                    metrics.recordWait(elapsed);
+                    metrics.recordBorrow(elapsed);
+                }
+                return true;
+            }
+            waiter = poll();
+        }
+        //请求都已经超时或取消，重新钝化后由调用方放回，钝化失败的对象已经被销毁
+        return !lender.passivate(p);
+    }
+
+    /**
+     * 对象池关闭时，让所有等待的请求失败
+     */
+    void failAll() {
+        Waiter<T> waiter = queue.poll();
+        while (waiter != null) {
+            if (waiter.dequeue()) {
+                queuedNum.decrementAndGet();
+                waiter.future.completeExceptionally(new IllegalStateException("pool is not open"));
+            }
+            waiter = queue.poll();
+        }
+    }
+
+    /**
+     * 阻塞等待请求完成，用于同步获取对象
+     * 通过{@link CompletableFuture#handle(BiFunction)}取得失败的原因，直接抛出原来的异常，不会再包装成新的异常；
+     * 等待时被中断则取消请求，已经拿到对象时仍然返回对象
+     *
+     * @param future 请求
+     * @return 获取到的对象
+     * @throws NoMoreIdleSpaceException 等待超时或被中断
+     */
+    static <T> T await(CompletableFuture<T> future) throws NoMoreIdleSpaceException {
+        CompletableFuture<Throwable> outcome = future.handle(new BiFunction<T, Throwable, Throwable>() {
+            @Override
+            public Throwable apply(T t, Throwable throwable) {
+                return throwable;
+            }
+        });
+        Throwable cause;
+        try {
+            cause = outcome.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (future.cancel(false)) {
+                throw new NoMoreIdleSpaceException("interrupted while waiting for an idle object");
+            }
+            //取消前已经完成
+            cause = outcome.join();
+        } catch (ExecutionException e) {
+            cause = e.getCause();
+        }
+        if (cause != null) {
+            throw unwrap(cause);
+        }
+        return future.getNow(null);
+    }
+
+    /**
+     * 还原请求失败的原因
+     *
+     * @param cause 失败的原因
+     * @return 超时异常
+     */
+    private static NoMoreIdleSpaceException unwrap(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof NoMoreIdleSpaceException) {
+            return (NoMoreIdleSpaceException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+
+    /**
+     * 创建以指定异常失败的future
+     *
+     * @param t 失败的原因
+     * @return 已经失败的future
+     */
+    static <T> CompletableFuture<T> failedFuture(Throwable t) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    /**
+     * 对象池交出对象时的操作
+     *
+     * @param <T>
+     */
+    interface Lender<T> {
+        /**
+         * 激活即将借出的空闲对象，需要时校验
+         *
+         * @param p 空闲对象
+         * @return 是否可以借出，失败时对象已经被销毁
+         */
+        boolean activate(PooledObject<T> p);
+
+        /**
+         * 钝化激活后没有借出的对象
+         *
+         * @param p 激活过的对象
+         * @return 是否可以重新变为空闲，失败时对象已经被销毁
+         */
+        boolean passivate(PooledObject<T> p);
+
+        /**
+         * 对象已经交给请求
+         *
+         * @param p 交出的对象
+         */
+        void lent(PooledObject<T> p);
+
+        /**
+         * 交出前激活失败的对象已经销毁，请求已经放回队列，为它补充一个对象
+         */
+        void replace();
+    }
+
+    /**
+     * 一个等待对象的请求
+     *
+     * @param <T>
+     */
+    static class Waiter<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        /**
+         * 是否在队列中，取出和清理时通过CAS清除，同一个请求只计数一次
+         */
+        final AtomicBoolean queued = new AtomicBoolean();
+        /**
+         * 是否是异步请求；同步请求拿到的对象还没有登记借出，也没有定时任务
+         */
+        final boolean async;
+        /**
+         * 交给这个请求的对象
+         */
+        volatile PooledObject<T> object;
+        /**
+         * 开始等待的时间点
+         */
+        final long start = System.nanoTime();
+        /**
+         * 优先级，越大越靠前
+         */
+        final int priority;
+        /**
+         * 是否有截止时间
+         */
+        final boolean timed;
+        /**
+         * 截止时间点，取自{@link System#nanoTime()}
+         */
+        final long deadline;
+        /**
+         * 到达的顺序
+         */
+        final long seq;
+        /**
+         * 等待超时的定时任务
+         */
+        volatile ScheduledFuture<?> timeout;
+
+        /**
+         * @param priority         优先级
+         * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+         * @param seq              到达的顺序
+         * @param async            是否是异步请求
+         */
+        Waiter(int priority, long maxTimeWaitMills, long seq, boolean async) {
+            this.async = async;
+            this.priority = priority;
+            this.timed = maxTimeWaitMills >= 0;
+            this.deadline = timed ? start + TimeUnit.MILLISECONDS.toNanos(maxTimeWaitMills) : 0L;
+            this.seq = seq;
+        }
+
+        /**
+         * 是否已经过了截止时间
+         *
+         * @param now 当前时间点，取自{@link System#nanoTime()}
+         * @return 是否已经过了截止时间
+         */
+        boolean isExpired(long now) {
+            return timed && now - deadline >= 0;
+        }
+
+        /**
+         * 从队列中取出，已经被其他线程取出或清理时返回false
+         *
+         * @return 是否由当前线程取出
+         */
+        boolean dequeue() {
+            return queued.compareAndSet(true, false);
+        }
+
+        /**
+         * 把对象交给这个请求
+         * 同步请求拿到的对象保持空闲状态，由等待的线程设置
+         *
+         * @param p 空闲对象
+         * @return 请求已经超时或取消时返回false
+         */
+        boolean complete(PooledObject<T> p) {
+            if (!async) {
+                object = p;
+                return future.complete(p.getObject());
+            }
+            //先设置状态再交出，防止请求方返还时状态不对；先记录借出时间再设置状态，泄漏检测不会读到上次借出的时间
+            p.setLastBorrowTime(System.nanoTime());
+            p.setState(PooledObjectState.USING);
+            if (future.complete(p.getObject())) {
+                return true;
+            }
+            p.setState(PooledObjectState.IDEL);
+            return false;
+        }
+    }
+}
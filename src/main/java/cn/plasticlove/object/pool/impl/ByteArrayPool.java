@@ -0,0 +1,37 @@
+package cn.plasticlove.object.pool.impl;
+
+import java.util.Arrays;
+
+/**
+ * byte[]对象池，用于IO和序列化时的字节缓冲区
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see PrimitiveArrayPool
+ **/
+
+public class ByteArrayPool extends PrimitiveArrayPool<byte[]> {
+
+    public ByteArrayPool() {
+        this(new ArrayPoolConfig());
+    }
+
+    public ByteArrayPool(ArrayPoolConfig config) {
+        super(config);
+    }
+
+    @Override
+    protected byte[] newArray(int length) {
+        return new byte[length];
+    }
+
+    @Override
+    protected int lengthOf(byte[] array) {
+        return array.length;
+    }
+
+    @Override
+    protected void clearArray(byte[] array) {
+        Arrays.fill(array, (byte) 0);
+    }
+}
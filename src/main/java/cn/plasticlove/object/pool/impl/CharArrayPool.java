@@ -0,0 +1,37 @@
+package cn.plasticlove.object.pool.impl;
+
+import java.util.Arrays;
+
+/**
+ * char[]对象池，用于字符串拼接和文本解析时的字符缓冲区
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see PrimitiveArrayPool
+ **/
+
+public class CharArrayPool extends PrimitiveArrayPool<char[]> {
+
+    public CharArrayPool() {
+        this(new ArrayPoolConfig());
+    }
+
+    public CharArrayPool(ArrayPoolConfig config) {
+        super(config);
+    }
+
+    @Override
+    protected char[] newArray(int length) {
+        return new char[length];
+    }
+
+    @Override
+    protected int lengthOf(char[] array) {
+        return array.length;
+    }
+
+    @Override
+    protected void clearArray(char[] array) {
+        Arrays.fill(array, '\0');
+    }
+}
@@ -0,0 +1,936 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+import cn.plasticlove.object.pool.PoolMetrics;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
+import cn.plasticlove.object.pool.util.LogUtil;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 管理直接内存{@link ByteBuffer}的对象池
+ * <p>
+ * 缓冲区按2的幂分成多个大小级别，从{@link DirectByteBufferPoolConfig#getMinBufferSize()}到
+ * {@link DirectByteBufferPoolConfig#getMaxBufferSize()}。每个级别一次向系统申请一块直接内存，切分成多个同样大小的缓冲区；
+ * 空闲缓冲区存放在这个级别的数组栈中，栈由一把很少竞争的锁保护，放入和取出都不分配对象。
+ * </p>
+ * <p>
+ * {@link DirectByteBufferPool#borrow(int)}从能放下所需大小的最小级别中取，这个级别没有空闲缓冲区时申请新的内存块；
+ * 申请的直接内存总量达到{@link DirectByteBufferPoolConfig#getMaxDirectMemory()}后，改为取更大级别的空闲缓冲区，
+ * 仍然没有时阻塞等待。返还时根据缓冲区的容量找到级别，并把position和limit恢复为初始状态。
+ * </p>
+ * <p>
+ * 和{@link SimpleBaseObjectPool}不同，缓冲区不包装成{@link PooledObject}，也不登记到map中，
+ * 一个小缓冲区不会额外占用几十个字节的堆内存。代价是不能识别每个缓冲区：只检查返还的缓冲区是不是直接内存、
+ * 容量是不是某个级别的大小，以及一个级别返还的数量有没有超过切分出来的数量。
+ * </p>
+ * <p>
+ * 一块内存切出的缓冲区要全部空闲才能释放，因此只在一个级别的缓冲区全部空闲时才整级释放：
+ * 调用{@link DirectByteBufferPool#clear()}，或者后台维护任务发现这个级别超过最长生命周期没有借出过。
+ * 释放后预算立即可以被其他级别使用，但直接内存要等垃圾回收器回收内存块后才真正归还系统，
+ * 因此实际占用的直接内存可能暂时超过{@link DirectByteBufferPoolConfig#getMaxDirectMemory()}，
+ * 需要严格限制时应同时设置JVM的-XX:MaxDirectMemorySize。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see DirectByteBufferPoolConfig
+ **/
+
+public class DirectByteBufferPool implements BaseObjectPool<ByteBuffer> {
+    private static final String TAG = DirectByteBufferPool.class.getSimpleName();
+    /**
+     * 最小级别的缓冲区大小是2的多少次方
+     */
+    private final int minShift;
+    /**
+     * 各个大小级别，下标为0的级别最小
+     */
+    private final SizeClass[] classes;
+    /**
+     * 每次申请的直接内存块大小
+     */
+    private final int slabSize;
+    /**
+     * 直接内存总预算
+     */
+    private final long maxDirectMemory;
+    /**
+     * 已经申请的直接内存总量
+     */
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    /**
+     * 正在阻塞等待或异步等待的请求数，没有等待时返还不需要通知其他级别
+     */
+    private final AtomicInteger waitingNum = new AtomicInteger();
+    private final long maxWaitTime;
+    private final long maxLiveTime;
+    private final boolean blocked;
+    private final DefaultPoolMetrics metrics = new DefaultPoolMetrics();
+    /**
+     * 异步等待超时的调度线程
+     */
+    private final ScheduledExecutorService service;
+    /**
+     * 释放长时间空闲的直接内存的维护任务，不在后台释放时为null
+     */
+    private final PoolMaintenanceScheduler.Registration maintenance;
+    private volatile boolean closed = false;
+
+    /**
+     * @param config 自定义的对象池配置
+     */
+    public DirectByteBufferPool(DirectByteBufferPoolConfig config) {
+        LogUtil.info(TAG, "the pool started at %s", new Date());
+        if (config == null) {
+            throw new IllegalArgumentException("the config for this kind of pool must be DirectByteBufferPoolConfig");
+        }
+        if (config.getMinBufferSize() < 1 || config.getMaxBufferSize() < config.getMinBufferSize()) {
+            throw new IllegalArgumentException("buffer size must be positive and maxBufferSize must not be less than minBufferSize");
+        }
+        if (config.getMaxBufferSize() > 1 << 30) {
+            throw new IllegalArgumentException("maxBufferSize must not be greater than 1GB");
+        }
+        this.minShift = shift(config.getMinBufferSize());
+        int maxShift = shift(config.getMaxBufferSize());
+        this.classes = new SizeClass[maxShift - minShift + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(i, 1 << (minShift + i));
+        }
+        this.slabSize = Math.max(1, config.getSlabSize());
+        this.maxDirectMemory = config.getMaxDirectMemory();
+        this.maxWaitTime = config.getMaxWaitTime();
+        this.maxLiveTime = config.getMaxLiveTime();
+        this.blocked = config.isBlocked();
+        this.service = config.getMaintenanceScheduler().getExecutor();
+        this.maintenance = registerMaintenance(config);
+        LogUtil.info(TAG, "pool is inited. %d size classes; direct memory budget is %d bytes", classes.length, maxDirectMemory);
+    }
+
+    public DirectByteBufferPool() {
+        this(new DirectByteBufferPoolConfig());
+    }
+
+    /**
+     * 大小向上取整为2的幂后的指数
+     *
+     * @param size 大小
+     * @return 指数
+     */
+    private static int shift(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * 获取能放下指定大小的最小级别
+     *
+     * @param minCapacity 需要的大小
+     * @return 大小级别
+     */
+    private SizeClass classFor(int minCapacity) {
+        int index = Math.max(0, shift(minCapacity) - minShift);
+        if (minCapacity < 0 || index >= classes.length) {
+            throw new IllegalArgumentException("the buffer size " + minCapacity + " is out of range [0, "
+                    + classes[classes.length - 1].bufferSize + "]");
+        }
+        return classes[index];
+    }
+
+    /**
+     * 根据返还的缓冲区的容量找到它的级别
+     *
+     * @param buffer 返还的缓冲区
+     * @return 大小级别
+     * @throws IllegalObjectStateException 不是这个对象池的缓冲区
+     */
+    private SizeClass classOf(ByteBuffer buffer) throws IllegalObjectStateException {
+        if (buffer == null || !buffer.isDirect()) {
+            throw new IllegalObjectStateException("the buffer is not part of the pool");
+        }
+        int capacity = buffer.capacity();
+        int index = shift(capacity) - minShift;
+        if (Integer.bitCount(capacity) != 1 || index < 0 || index >= classes.length) {
+            throw new IllegalObjectStateException("the buffer is not part of the pool");
+        }
+        return classes[index];
+    }
+
+    /**
+     * 获取一个容量不小于minCapacity的直接内存缓冲区
+     * 缓冲区的position为0，limit为容量
+     *
+     * @param minCapacity 需要的大小
+     * @return 缓冲区
+     * @throws NoMoreIdleSpaceException 直接内存达到预算，等待超时仍然没有空闲缓冲区时抛出异常
+     */
+    public ByteBuffer borrow(int minCapacity) throws NoMoreIdleSpaceException {
+        assertOpen();
+        long start = System.nanoTime();
+        SizeClass sc = classFor(minCapacity);
+        ByteBuffer buffer = tryBorrow(sc);
+        if (buffer == null) {
+            if (!blocked) {
+                metrics.incrementTimeout();
+                throw new NoMoreIdleSpaceException("there is no more idle buffer and the direct memory budget is used up");
+            }
+            buffer = await(sc, start);
+        }
+        sc.lastBorrowTime = System.currentTimeMillis();
+        metrics.recordBorrow(System.nanoTime() - start);
+        return buffer;
+    }
+
+    /**
+     * 异步获取一个容量不小于minCapacity的直接内存缓冲区
+     *
+     * @param minCapacity 需要的大小
+     * @return 获取到缓冲区时完成的future
+     */
+    public CompletableFuture<ByteBuffer> borrowAsync(int minCapacity) {
+        if (isClosed()) {
+            return AsyncWaiters.failedFuture(new IllegalStateException("pool is not open"));
+        }
+        final SizeClass sc;
+        try {
+            sc = classFor(minCapacity);
+        } catch (IllegalArgumentException e) {
+            return AsyncWaiters.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        ByteBuffer buffer = tryBorrow(sc);
+        if (buffer != null) {
+            sc.lastBorrowTime = System.currentTimeMillis();
+            metrics.recordBorrow(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(buffer);
+        }
+        if (!blocked) {
+            metrics.incrementTimeout();
+            return AsyncWaiters.failedFuture(
+                    new NoMoreIdleSpaceException("there is no more idle buffer and the direct memory budget is used up"));
+        }
+        final Waiter waiter = new Waiter(start);
+        waitingNum.incrementAndGet();
+        sc.asyncWaiters.add(waiter);
+        waiter.future.whenComplete(new BiConsumer<ByteBuffer, Throwable>() {
+            @Override
+            public void accept(ByteBuffer b, Throwable throwable) {
+                waitingNum.decrementAndGet();
+                ScheduledFuture<?> timeout = waiter.timeout;
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                if (throwable != null) {
+                    sc.asyncWaiters.remove(waiter);
+                }
+            }
+        });
+        if (maxWaitTime >= 0 && !waiter.future.isDone()) {
+            waiter.timeout = service.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (waiter.future.completeExceptionally(
+                            new NoMoreIdleSpaceException("there is no more idle buffer and the wait time is out"))) {
+                        metrics.incrementTimeout();
+                        metrics.recordWait(System.nanoTime() - waiter.start);
+                    }
+                }
+            }, maxWaitTime, TimeUnit.MILLISECONDS);
+        }
+        //防止放入等待队列之前其他线程已经返还了缓冲区
+        serveAsync(sc);
+        return waiter.future;
+    }
+
+    /**
+     * 不等待地获取缓冲区
+     * 依次尝试这个级别的空闲缓冲区、申请新的内存块、更大级别的空闲缓冲区
+     *
+     * @param sc 能放下所需大小的最小级别
+     * @return 缓冲区，都没有时返回null
+     */
+    private ByteBuffer tryBorrow(SizeClass sc) {
+        ByteBuffer buffer = sc.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        buffer = grow(sc);
+        if (buffer != null) {
+            return buffer;
+        }
+        for (int i = sc.index + 1; i < classes.length && buffer == null; i++) {
+            buffer = classes[i].poll();
+        }
+        return buffer;
+    }
+
+    /**
+     * 为一个级别申请一块直接内存并切分，返回第一个缓冲区，其余的放入空闲栈
+     * 先通过CAS占用预算，申请内存时不持有任何锁
+     *
+     * @param sc 大小级别
+     * @return 切分出的第一个缓冲区，预算不够或者申请失败时返回null
+     */
+    private ByteBuffer grow(SizeClass sc) {
+        int count = Math.max(1, slabSize / sc.bufferSize);
+        long bytes = (long) count * sc.bufferSize;
+        for (; ; ) {
+            long allocated = allocatedBytes.get();
+            if (allocated + bytes > maxDirectMemory) {
+                return null;
+            }
+            if (allocatedBytes.compareAndSet(allocated, allocated + bytes)) {
+                break;
+            }
+        }
+        long start = System.nanoTime();
+        ByteBuffer slab;
+        try {
+            slab = ByteBuffer.allocateDirect((int) bytes);
+        } catch (OutOfMemoryError e) {
+            allocatedBytes.addAndGet(-bytes);
+            LogUtil.warn(TAG, "error when allocate direct memory", e);
+            return null;
+        }
+        metrics.recordCreate(System.nanoTime() - start);
+        ByteBuffer[] slices = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            //通过Buffer调用，编译出的方法签名在Java 8上也能找到
+            ((Buffer) slab).limit((i + 1) * sc.bufferSize);
+            ((Buffer) slab).position(i * sc.bufferSize);
+            slices[i] = slab.slice();
+        }
+        sc.addSlab(slices, bytes);
+        if (maintenance != null) {
+            maintenance.wake();
+        }
+        return slices[0];
+    }
+
+    /**
+     * 直接内存达到预算时阻塞等待返还
+     *
+     * @param sc    能放下所需大小的最小级别
+     * @param start 开始获取的时间
+     * @return 缓冲区
+     * @throws NoMoreIdleSpaceException 等待超时
+     */
+    private ByteBuffer await(SizeClass sc, long start) throws NoMoreIdleSpaceException {
+        long deadline = maxWaitTime < 0 ? Long.MAX_VALUE : start + TimeUnit.MILLISECONDS.toNanos(maxWaitTime);
+        //先登记再检查，其他线程返还后一定能看到等待的线程
+        waitingNum.incrementAndGet();
+        try {
+            for (; ; ) {
+                //获取缓冲区可能申请直接内存，不持有这个级别的锁，返还到这个级别的线程不会被阻塞
+                int signals = sc.signals.get();
+                ByteBuffer buffer = tryBorrow(sc);
+                if (buffer != null) {
+                    return buffer;
+                }
+                assertOpen();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    metrics.incrementTimeout();
+                    throw new NoMoreIdleSpaceException("there is no more idle buffer and the wait time is out");
+                }
+                sc.lock.lock();
+                sc.blockedNum++;
+                try {
+                    //登记后再检查一次，防止错过检查之后放入这个级别的缓冲区和其他级别、预算的通知
+                    if (sc.size == 0 && sc.signals.get() == signals) {
+                        sc.available.awaitNanos(remaining);
+                    }
+                } finally {
+                    sc.blockedNum--;
+                    sc.lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoMoreIdleSpaceException("interrupted when waiting for an idle buffer");
+        } finally {
+            waitingNum.decrementAndGet();
+            metrics.recordWait(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 返还缓冲区，position和limit恢复为初始状态
+     * 同一个级别有异步等待的请求时直接交给等待最久的请求
+     *
+     * @param buffer 待返还的缓冲区
+     * @throws IllegalObjectStateException 不是这个对象池的缓冲区，或者返还的次数超过了借出的次数
+     */
+    @Override
+    public void returnObject(ByteBuffer buffer) throws IllegalObjectStateException {
+        SizeClass sc = classOf(buffer);
+        ((Buffer) buffer).clear();
+        if (!sc.offer(buffer)) {
+            throw new IllegalObjectStateException("the buffer is returned more times than it is borrowed");
+        }
+        if (waitingNum.get() > 0) {
+            notifySmaller(sc.index);
+        }
+    }
+
+    /**
+     * 通知更小级别等待的请求，它们也可以使用这个级别的缓冲区
+     *
+     * @param index 有空闲缓冲区的级别，为级别数时通知所有级别
+     */
+    private void notifySmaller(int index) {
+        for (int i = 0; i < index; i++) {
+            SizeClass sc = classes[i];
+            sc.signal();
+            serveAsync(sc);
+        }
+    }
+
+    /**
+     * 为一个级别异步等待的请求获取缓冲区
+     *
+     * @param sc 大小级别
+     */
+    private void serveAsync(SizeClass sc) {
+        while (!sc.asyncWaiters.isEmpty()) {
+            ByteBuffer buffer = tryBorrow(sc);
+            if (buffer == null) {
+                return;
+            }
+            if (!sc.handOff(buffer)) {
+                //请求都已经超时或取消，放回原来的级别
+                try {
+                    classOf(buffer).offer(buffer);
+                } catch (IllegalObjectStateException e) {
+                    e.printStackTrace();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 获取最小级别的缓冲区
+     *
+     * @return 缓冲区
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public ByteBuffer getObject() throws NoMoreIdleSpaceException {
+        return borrow(0);
+    }
+
+    /**
+     * 获取最小级别的缓冲区的包装类
+     * 每次调用都会新建包装类，需要避免分配时使用{@link DirectByteBufferPool#borrow(int)}
+     *
+     * @return 缓冲区的包装类
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public PooledObject<ByteBuffer> getPooledObject() throws NoMoreIdleSpaceException {
+        return new PooledObject<>(getObject());
+    }
+
+    @Override
+    public void returnPooledObject(PooledObject<ByteBuffer> p) throws IllegalObjectStateException {
+        returnObject(p.getObject());
+    }
+
+    @Override
+    public CompletableFuture<ByteBuffer> borrowAsync() {
+        return borrowAsync(0);
+    }
+
+    /**
+     * 一次获取多个最小级别的缓冲区，凑不齐时已经取到的缓冲区会放回对象池
+     *
+     * @param n                缓冲区数
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return n个缓冲区
+     * @throws NoMoreIdleSpaceException 等待超时仍然凑不齐n个缓冲区
+     */
+    @Override
+    public List<ByteBuffer> getObjects(int n, long maxTimeWaitMills) throws NoMoreIdleSpaceException {
+        assertOpen();
+        List<ByteBuffer> buffers = new ArrayList<>(n);
+        long deadline = maxTimeWaitMills < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + maxTimeWaitMills;
+        try {
+            while (buffers.size() < n) {
+                ByteBuffer buffer = tryBorrow(classes[0]);
+                if (buffer != null) {
+                    buffers.add(buffer);
+                    continue;
+                }
+                if (!blocked || System.currentTimeMillis() >= deadline) {
+                    metrics.incrementTimeout();
+                    throw new NoMoreIdleSpaceException("unable to get " + n + " buffers and the wait time is out");
+                }
+                Thread.sleep(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            returnAll(buffers);
+            throw new NoMoreIdleSpaceException("interrupted when waiting for idle buffers");
+        } catch (NoMoreIdleSpaceException e) {
+            returnAll(buffers);
+            throw e;
+        }
+        return buffers;
+    }
+
+    private void returnAll(List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            try {
+                returnObject(buffer);
+            } catch (IllegalObjectStateException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 一次返还多个缓冲区，先检查所有缓冲区的级别，都属于这个对象池时再逐个返还
+     *
+     * @param buffers 待返还的缓冲区
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObjects(Collection<ByteBuffer> buffers) throws IllegalObjectStateException {
+        for (ByteBuffer buffer : buffers) {
+            classOf(buffer);
+        }
+        for (ByteBuffer buffer : buffers) {
+            returnObject(buffer);
+        }
+    }
+
+    /**
+     * 为最小级别申请一块直接内存
+     */
+    @Override
+    public void addObject() {
+        assertOpen();
+        ByteBuffer buffer = grow(classes[0]);
+        if (buffer == null) {
+            throw new IllegalStateException("the direct memory budget is used up");
+        }
+        classes[0].offer(buffer);
+    }
+
+    /**
+     * 获取最多能切分出的最小级别缓冲区数
+     *
+     * @return 直接内存预算除以最小缓冲区大小
+     */
+    @Override
+    public int getMaxNum() {
+        return (int) Math.min(Integer.MAX_VALUE, maxDirectMemory / classes[0].bufferSize);
+    }
+
+    /**
+     * 获取借出没有返还的缓冲区数
+     *
+     * @return 所有级别借出的缓冲区数
+     */
+    @Override
+    public int getActiveNum() {
+        int active = 0;
+        for (SizeClass sc : classes) {
+            active += sc.carvedNum - sc.size;
+        }
+        return active;
+    }
+
+    /**
+     * 获取所有级别的空闲缓冲区数
+     *
+     * @return 空闲缓冲区数
+     */
+    public int getIdleNum() {
+        int idle = 0;
+        for (SizeClass sc : classes) {
+            idle += sc.size;
+        }
+        return idle;
+    }
+
+    /**
+     * 获取已经申请的直接内存总量
+     *
+     * @return 直接内存总量，单位字节
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    @Override
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 关闭对象池，释放所有缓冲区都已空闲的级别，让等待的请求失败
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (maintenance != null) {
+            maintenance.cancel();
+        }
+        clear();
+        for (SizeClass sc : classes) {
+            sc.signal();
+            Waiter waiter = sc.asyncWaiters.poll();
+            while (waiter != null) {
+                waiter.future.completeExceptionally(new IllegalStateException("pool is not open"));
+                waiter = sc.asyncWaiters.poll();
+            }
+        }
+        LogUtil.info(TAG, "pool is closed at %s", new Date());
+    }
+
+    /**
+     * 释放所有缓冲区都已空闲的级别
+     * 还有缓冲区借出的级别不释放
+     */
+    @Override
+    public void clear() {
+        release(Long.MAX_VALUE);
+    }
+
+    /**
+     * 释放超过最长生命周期没有借出过、并且缓冲区全部空闲的级别
+     */
+    @Override
+    public void removeTimeOutedObject() {
+        release(System.currentTimeMillis() - maxLiveTime);
+    }
+
+    /**
+     * 释放上次借出早于timeout并且缓冲区全部空闲的级别，释放后通知等待的请求使用腾出的预算
+     * 内存块只是不再被引用，不主动释放：调用{@link DirectByteBufferPool#destroy(PooledObject)}的缓冲区可能仍被调用方持有，
+     * 直接内存由垃圾回收器回收，在此之前不计入预算
+     *
+     * @param timeout 上次借出时间的上限
+     */
+    private void release(long timeout) {
+        long released = 0;
+        for (SizeClass sc : classes) {
+            long bytes = sc.releaseIfIdle(timeout);
+            released += bytes;
+            if (timeout != Long.MAX_VALUE) {
+                for (long i = bytes / sc.bufferSize; i > 0; i--) {
+                    metrics.incrementEvicted();
+                }
+            }
+        }
+        if (released > 0) {
+            allocatedBytes.addAndGet(-released);
+            if (waitingNum.get() > 0) {
+                notifySmaller(classes.length);
+            }
+        }
+    }
+
+    /**
+     * 缓冲区不能单独销毁，只是不再期待它返还
+     * 它所在的内存块在这个级别整级释放之前仍然计入预算；如果调用方仍然持有这个缓冲区，整级释放后内存块也要等它不再被引用才会回收
+     *
+     * @param p 待摧毁的对象
+     */
+    @Override
+    public void destroy(PooledObject<ByteBuffer> p) throws ObjectDestroyException {
+        try {
+            classOf(p.getObject()).forget();
+        } catch (IllegalObjectStateException e) {
+            throw new ObjectDestroyException(e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * 确保对象池时开着的状态
+     */
+    private void assertOpen() {
+        if (isClosed()) {
+            throw new IllegalStateException("pool is not open");
+        }
+    }
+
+    /**
+     * 在调度器中登记释放长时间空闲的直接内存的维护任务，没有申请直接内存时不调度
+     *
+     * @param config 配置类
+     * @return 对象池的登记，不在后台释放时返回null
+     */
+    private PoolMaintenanceScheduler.Registration registerMaintenance(DirectByteBufferPoolConfig config) {
+        if (config.getEvictionPeriod() < 1) {
+            return null;
+        }
+        return config.getMaintenanceScheduler().register(new PoolMaintenanceScheduler.Task() {
+            @Override
+            public long run() {
+                if (isClosed()) {
+                    return -1;
+                }
+                removeTimeOutedObject();
+                long next = Long.MAX_VALUE;
+                for (SizeClass sc : classes) {
+                    if (sc.carvedNum > 0) {
+                        next = Math.min(next, sc.lastBorrowTime);
+                    }
+                }
+                if (next == Long.MAX_VALUE) {
+                    return -1;
+                }
+                return next > Long.MAX_VALUE - maxLiveTime ? Long.MAX_VALUE : next + maxLiveTime;
+            }
+        }, config.getEvictionPeriod(), 0);
+    }
+
+    /**
+     * 一个大小级别
+     */
+    private class SizeClass {
+        final int index;
+        final int bufferSize;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition available = lock.newCondition();
+        /**
+         * 异步等待这个级别的请求
+         */
+        final ConcurrentLinkedQueue<Waiter> asyncWaiters = new ConcurrentLinkedQueue<>();
+        /**
+         * 空闲缓冲区的数组栈，由lock保护
+         */
+        private ByteBuffer[] stack = new ByteBuffer[0];
+        /**
+         * 空闲缓冲区数和切分出的缓冲区数，在lock中修改
+         */
+        volatile int size;
+        volatile int carvedNum;
+        /**
+         * 这个级别申请的直接内存总量，在lock中修改
+         */
+        long bytes;
+        /**
+         * 阻塞等待这个级别的线程数，在lock中修改
+         */
+        volatile int blockedNum;
+        /**
+         * 通知这个级别的次数，更大的级别有空闲缓冲区或者预算腾出时增加
+         * 阻塞的线程在锁外检查后、等待前比较这个值，防止在两者之间错过通知
+         */
+        final AtomicInteger signals = new AtomicInteger();
+        /**
+         * 上次借出的时间
+         */
+        volatile long lastBorrowTime = System.currentTimeMillis();
+
+        SizeClass(int index, int bufferSize) {
+            this.index = index;
+            this.bufferSize = bufferSize;
+        }
+
+        ByteBuffer poll() {
+            if (size == 0) {
+                return null;
+            }
+            lock.lock();
+            try {
+                if (size == 0) {
+                    return null;
+                }
+                ByteBuffer buffer = stack[--size];
+                stack[size] = null;
+                return buffer;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 放入空闲缓冲区，有异步等待的请求时直接交出
+         *
+         * @param buffer 空闲缓冲区
+         * @return 空闲缓冲区已经和切分出的一样多时返回false
+         */
+        boolean offer(ByteBuffer buffer) {
+            lock.lock();
+            try {
+                if (size >= carvedNum) {
+                    return false;
+                }
+                if (asyncWaiters.isEmpty()) {
+                    push(buffer);
+                    return true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            //在锁外完成future，避免在锁中执行回调
+            if (handOff(buffer)) {
+                return true;
+            }
+            lock.lock();
+            try {
+                push(buffer);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 把缓冲区交给等待最久的异步请求，跳过已经超时或取消的请求
+         *
+         * @param buffer 缓冲区
+         * @return 是否交出
+         */
+        boolean handOff(ByteBuffer buffer) {
+            Waiter waiter = asyncWaiters.poll();
+            while (waiter != null) {
+                if (waiter.future.complete(buffer)) {
+                    lastBorrowTime = System.currentTimeMillis();
+                    long elapsed = System.nanoTime() - waiter.start;
+                    metrics.recordWait(elapsed);
+                    metrics.recordBorrow(elapsed);
+                    return true;
+                }
+                waiter = asyncWaiters.poll();
+            }
+            return false;
+        }
+
+        private void push(ByteBuffer buffer) {
+            stack[size++] = buffer;
+            if (blockedNum > 0) {
+                available.signal();
+            }
+        }
+
+        /**
+         * 登记新切分的缓冲区，第一个已经借出，其余的放入空闲栈
+         *
+         * @param slices 新切分的缓冲区
+         * @param bytes  内存块大小
+         */
+        void addSlab(ByteBuffer[] slices, long bytes) {
+            lock.lock();
+            try {
+                this.bytes += bytes;
+                carvedNum += slices.length;
+                if (stack.length < carvedNum) {
+                    ByteBuffer[] grown = new ByteBuffer[Math.max(carvedNum, stack.length * 2)];
+                    System.arraycopy(stack, 0, grown, 0, size);
+                    stack = grown;
+                }
+                for (int i = 1; i < slices.length; i++) {
+                    push(slices[i]);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 通知阻塞等待的线程
+         */
+        void signal() {
+            signals.incrementAndGet();
+            if (blockedNum == 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 不再期待一个借出的缓冲区返还
+         */
+        void forget() {
+            lock.lock();
+            try {
+                if (carvedNum > size) {
+                    carvedNum--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 缓冲区全部空闲并且上次借出早于timeout时整级释放
+         *
+         * @param timeout 上次借出时间的上限
+         * @return 释放的直接内存字节数
+         */
+        long releaseIfIdle(long timeout) {
+            if (carvedNum == 0 || size < carvedNum || lastBorrowTime >= timeout) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                if (carvedNum == 0 || size < carvedNum || lastBorrowTime >= timeout) {
+                    return 0;
+                }
+                long released = bytes;
+                stack = new ByteBuffer[0];
+                size = 0;
+                carvedNum = 0;
+                bytes = 0;
+                return released;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 一个异步等待的请求
+     */
+    private static class Waiter {
+        final CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        final long start;
+        volatile ScheduledFuture<?> timeout;
+
+        Waiter(long start) {
+            this.start = start;
+        }
+    }
+}
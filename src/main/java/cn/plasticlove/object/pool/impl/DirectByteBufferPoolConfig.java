@@ -0,0 +1,177 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPoolConfig;
+
+/**
+ * 针对{@link DirectByteBufferPool}的配置类
+ * 相比于{@link BaseObjectPoolConfig}增加了缓冲区大小的范围、每块直接内存的大小和直接内存的总预算
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class DirectByteBufferPoolConfig extends BaseObjectPoolConfig {
+    /**
+     * 最小缓冲区大小默认值
+     */
+    static final int MIN_BUFFER_SIZE = 512;
+    /**
+     * 最大缓冲区大小默认值
+     */
+    static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    /**
+     * 每次向系统申请的直接内存块大小默认值
+     */
+    static final int SLAB_SIZE = 1024 * 1024;
+    /**
+     * 直接内存总预算默认值
+     */
+    static final long MAX_DIRECT_MEMORY = 64 * 1024 * 1024L;
+    /**
+     * 最小缓冲区大小，向上取整为2的幂
+     */
+    private int minBufferSize = MIN_BUFFER_SIZE;
+    /**
+     * 最大缓冲区大小，向上取整为2的幂
+     */
+    private int maxBufferSize = MAX_BUFFER_SIZE;
+    /**
+     * 每次向系统申请的直接内存块大小，切分成同一级别的多个缓冲区
+     * 比缓冲区大小还小时一块只切出一个缓冲区
+     */
+    private int slabSize = SLAB_SIZE;
+    /**
+     * 所有级别申请的直接内存总量上限，单位字节
+     * 限制的是对象池持有的内存块，释放的内存块要等垃圾回收后才真正归还系统，见{@link DirectByteBufferPoolConfig#setMaxDirectMemory(long)}
+     */
+    private long maxDirectMemory = MAX_DIRECT_MEMORY;
+    /**
+     * 是否使用阻塞机制
+     * 默认为true
+     */
+    private boolean blocked = true;
+    /**
+     * 两次释放长时间空闲的直接内存之间的最短间隔
+     * 小于1时不在后台释放，只能手动调用{@link DirectByteBufferPool#removeTimeOutedObject()}
+     */
+    private long evictionPeriod = SimpleBaseObjectPoolConfig.EVICTION_PERIOD_MILLS;
+    /**
+     * 执行后台释放的调度器
+     * 为null时使用所有对象池共用的{@link PoolMaintenanceScheduler#getShared()}
+     */
+    private PoolMaintenanceScheduler maintenanceScheduler;
+
+    public DirectByteBufferPoolConfig() {
+        super();
+    }
+
+    public DirectByteBufferPoolConfig(int minBufferSize, int maxBufferSize, long maxDirectMemory) {
+        super();
+        this.minBufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.maxDirectMemory = maxDirectMemory;
+    }
+
+    public int getMinBufferSize() {
+        return minBufferSize;
+    }
+
+    public void setMinBufferSize(int minBufferSize) {
+        this.minBufferSize = minBufferSize;
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    public void setMaxBufferSize(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * 获取每次向系统申请的直接内存块大小
+     *
+     * @return 直接内存块大小，单位字节
+     */
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * 设置每次向系统申请的直接内存块大小
+     * 一块内存只有在切出的缓冲区全部空闲时才能整块释放，太大会让释放更难发生
+     *
+     * @param slabSize 直接内存块大小，单位字节
+     */
+    public void setSlabSize(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * 获取直接内存总预算
+     *
+     * @return 直接内存总量上限，单位字节
+     */
+    public long getMaxDirectMemory() {
+        return maxDirectMemory;
+    }
+
+    /**
+     * 设置直接内存总预算
+     * 达到预算后不再申请新的内存块，只能等待其他线程返还缓冲区
+     * <p>
+     * 预算只限制对象池同时持有的内存块：整级释放时预算立即归还，但内存块只是不再被引用，
+     * 要等垃圾回收器回收{@link java.nio.ByteBuffer}后直接内存才真正释放。释放和重新申请频繁时，
+     * 实际占用的直接内存可能暂时超过预算，需要严格限制时应同时设置JVM的-XX:MaxDirectMemorySize。
+     * </p>
+     *
+     * @param maxDirectMemory 直接内存总量上限，单位字节
+     */
+    public void setMaxDirectMemory(long maxDirectMemory) {
+        this.maxDirectMemory = maxDirectMemory;
+    }
+
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    public void setBlocked(boolean blocked) {
+        this.blocked = blocked;
+    }
+
+    /**
+     * 获取两次释放长时间空闲的直接内存之间的最短间隔
+     *
+     * @return 间隔，单位毫秒
+     */
+    public long getEvictionPeriod() {
+        return evictionPeriod;
+    }
+
+    /**
+     * 设置两次释放长时间空闲的直接内存之间的最短间隔
+     *
+     * @param evictionPeriod 间隔，单位毫秒，小于1时不在后台释放
+     */
+    public void setEvictionPeriod(long evictionPeriod) {
+        this.evictionPeriod = evictionPeriod;
+    }
+
+    /**
+     * 获取执行后台释放的调度器
+     *
+     * @return 调度器，没有设置时为所有对象池共用的调度器
+     */
+    public PoolMaintenanceScheduler getMaintenanceScheduler() {
+        return maintenanceScheduler == null ? PoolMaintenanceScheduler.getShared() : maintenanceScheduler;
+    }
+
+    /**
+     * 设置执行后台释放的调度器
+     *
+     * @param maintenanceScheduler 调度器
+     */
+    public void setMaintenanceScheduler(PoolMaintenanceScheduler maintenanceScheduler) {
+        this.maintenanceScheduler = maintenanceScheduler;
+    }
+}
@@ -0,0 +1,122 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.PooledObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 先进先出的空闲对象容器，基于数组的多生产者多消费者环形队列
+ * 每个位置带一个序号，放入和取出的线程先通过CAS移动队尾或队头，
+ * 再根据序号判断这个位置是否可以写入或读取，不需要为每次放入分配节点。
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class FifoIdleObjectStore<T> extends IdleObjectStore<T> {
+    /**
+     * 队列中的对象，长度为不小于容量的2的幂，下标通过掩码计算
+     * 队列中的对象和占位标记数不超过容量，多出来的位置不会被使用
+     */
+    private final AtomicReferenceArray<Object> slots;
+    /**
+     * 每个位置的序号
+     * 等于入队位置时可以写入，等于入队位置加一时可以读取
+     */
+    private final AtomicLongArray sequences;
+    /**
+     * 下标掩码
+     */
+    private final int mask;
+    /**
+     * 下一个入队位置
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * 下一个出队位置
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    public FifoIdleObjectStore(int capacity) {
+        super(capacity);
+        int length = 1;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(length);
+        this.sequences = new AtomicLongArray(length);
+        for (int i = 0; i < length; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = length - 1;
+    }
+
+    @Override
+    protected boolean push(PooledObject<T> p) {
+        for (; ; ) {
+            long pos = tail.get();
+            //数组长度可能大于容量，按容量判断是否已满
+            if (pos - head.get() >= capacity) {
+                return false;
+            }
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    //先记录位置再放入，其他线程看到对象时位置一定是最新的
+                    p.setIdleIndex(index);
+                    slots.set(index, p);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                //队列已满
+                if (pos - head.get() > mask) {
+                    return false;
+                }
+                //这个位置已经被取走，但取的线程还没有释放，等待释放
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    protected Object pop() {
+        for (; ; ) {
+            long pos = head.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    Object o = slots.getAndSet(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return o;
+                }
+            } else if (diff < 0) {
+                //队列为空
+                return null;
+            }
+        }
+    }
+
+    @Override
+    protected boolean replaceRemoved(PooledObject<T> p) {
+        for (int i = 0; i <= mask; i++) {
+            if (slots.get(i) == REMOVED) {
+                p.setIdleIndex(i);
+                if (slots.compareAndSet(i, REMOVED, p)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean markRemoved(PooledObject<T> p) {
+        int i = p.getIdleIndex();
+        return i >= 0 && i <= mask && slots.get(i) == p && slots.compareAndSet(i, p, REMOVED);
+    }
+}
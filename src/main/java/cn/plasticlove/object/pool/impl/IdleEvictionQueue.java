@@ -0,0 +1,189 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+import cn.plasticlove.object.pool.PooledObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按空闲开始时间排列的过期检查队列，清除过期空闲对象时不再遍历所有对象
+ * <p>
+ * 对象登记到对象池时加入队列，之后一直留在队列中直到被销毁。每个对象在队列中有一个检查时间点，
+ * 清除时只从队头取出检查时间点不晚于过期时间点的对象：
+ * 空闲且过期的对象交给对象池销毁；空闲但在此期间被重新使用过的对象，检查时间点推后到实际的上次使用时间；
+ * 正在使用的对象最早也要从现在开始空闲，检查时间点推后到现在；已经销毁的对象直接丢弃。
+ * </p>
+ * <p>
+ * 返还对象时不需要操作队列，每个对象在一个最长生命周期内最多被检查一次，
+ * 单次清除的耗时和过期对象数成正比，而不是和对象总数成正比。
+ * </p>
+ * <p>
+ * 新登记的对象按登记时间放入无锁队列，本身就是有序的；被检查过、检查时间点推后的对象放入按检查时间点排序的堆，
+ * 堆只在持有锁时访问。清除时依次取两者中检查时间点较早的对象。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class IdleEvictionQueue<T> {
+    /**
+     * 队列所属的对象池，不属于该对象池的对象已经被销毁
+     */
+    private final BaseObjectPool<T> pool;
+    /**
+     * 新登记、还没有被检查过的对象，按登记时间排列
+     */
+    private final ConcurrentLinkedQueue<Entry<T>> added = new ConcurrentLinkedQueue<>();
+    /**
+     * 被检查过的对象，按检查时间点排序，只在持有{@link IdleEvictionQueue#lock}时访问
+     */
+    private final PriorityQueue<Entry<T>> entries = new PriorityQueue<>();
+    /**
+     * 同一时间只有一个线程在清除
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    IdleEvictionQueue(BaseObjectPool<T> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 登记新建的对象
+     * 检查时间点取登记的时间，保证新登记的对象按检查时间点排列
+     *
+     * @param p 新建的对象
+     */
+    void add(PooledObject<T> p) {
+        added.add(new Entry<>(p, System.currentTimeMillis()));
+    }
+
+    /**
+     * 取出检查时间点不晚于timeout的对象，销毁其中空闲且过期的对象
+     *
+     * @param timeout 过期时间点，上次使用时间不晚于该时间点的空闲对象视为过期
+     * @param evictor 销毁过期对象的操作
+     * @return 销毁的对象数
+     */
+    int evict(long timeout, Evictor<T> evictor) {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            int evicted = 0;
+            //推后的对象在本次清除结束后再放回堆，保证每个对象一次最多检查一次
+            List<Entry<T>> later = new ArrayList<>();
+            Entry<T> e;
+            while ((e = next(timeout)) != null) {
+                PooledObject<T> p = e.p;
+                if (p.getPool() != pool) {
+                    continue;
+                }
+                if (p.isIdel()) {
+                    long lastUsedTime = p.getLastUsedTime();
+                    if (lastUsedTime > timeout) {
+                        e.time = lastUsedTime;
+                        later.add(e);
+                        continue;
+                    }
+                    if (evictor.evict(p)) {
+                        evicted++;
+                        continue;
+                    }
+                    //没有销毁：已经被其他线程销毁时丢弃，被其他线程取走时推后
+                    if (p.getPool() != pool) {
+                        continue;
+                    }
+                }
+                e.time = now;
+                later.add(e);
+            }
+            entries.addAll(later);
+            return evicted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取最早的检查时间点
+     *
+     * @return 最早的检查时间点，队列中没有对象时返回{@link Long#MAX_VALUE}
+     */
+    long nextCheckTime() {
+        lock.lock();
+        try {
+            Entry<T> a = added.peek();
+            Entry<T> h = entries.peek();
+            long next = Long.MAX_VALUE;
+            if (a != null) {
+                next = a.time;
+            }
+            if (h != null && h.time < next) {
+                next = h.time;
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从新登记的对象和堆中取出检查时间点较早的一个
+     *
+     * @param timeout 过期时间点
+     * @return 检查时间点不晚于timeout的对象，没有时返回null
+     */
+    private Entry<T> next(long timeout) {
+        Entry<T> a = added.peek();
+        Entry<T> h = entries.peek();
+        if (a != null && a.time <= timeout && (h == null || a.time <= h.time)) {
+            return added.poll();
+        }
+        if (h != null && h.time <= timeout) {
+            return entries.poll();
+        }
+        return null;
+    }
+
+    /**
+     * 销毁过期对象的操作
+     *
+     * @param <T>
+     */
+    interface Evictor<T> {
+        /**
+         * 把过期的空闲对象从空闲容器中移除并销毁
+         *
+         * @param p 过期的空闲对象
+         * @return 是否销毁，对象已经被其他线程取走时返回false
+         */
+        boolean evict(PooledObject<T> p);
+    }
+
+    /**
+     * 队列中的一个对象
+     *
+     * @param <T>
+     */
+    private static class Entry<T> implements Comparable<Entry<T>> {
+        final PooledObject<T> p;
+        /**
+         * 检查时间点，不晚于对象实际的上次使用时间
+         */
+        long time;
+
+        Entry(PooledObject<T> p, long time) {
+            this.p = p;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Entry<T> o) {
+            return Long.compare(time, o.time);
+        }
+    }
+}
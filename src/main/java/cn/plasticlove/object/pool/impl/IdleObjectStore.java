@@ -0,0 +1,196 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.ObtainPolicy;
+import cn.plasticlove.object.pool.PooledObject;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 存放空闲对象的无锁容器，用于替代{@link java.util.concurrent.LinkedBlockingDeque}
+ * 放入和取出都只通过CAS完成，不加锁，也不会为每次操作分配节点。
+ * 容器本身不阻塞：取不到对象时直接返回null，需要等待的请求由对象池的等待队列{@link AsyncWaiters}挂起，对象返还时直接交给它们。
+ * <p>
+ * 被{@link IdleObjectStore#remove(PooledObject)}移除的对象在容器中留下一个占位标记，
+ * 取出时跳过，容器满时放入的对象会复用这些位置，因此移除不会占用容器的容量。
+ * 放入时对象记录自己所在的位置{@link PooledObject#getIdleIndex()}，移除只需要检查这一个位置。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see LifoIdleObjectStore 后进先出的实现
+ * @see FifoIdleObjectStore 先进先出的实现
+ **/
+
+public abstract class IdleObjectStore<T> {
+    /**
+     * 被移除对象留下的占位标记
+     */
+    static final Object REMOVED = new Object();
+    /**
+     * 容器容量
+     */
+    protected final int capacity;
+    /**
+     * 容器中的空闲对象数，不包括占位标记
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * 容器中的占位标记数
+     */
+    private final AtomicInteger removedNum = new AtomicInteger();
+
+    protected IdleObjectStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 根据获取对象的策略创建空闲对象容器
+     *
+     * @param obtainPolicy 获取对象的策略
+     * @param capacity     容器容量
+     * @param <T>          对象类型
+     * @return LIFO策略返回{@link LifoIdleObjectStore}，否则返回{@link FifoIdleObjectStore}
+     */
+    public static <T> IdleObjectStore<T> create(ObtainPolicy obtainPolicy, int capacity) {
+        if (obtainPolicy != null && obtainPolicy.isLifo()) {
+            return new LifoIdleObjectStore<>(capacity);
+        }
+        return new FifoIdleObjectStore<>(capacity);
+    }
+
+    /**
+     * 放入空闲对象
+     *
+     * @param p 空闲对象
+     * @return 容器已满时返回false
+     */
+    public boolean offer(PooledObject<T> p) {
+        if (p == null) {
+            throw new NullPointerException();
+        }
+        size.incrementAndGet();
+        if (push(p)) {
+            return true;
+        }
+        //容器满时才去复用占位标记的位置，复用时占位标记可能刚被取走，再尝试放入一次
+        if (removedNum.get() > 0) {
+            if (replaceRemoved(p)) {
+                //被复用的占位标记不会再被取出，在这里减掉
+                removedNum.decrementAndGet();
+                return true;
+            }
+            if (push(p)) {
+                return true;
+            }
+        }
+        size.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * 依次放入多个空闲对象
+     *
+     * @param ps 空闲对象
+     * @return 放入的对象数，容器已满时后面的对象不再放入
+     */
+    public int offerAll(List<PooledObject<T>> ps) {
+        int offered = 0;
+        for (PooledObject<T> p : ps) {
+            if (!offer(p)) {
+                break;
+            }
+            offered++;
+        }
+        return offered;
+    }
+
+    /**
+     * 取出空闲对象，不阻塞
+     *
+     * @return 空闲对象，容器为空时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public PooledObject<T> poll() {
+        for (; ; ) {
+            Object o = pop();
+            if (o == null) {
+                return null;
+            }
+            if (o == REMOVED) {
+                removedNum.decrementAndGet();
+                continue;
+            }
+            size.decrementAndGet();
+            return (PooledObject<T>) o;
+        }
+    }
+
+    /**
+     * 移除指定的空闲对象
+     *
+     * @param p 待移除的对象
+     * @return 对象不在容器中（比如已经被其他线程取走）时返回false
+     */
+    public boolean remove(PooledObject<T> p) {
+        if (p == null || !markRemoved(p)) {
+            return false;
+        }
+        removedNum.incrementAndGet();
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * 获取容器中的空闲对象数
+     *
+     * @return 空闲对象数
+     */
+    public int size() {
+        return Math.max(size.get(), 0);
+    }
+
+    /**
+     * 获取容器容量
+     *
+     * @return 容器容量
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 放入对象，放入前通过{@link PooledObject#setIdleIndex(int)}记录位置
+     *
+     * @param p 空闲对象
+     * @return 容器已满时返回false
+     */
+    protected abstract boolean push(PooledObject<T> p);
+
+    /**
+     * 取出对象
+     *
+     * @return 空闲对象或者占位标记{@link IdleObjectStore#REMOVED}，容器为空时返回null
+     */
+    protected abstract Object pop();
+
+    /**
+     * 用对象替换容器中的一个占位标记，替换前记录位置
+     *
+     * @param p 空闲对象
+     * @return 没有找到占位标记时返回false
+     */
+    protected abstract boolean replaceRemoved(PooledObject<T> p);
+
+    /**
+     * 把容器中的指定对象替换为占位标记
+     * 只检查对象记录的位置，不遍历容器
+     *
+     * @param p 待移除的对象
+     * @return 对象不在容器中时返回false
+     */
+    protected abstract boolean markRemoved(PooledObject<T> p);
+}
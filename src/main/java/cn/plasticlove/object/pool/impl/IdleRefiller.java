@@ -0,0 +1,130 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.util.ThreadUtil;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在后台补充空闲对象
+ * <p>
+ * 获取对象的线程发现空闲对象数低于最小值时只调用{@link IdleRefiller#signal()}，
+ * 由后台线程调用对象工厂新建对象，对象工厂的耗时不会计入获取对象的耗时；
+ * 维护任务清除过期对象、回收泄漏对象后也只调用signal，维护线程不会被对象工厂拖慢。
+ * 同时补充的后台线程数不超过concurrency，也不超过缺少的空闲对象数；没有缺少时后台线程空闲一段时间后退出。
+ * </p>
+ * <p>
+ * concurrency小于1时不使用后台线程，signal直接在调用线程中补充。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class IdleRefiller {
+    /**
+     * 需要补充空闲对象的对象池
+     */
+    private final Source source;
+    /**
+     * 同时补充的后台线程数上限
+     */
+    private final int concurrency;
+    /**
+     * 正在运行的补充任务数
+     */
+    private final AtomicInteger runningNum = new AtomicInteger();
+    /**
+     * 执行补充任务的线程池，concurrency小于1时为null
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * 补充任务
+     */
+    private final Runnable task = new Runnable() {
+        @Override
+        public void run() {
+            int created = 0;
+            try {
+                created = source.refill();
+            } finally {
+                runningNum.decrementAndGet();
+            }
+            //退出前再检查一次，防止错过补充期间的信号；没有新建任何对象时不再重试，防止对象工厂一直失败时空转
+            if (created > 0) {
+                signal();
+            }
+        }
+    };
+
+    /**
+     * @param name        后台线程名
+     * @param concurrency 同时补充的后台线程数上限
+     * @param source      需要补充空闲对象的对象池
+     */
+    IdleRefiller(String name, int concurrency, Source source) {
+        this.source = source;
+        this.concurrency = concurrency;
+        if (concurrency < 1) {
+            this.executor = null;
+            return;
+        }
+        this.executor = ThreadUtil.newDaemonExecutor(name, concurrency);
+    }
+
+    /**
+     * 通知空闲对象可能不足
+     * 只读取计数，不足时提交补充任务，不会阻塞调用线程
+     */
+    void signal() {
+        if (executor == null) {
+            source.refill();
+            return;
+        }
+        for (; ; ) {
+            int running = runningNum.get();
+            int deficit = source.getDeficit();
+            if (deficit <= 0 || running >= concurrency || running >= deficit) {
+                return;
+            }
+            if (runningNum.compareAndSet(running, running + 1)) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    //对象池已经关闭
+                    runningNum.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止后台线程
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 需要补充空闲对象的对象池
+     */
+    interface Source {
+        /**
+         * 获取还缺少的空闲对象数，已经在新建的对象不计入
+         *
+         * @return 缺少的空闲对象数，不缺少时返回0或负数
+         */
+        int getDeficit();
+
+        /**
+         * 补充空闲对象直到不低于最小空闲对象数，有请求在等待时也为等待的请求新建
+         *
+         * @return 新建的对象数
+         */
+        int refill();
+    }
+}
@@ -0,0 +1,128 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.util.ThreadUtil;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 在后台维护任务中并行校验一批空闲对象
+ * <p>
+ * 对象池每次从空闲对象中取出一批交给{@link IdleValidator#validate(List, Check)}，
+ * 这一批对象分成parallelism份，一份在维护线程中校验，其余的交给校验线程，全部完成后才返回。
+ * 校验线程空闲一段时间后退出。
+ * </p>
+ * <p>
+ * parallelism小于2时不创建线程，直接在维护线程中依次校验。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class IdleValidator<T> {
+    /**
+     * 同时校验一批对象的线程数，包括维护线程
+     */
+    private final int parallelism;
+    /**
+     * 执行校验的线程池，parallelism小于2时为null
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param name        校验线程名
+     * @param parallelism 同时校验一批对象的线程数
+     */
+    IdleValidator(String name, int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism < 2) {
+            this.executor = null;
+            return;
+        }
+        this.executor = ThreadUtil.newDaemonExecutor(name, this.parallelism - 1);
+    }
+
+    /**
+     * 校验一批对象，全部校验完成后返回
+     *
+     * @param batch 已经从空闲对象中取出的一批对象
+     * @param check 校验一个对象的操作
+     * @return 每个对象是否有效，和batch一一对应
+     */
+    boolean[] validate(final List<PooledObject<T>> batch, final Check<T> check) {
+        final boolean[] valid = new boolean[batch.size()];
+        final int chunks = executor == null ? 1 : Math.min(parallelism, batch.size());
+        final CountDownLatch done = new CountDownLatch(chunks - 1);
+        for (int c = 1; c < chunks; c++) {
+            final int from = c;
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        validate(batch, valid, from, chunks, check);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                //对象池已经关闭，在当前线程中校验
+                task.run();
+            }
+        }
+        validate(batch, valid, 0, chunks, check);
+        //校验线程还在使用这些对象，被中断时也要等它们完成
+        boolean interrupted = false;
+        for (; ; ) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return valid;
+    }
+
+    /**
+     * 校验batch中从from开始、间隔为step的对象
+     */
+    private void validate(List<PooledObject<T>> batch, boolean[] valid, int from, int step, Check<T> check) {
+        for (int i = from; i < batch.size(); i += step) {
+            valid[i] = check.isValid(batch.get(i));
+        }
+    }
+
+    /**
+     * 停止校验线程
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 校验一个对象的操作
+     *
+     * @param <T>
+     */
+    interface Check<T> {
+        /**
+         * 校验一个已经从空闲对象中取出的对象
+         *
+         * @param p 待校验的对象
+         * @return 对象是否有效，出现异常时返回false
+         */
+        boolean isValid(PooledObject<T> p);
+    }
+}
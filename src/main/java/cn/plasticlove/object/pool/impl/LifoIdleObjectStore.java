@@ -0,0 +1,92 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.PooledObject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 后进先出的空闲对象容器，基于数组的Treiber栈
+ * 栈顶下标通过CAS移动，每个位置的对象通过CAS交接，不需要为每次放入分配节点，
+ * 也不会出现链表节点复用带来的ABA问题。
+ * <p>
+ * 栈顶下标移动后，对应位置的对象可能还没有被上一个线程写入或取走，此时短暂自旋等待交接完成。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class LifoIdleObjectStore<T> extends IdleObjectStore<T> {
+    /**
+     * 栈中的对象
+     */
+    private final AtomicReferenceArray<Object> slots;
+    /**
+     * 栈顶下标
+     */
+    private final AtomicInteger top = new AtomicInteger();
+
+    public LifoIdleObjectStore(int capacity) {
+        super(capacity);
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    protected boolean push(PooledObject<T> p) {
+        for (; ; ) {
+            int t = top.get();
+            if (t >= capacity) {
+                return false;
+            }
+            if (top.compareAndSet(t, t + 1)) {
+                //先记录位置再放入，其他线程看到对象时位置一定是最新的
+                p.setIdleIndex(t);
+                //等待之前取这个位置的线程把对象取走
+                while (!slots.compareAndSet(t, null, p)) {
+                    Thread.yield();
+                }
+                return true;
+            }
+        }
+    }
+
+    @Override
+    protected Object pop() {
+        for (; ; ) {
+            int t = top.get();
+            if (t <= 0) {
+                return null;
+            }
+            if (top.compareAndSet(t, t - 1)) {
+                //等待放入这个位置的线程把对象写入
+                for (; ; ) {
+                    Object o = slots.get(t - 1);
+                    if (o != null && slots.compareAndSet(t - 1, o, null)) {
+                        return o;
+                    }
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected boolean replaceRemoved(PooledObject<T> p) {
+        for (int i = 0; i < capacity; i++) {
+            if (slots.get(i) == REMOVED) {
+                p.setIdleIndex(i);
+                if (slots.compareAndSet(i, REMOVED, p)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean markRemoved(PooledObject<T> p) {
+        int i = p.getIdleIndex();
+        return i >= 0 && i < capacity && slots.get(i) == p && slots.compareAndSet(i, p, REMOVED);
+    }
+}
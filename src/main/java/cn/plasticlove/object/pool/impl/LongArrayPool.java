@@ -0,0 +1,37 @@
+package cn.plasticlove.object.pool.impl;
+
+import java.util.Arrays;
+
+/**
+ * long[]对象池，用于位图和计数数组
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see PrimitiveArrayPool
+ **/
+
+public class LongArrayPool extends PrimitiveArrayPool<long[]> {
+
+    public LongArrayPool() {
+        this(new ArrayPoolConfig());
+    }
+
+    public LongArrayPool(ArrayPoolConfig config) {
+        super(config);
+    }
+
+    @Override
+    protected long[] newArray(int length) {
+        return new long[length];
+    }
+
+    @Override
+    protected int lengthOf(long[] array) {
+        return array.length;
+    }
+
+    @Override
+    protected void clearArray(long[] array) {
+        Arrays.fill(array, 0L);
+    }
+}
@@ -0,0 +1,188 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.util.ThreadUtil;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 重置返还的对象
+ * <p>
+ * 返还对象的线程只调用{@link ObjectResetter#submit(PooledObject)}，由后台线程调用对象工厂重置和钝化对象，
+ * 再把对象放回空闲队列或交给等待的请求，重置的耗时不会计入返还对象的耗时。
+ * 对象在重置完成前不会被借出，所以借出的对象总是已经重置过的。
+ * 同时重置的后台线程数不超过concurrency，也不超过等待重置的对象数；没有等待重置的对象时后台线程空闲一段时间后退出。
+ * </p>
+ * <p>
+ * concurrency小于1时不使用后台线程，submit直接在调用线程中重置。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class ObjectResetter<T> {
+    /**
+     * 重置对象并放回对象池
+     */
+    private final Sink<T> sink;
+    /**
+     * 同时重置的后台线程数上限
+     */
+    private final int concurrency;
+    /**
+     * 等待重置的对象
+     */
+    private final Queue<PooledObject<T>> pending = new ConcurrentLinkedQueue<>();
+    /**
+     * 等待重置和正在重置的对象数
+     */
+    private final AtomicInteger pendingNum = new AtomicInteger();
+    /**
+     * 正在运行的重置任务数
+     */
+    private final AtomicInteger runningNum = new AtomicInteger();
+    /**
+     * 执行重置任务的线程池，concurrency小于1时为null
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * 重置任务，一直重置到没有等待重置的对象
+     */
+    private final Runnable task = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                PooledObject<T> p = pending.poll();
+                while (p != null) {
+                    try {
+                        sink.recycle(p);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    } finally {
+                        pendingNum.decrementAndGet();
+                    }
+                    p = pending.poll();
+                }
+            } finally {
+                runningNum.decrementAndGet();
+            }
+            //退出前再检查一次，防止错过退出期间提交的对象
+            if (!pending.isEmpty()) {
+                signal();
+            }
+        }
+    };
+
+    /**
+     * @param name        后台线程名
+     * @param concurrency 同时重置的后台线程数上限
+     * @param sink        重置对象并放回对象池
+     */
+    ObjectResetter(String name, int concurrency, Sink<T> sink) {
+        this.sink = sink;
+        this.concurrency = concurrency;
+        if (concurrency < 1) {
+            this.executor = null;
+            return;
+        }
+        this.executor = ThreadUtil.newDaemonExecutor(name, concurrency);
+    }
+
+    /**
+     * 是否在后台线程中重置
+     *
+     * @return 是否在后台重置
+     */
+    boolean isDeferred() {
+        return executor != null;
+    }
+
+    /**
+     * 获取等待重置和正在重置的对象数
+     *
+     * @return 还没有放回对象池的对象数
+     */
+    int getPendingNum() {
+        return pendingNum.get();
+    }
+
+    /**
+     * 提交一个返还的对象，在后台重置时不会阻塞调用线程
+     *
+     * @param p 返还的对象，已经不是使用中状态
+     */
+    void submit(PooledObject<T> p) {
+        if (executor == null) {
+            sink.recycle(p);
+            return;
+        }
+        pendingNum.incrementAndGet();
+        pending.offer(p);
+        signal();
+    }
+
+    /**
+     * 等待重置的对象多于正在运行的任务时提交新的重置任务
+     */
+    private void signal() {
+        for (; ; ) {
+            int running = runningNum.get();
+            if (pending.isEmpty() || running >= concurrency || running >= pendingNum.get()) {
+                return;
+            }
+            if (runningNum.compareAndSet(running, running + 1)) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    //对象池已经关闭，剩下的对象由调用线程处理
+                    runningNum.decrementAndGet();
+                    drain();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 在调用线程中处理所有等待重置的对象
+     */
+    private void drain() {
+        PooledObject<T> p = pending.poll();
+        while (p != null) {
+            try {
+                sink.recycle(p);
+            } finally {
+                pendingNum.decrementAndGet();
+            }
+            p = pending.poll();
+        }
+    }
+
+    /**
+     * 停止后台线程，已经提交的对象仍然会被处理
+     * 对象池此时已经关闭，处理方式是销毁
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            drain();
+        }
+    }
+
+    /**
+     * 重置返还的对象
+     */
+    interface Sink<T> {
+        /**
+         * 重置并钝化对象，成功后放回对象池，失败或对象池已经关闭时销毁
+         *
+         * @param p 返还的对象
+         */
+        void recycle(PooledObject<T> p);
+    }
+}
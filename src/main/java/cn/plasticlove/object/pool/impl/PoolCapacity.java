@@ -0,0 +1,110 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个对象池共用的对象总数名额
+ * <p>
+ * 对象池新建对象前先通过CAS占用一个名额，销毁对象后释放，所有对象池的对象总数之和不会超过{@link PoolCapacity#maxTotal}。
+ * 名额已满时可以让{@link Reclaimer}销毁其他对象池的空闲对象腾出名额，比如{@link SimpleKeyedObjectPool}中最久没有使用的键的空闲对象。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class PoolCapacity {
+    /**
+     * 所有对象池的对象总数上限
+     */
+    private final int maxTotal;
+    /**
+     * 所有对象池的对象总数，包括正在创建的对象
+     */
+    private final AtomicInteger totalNum = new AtomicInteger();
+    /**
+     * 名额已满时腾出名额的操作
+     */
+    private final Reclaimer reclaimer;
+
+    /**
+     * @param maxTotal  所有对象池的对象总数上限
+     * @param reclaimer 名额已满时腾出名额的操作
+     */
+    PoolCapacity(int maxTotal, Reclaimer reclaimer) {
+        this.maxTotal = maxTotal;
+        this.reclaimer = reclaimer;
+    }
+
+    /**
+     * 占用一个名额
+     *
+     * @param requester 需要新建对象的对象池
+     * @param reclaim   名额已满时是否销毁其他对象池的空闲对象腾出名额；补充最小空闲对象时不应腾出，防止对象池之间来回抢占
+     * @return 是否占用成功
+     */
+    boolean acquire(BaseObjectPool<?> requester, boolean reclaim) {
+        for (; ; ) {
+            int total = totalNum.get();
+            if (total < maxTotal) {
+                if (totalNum.compareAndSet(total, total + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            //每次腾出都会销毁一个空闲对象，空闲对象耗尽时返回false，不会一直循环
+            if (!reclaim || !reclaimer.reclaim(requester)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 释放一个名额，销毁对象或新建失败时调用
+     */
+    void release() {
+        totalNum.decrementAndGet();
+    }
+
+    /**
+     * 判断名额是否已满
+     *
+     * @return 名额是否已满
+     */
+    boolean isExhausted() {
+        return totalNum.get() >= maxTotal;
+    }
+
+    /**
+     * 获取所有对象池的对象总数
+     *
+     * @return 对象总数
+     */
+    int getTotalNum() {
+        return totalNum.get();
+    }
+
+    /**
+     * 获取所有对象池的对象总数上限
+     *
+     * @return 对象总数上限
+     */
+    int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * 名额已满时腾出名额的操作
+     */
+    interface Reclaimer {
+        /**
+         * 销毁其他对象池的一个空闲对象
+         *
+         * @param requester 需要新建对象的对象池，不会销毁它自己的空闲对象
+         * @return 是否销毁了一个对象
+         */
+        boolean reclaim(BaseObjectPool<?> requester);
+    }
+}
@@ -0,0 +1,208 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.util.LogUtil;
+import cn.plasticlove.object.pool.util.ThreadUtil;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多个对象池共用的后台维护线程
+ * <p>
+ * 每个对象池不再各自创建定时任务线程，清除过期空闲对象、补充最小空闲对象数以及异步获取对象的等待超时
+ * 都在这里的少量线程中执行，同一个JVM中有成千上万个对象池时也只占用固定数目的线程。
+ * </p>
+ * <p>
+ * 每个对象池的维护任务只在需要时才被调度：任务执行后告诉调度器下次什么时候可能有对象过期，
+ * 没有任何对象时不再调度，直到对象池新建对象时通过{@link Registration#wake()}重新唤醒。
+ * 每次调度的延迟在周期的基础上随机推后一部分，避免同时创建的对象池总是在同一时刻执行维护任务。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class PoolMaintenanceScheduler {
+    private static final String TAG = PoolMaintenanceScheduler.class.getSimpleName();
+    /**
+     * 执行维护任务的线程
+     */
+    private final ScheduledThreadPoolExecutor executor;
+    /**
+     * 已经调度或正在执行维护任务的对象池数
+     */
+    private final AtomicInteger scheduledNum = new AtomicInteger();
+
+    /**
+     * @param name    线程名
+     * @param workers 线程数
+     */
+    public PoolMaintenanceScheduler(String name, int workers) {
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, workers), ThreadUtil.daemonThreadFactory(name));
+        //等待超时的任务完成后会被取消，取消时直接从队列中移除
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * 获取所有对象池默认共用的调度器，线程数为可用处理器数的一半，最少1个，最多4个
+     *
+     * @return 默认共用的调度器
+     */
+    public static PoolMaintenanceScheduler getShared() {
+        return SharedHolder.SHARED;
+    }
+
+    /**
+     * 获取已经调度或正在执行维护任务的对象池数，没有任何对象的对象池不计入
+     *
+     * @return 已经调度的对象池数
+     */
+    public int getScheduledNum() {
+        return scheduledNum.get();
+    }
+
+    /**
+     * 停止所有线程，之后登记到这个调度器的对象池不再执行维护任务
+     * 默认共用的调度器不应当被停止
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 获取执行定时任务的线程池，用于异步获取对象的等待超时
+     *
+     * @return 执行定时任务的线程池
+     */
+    ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 登记一个对象池的维护任务，登记后不会立即调度，需要调用{@link Registration#wake()}
+     *
+     * @param task          维护任务
+     * @param periodMills   两次维护之间的最短间隔
+     * @param jitterPercent 每次调度时随机推后的最大比例
+     * @return 对象池的登记
+     */
+    Registration register(Task task, long periodMills, int jitterPercent) {
+        return new Registration(task, Math.max(1L, periodMills), Math.max(0, jitterPercent));
+    }
+
+    /**
+     * 对象池的维护任务
+     */
+    interface Task {
+        /**
+         * 执行一次维护
+         *
+         * @return 下次维护有意义的最早时间点，取自{@link System#currentTimeMillis()}；没有需要维护的对象时返回负数
+         */
+        long run();
+    }
+
+    /**
+     * 一个对象池在调度器中的登记
+     */
+    class Registration implements Runnable {
+        private static final int IDLE = 0;
+        private static final int SCHEDULED = 1;
+        private static final int RUNNING = 2;
+        private static final int CANCELLED = 3;
+        private final Task task;
+        private final long periodMills;
+        private final int jitterPercent;
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        /**
+         * 执行维护任务期间是否被唤醒过，任务结束时据此决定是否重新调度
+         */
+        private volatile boolean woken;
+        private volatile ScheduledFuture<?> future;
+
+        private Registration(Task task, long periodMills, int jitterPercent) {
+            this.task = task;
+            this.periodMills = periodMills;
+            this.jitterPercent = jitterPercent;
+        }
+
+        /**
+         * 对象池有了新的对象，还没有调度时调度一次维护任务
+         */
+        void wake() {
+            woken = true;
+            if (state.get() == IDLE && state.compareAndSet(IDLE, SCHEDULED)) {
+                scheduledNum.incrementAndGet();
+                schedule(periodMills);
+            }
+        }
+
+        /**
+         * 取消维护任务，对象池关闭时调用
+         */
+        void cancel() {
+            int prev = state.getAndSet(CANCELLED);
+            if (prev == SCHEDULED || prev == RUNNING) {
+                scheduledNum.decrementAndGet();
+            }
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(SCHEDULED, RUNNING)) {
+                return;
+            }
+            woken = false;
+            long next = System.currentTimeMillis();
+            try {
+                next = task.run();
+            } catch (RuntimeException e) {
+                LogUtil.warn(TAG, "error when maintain pool", e);
+            }
+            if (next >= 0) {
+                if (state.compareAndSet(RUNNING, SCHEDULED)) {
+                    schedule(Math.max(periodMills, next - System.currentTimeMillis()));
+                }
+                return;
+            }
+            if (!state.compareAndSet(RUNNING, IDLE)) {
+                return;
+            }
+            scheduledNum.decrementAndGet();
+            //执行期间新建的对象不会触发调度，这里补上
+            if (woken) {
+                wake();
+            }
+        }
+
+        private void schedule(long delayMills) {
+            long jitter = delayMills / 100 * jitterPercent;
+            if (jitter > 0 && jitter < Long.MAX_VALUE - delayMills) {
+                delayMills += ThreadLocalRandom.current().nextLong(jitter + 1);
+            }
+            try {
+                future = executor.schedule(this, delayMills, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //调度器已经停止
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * 延迟创建默认共用的调度器
+     */
+    private static class SharedHolder {
+        private static final PoolMaintenanceScheduler SHARED = new PoolMaintenanceScheduler("object-pool-maintenance",
+                Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    }
+}
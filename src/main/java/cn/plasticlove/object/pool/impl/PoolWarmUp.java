@@ -0,0 +1,91 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.util.ThreadUtil;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对象池创建时的预热
+ * <p>
+ * 用parallelism个线程同时新建最小空闲对象，构造方法只等待其中readyPercent%的对象创建完成，
+ * 剩下的由预热线程在后台继续创建，全部完成后预热线程退出。
+ * </p>
+ * <p>
+ * parallelism为1且readyPercent为100时不创建线程，直接在调用线程中依次新建，和以前的行为一致。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+final class PoolWarmUp {
+
+    private PoolWarmUp() {
+    }
+
+    /**
+     * 预热对象池
+     *
+     * @param name         预热线程名
+     * @param parallelism  同时新建对象的线程数
+     * @param total        需要新建的对象数
+     * @param readyPercent 返回前至少完成的百分比，0表示立即返回，100表示全部完成后返回
+     * @param step         新建一个空闲对象的操作
+     */
+    static void warmUp(String name, int parallelism, int total, int readyPercent, final Step step) {
+        if (total < 1) {
+            return;
+        }
+        parallelism = Math.max(1, Math.min(parallelism, total));
+        int ready = (int) Math.ceil(total * Math.max(0, Math.min(readyPercent, 100)) / 100.0);
+        if (parallelism == 1 && ready >= total) {
+            while (step.fillOne()) {
+                //继续新建
+            }
+            return;
+        }
+        final CountDownLatch readyLatch = new CountDownLatch(ready);
+        final AtomicInteger runningNum = new AtomicInteger(parallelism);
+        ThreadPoolExecutor executor = ThreadUtil.newDaemonExecutor(name, parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (step.fillOne()) {
+                            readyLatch.countDown();
+                        }
+                    } finally {
+                        //最后一个线程退出时，即使没有达到目标（比如对象工厂失败）也不再让构造方法等待
+                        if (runningNum.decrementAndGet() == 0) {
+                            while (readyLatch.getCount() > 0) {
+                                readyLatch.countDown();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        //已经提交的任务完成后线程自动退出
+        executor.shutdown();
+        try {
+            readyLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 新建一个空闲对象的操作
+     */
+    interface Step {
+        /**
+         * 新建一个空闲对象
+         *
+         * @return 是否新建成功，空闲对象已经足够、对象池已满、已经关闭或者新建失败时返回false
+         */
+        boolean fillOne();
+    }
+}
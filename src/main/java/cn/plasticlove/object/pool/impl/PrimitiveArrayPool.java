@@ -0,0 +1,687 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+import cn.plasticlove.object.pool.PoolMetrics;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
+import cn.plasticlove.object.pool.util.LogUtil;
+import cn.plasticlove.object.pool.util.ThreadUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基本类型数组对象池的基类
+ * <p>
+ * 数组按长度分成2的幂的多个级别，{@link PrimitiveArrayPool#borrow(int)}返回能放下所需长度的最小级别的数组，
+ * 数组长度就是级别的长度。每个级别有一个共用的无锁数组栈，另外每个线程在每个级别缓存少量数组，
+ * 同一个线程借出又返还时不需要访问共用的栈。
+ * </p>
+ * <p>
+ * 保留的空闲数组有上限：每个级别共用的栈按{@link ArrayPoolConfig#getMaxBucketElements()}限制元素总数，越长的级别保留的数组越少；
+ * 线程本地缓存只缓存不超过{@link ArrayPoolConfig#getThreadCacheMaxLength()}的数组，
+ * 并且和{@link SimpleBaseObjectPool}一样占用固定数目的槽位，线程再多也只有这么多缓存。
+ * </p>
+ * <p>
+ * 和{@link SimpleBaseObjectPool}不同，数组不包装成{@link PooledObject}，也不登记到map中：返还时根据数组长度找到级别，
+ * 共用的栈满了就丢弃，交给垃圾回收器回收；所有级别都没有空闲数组时直接新建，获取永远不会阻塞。
+ * 代价是不能识别每个数组，同一个数组返还两次不会被发现，调用方要保证返还后不再使用。
+ * 比最大长度还长的数组每次新建，返还时直接丢弃。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see ByteArrayPool
+ * @see CharArrayPool
+ * @see LongArrayPool
+ **/
+
+public abstract class PrimitiveArrayPool<A> implements BaseObjectPool<A> {
+    private static final String TAG = PrimitiveArrayPool.class.getSimpleName();
+    /**
+     * 最小级别的数组长度是2的多少次方
+     */
+    private final int minShift;
+    /**
+     * 最大级别的数组长度
+     */
+    private final int maxLength;
+    /**
+     * 各个级别共用的空闲数组，下标为0的级别最短
+     */
+    private final ArrayStack[] buckets;
+    /**
+     * 每个线程在每个级别缓存的数组数
+     */
+    private final int threadCacheSize;
+    /**
+     * 放入线程本地缓存的最大数组长度
+     */
+    private final int threadCacheMaxLength;
+    private final boolean clearOnReturn;
+    /**
+     * 所有线程的本地缓存，用于清空和清理已经结束的线程的缓存
+     * 槽位数和{@link SimpleBaseObjectPool}相同，线程第一次使用时占用一个槽位，所属线程已经结束的槽位可以被其他线程接管
+     */
+    private final AtomicReferenceArray<ThreadCache> threadCaches =
+            new AtomicReferenceArray<>(SimpleBaseObjectPool.THREAD_CACHE_SLOTS);
+    /**
+     * 当前线程的本地缓存，虚拟线程或者所有槽位都被运行中的线程占用时为null
+     */
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            Thread current = Thread.currentThread();
+            if (ThreadUtil.isVirtual(current)) {
+                return null;
+            }
+            return claimThreadCache(current);
+        }
+    };
+    /**
+     * 借出和返还的数组数，两者之差为正在使用的数组数
+     */
+    private final LongAdder borrowedNum = new LongAdder();
+    private final LongAdder returnedNum = new LongAdder();
+    private final DefaultPoolMetrics metrics = new DefaultPoolMetrics();
+    /**
+     * 后台丢弃长时间没有借出的级别的空闲数组的维护任务，没有时为null
+     */
+    private final PoolMaintenanceScheduler.Registration maintenance;
+    private final long maxLiveTime;
+    private volatile boolean closed = false;
+
+    /**
+     * @param config 自定义的对象池配置
+     */
+    protected PrimitiveArrayPool(ArrayPoolConfig config) {
+        LogUtil.info(TAG, "the pool started at %s", new Date());
+        if (config == null) {
+            throw new IllegalArgumentException("the config for this kind of pool must be ArrayPoolConfig");
+        }
+        if (config.getMinLength() < 1 || config.getMaxLength() < config.getMinLength()) {
+            throw new IllegalArgumentException("length must be positive and maxLength must not be less than minLength");
+        }
+        if (config.getMaxLength() > 1 << 30) {
+            throw new IllegalArgumentException("maxLength must not be greater than 2^30");
+        }
+        this.minShift = shift(config.getMinLength());
+        int maxShift = shift(config.getMaxLength());
+        this.maxLength = 1 << maxShift;
+        this.buckets = new ArrayStack[maxShift - minShift + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayStack(bucketCapacity(config, 1 << (minShift + i)));
+        }
+        this.threadCacheSize = Math.max(0, config.getThreadCacheSize());
+        this.threadCacheMaxLength = config.getThreadCacheMaxLength() < 1 ? maxLength : config.getThreadCacheMaxLength();
+        this.clearOnReturn = config.isClearOnReturn();
+        this.maxLiveTime = config.getMaxLiveTime();
+        this.maintenance = registerMaintenance(config);
+        LogUtil.info(TAG, "pool is inited. %d buckets; max length of array is %d", buckets.length, maxLength);
+    }
+
+    /**
+     * 新建指定长度的数组
+     *
+     * @param length 数组长度
+     * @return 新数组
+     */
+    protected abstract A newArray(int length);
+
+    /**
+     * 获取数组长度
+     *
+     * @param array 数组
+     * @return 数组长度
+     */
+    protected abstract int lengthOf(A array);
+
+    /**
+     * 把数组清零
+     *
+     * @param array 数组
+     */
+    protected abstract void clearArray(A array);
+
+    /**
+     * 长度向上取整为2的幂后的指数
+     *
+     * @param length 长度
+     * @return 指数
+     */
+    private static int shift(int length) {
+        return length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+
+    /**
+     * 获取一个长度不小于minLength的数组
+     * 数组的内容是上一个使用者留下的，除非配置了返还时清零
+     *
+     * @param minLength 需要的长度
+     * @return 数组
+     */
+    @SuppressWarnings("unchecked")
+    public A borrow(int minLength) {
+        assertOpen();
+        if (minLength < 0) {
+            throw new IllegalArgumentException("the length must not be negative");
+        }
+        borrowedNum.increment();
+        if (minLength > maxLength) {
+            return allocate(minLength);
+        }
+        int index = Math.max(0, shift(minLength) - minShift);
+        int length = 1 << (minShift + index);
+        //只在上次清理后第一次借出时写入，避免每次借出都写同一个缓存行
+        if (!buckets[index].used) {
+            buckets[index].used = true;
+        }
+        Object array = null;
+        if (threadCacheSize > 0 && length <= threadCacheMaxLength) {
+            ThreadCache cache = threadCache.get();
+            array = cache == null ? null : cache.poll(index);
+        }
+        if (array == null) {
+            array = buckets[index].pop();
+        }
+        if (array == null) {
+            return allocate(length);
+        }
+        return (A) array;
+    }
+
+    /**
+     * 计算一个级别共用的空闲数组数上限
+     *
+     * @param config 配置类
+     * @param length 级别的数组长度
+     * @return 不超过bucketCapacity，元素总数不超过maxBucketElements
+     */
+    private static int bucketCapacity(ArrayPoolConfig config, int length) {
+        return Math.max(0, Math.min(config.getBucketCapacity(), config.getMaxBucketElements() / length));
+    }
+
+    /**
+     * 为线程占用一个本地缓存的槽位
+     * 从线程id对应的槽位开始找空的槽位或者所属线程已经结束的槽位，接管时丢弃旧缓存中的数组
+     *
+     * @param thread 当前线程
+     * @return 新的本地缓存，所有槽位都被运行中的线程占用时返回null
+     */
+    private ThreadCache claimThreadCache(Thread thread) {
+        ThreadCache cache = new ThreadCache(thread, buckets.length, threadCacheSize);
+        int slots = threadCaches.length();
+        int start = (int) thread.getId();
+        for (int i = 0; i < slots; i++) {
+            int index = (start + i) & (slots - 1);
+            ThreadCache old = threadCaches.get(index);
+            if (old != null && old.isOwnerAlive()) {
+                continue;
+            }
+            if (threadCaches.compareAndSet(index, old, cache)) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 新建数组并记录耗时
+     *
+     * @param length 数组长度
+     * @return 新数组
+     */
+    private A allocate(int length) {
+        long start = System.nanoTime();
+        A array = newArray(length);
+        metrics.recordCreate(System.nanoTime() - start);
+        if (maintenance != null) {
+            maintenance.wake();
+        }
+        return array;
+    }
+
+    /**
+     * 返还数组
+     * 依次放入当前线程的本地缓存和这个级别共用的空闲数组，都满了时丢弃
+     *
+     * @param array 待返还的数组
+     * @throws IllegalObjectStateException 数组长度不是任何级别的长度
+     */
+    @Override
+    public void returnObject(A array) throws IllegalObjectStateException {
+        if (array == null) {
+            throw new IllegalObjectStateException("the array is not part of the pool");
+        }
+        int length = lengthOf(array);
+        if (length > maxLength) {
+            returnedNum.increment();
+            return;
+        }
+        int index = shift(length) - minShift;
+        if (Integer.bitCount(length) != 1 || index < 0) {
+            throw new IllegalObjectStateException("the array is not part of the pool");
+        }
+        returnedNum.increment();
+        if (isClosed()) {
+            return;
+        }
+        if (clearOnReturn) {
+            clearArray(array);
+        }
+        if (threadCacheSize > 0 && length <= threadCacheMaxLength) {
+            ThreadCache cache = threadCache.get();
+            if (cache != null && cache.offer(index, array)) {
+                return;
+            }
+        }
+        buckets[index].push(array);
+    }
+
+    /**
+     * 获取最短级别的数组
+     *
+     * @return 数组
+     */
+    @Override
+    public A getObject() {
+        return borrow(0);
+    }
+
+    /**
+     * 获取最短级别的数组的包装类
+     * 每次调用都会新建包装类，需要避免分配时使用{@link PrimitiveArrayPool#borrow(int)}
+     *
+     * @return 数组的包装类
+     */
+    @Override
+    public PooledObject<A> getPooledObject() {
+        return new PooledObject<>(getObject());
+    }
+
+    @Override
+    public void returnPooledObject(PooledObject<A> p) throws IllegalObjectStateException {
+        returnObject(p.getObject());
+    }
+
+    /**
+     * 获取最短级别的数组，获取永远不会等待
+     *
+     * @return 已经完成的future
+     */
+    @Override
+    public CompletableFuture<A> borrowAsync() {
+        if (isClosed()) {
+            return AsyncWaiters.failedFuture(new IllegalStateException("pool is not open"));
+        }
+        return CompletableFuture.completedFuture(getObject());
+    }
+
+    /**
+     * 一次获取多个最短级别的数组，获取永远不会等待
+     *
+     * @param n                数组数
+     * @param maxTimeWaitMills 不使用
+     * @return n个数组
+     */
+    @Override
+    public List<A> getObjects(int n, long maxTimeWaitMills) {
+        List<A> arrays = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            arrays.add(getObject());
+        }
+        return arrays;
+    }
+
+    /**
+     * 一次返还多个数组，先检查所有数组的长度，都属于这个对象池时再逐个返还
+     *
+     * @param arrays 待返还的数组
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObjects(Collection<A> arrays) throws IllegalObjectStateException {
+        for (A array : arrays) {
+            int length = array == null ? 0 : lengthOf(array);
+            if (array == null || length <= maxLength && (Integer.bitCount(length) != 1 || shift(length) < minShift)) {
+                throw new IllegalObjectStateException("the array is not part of the pool");
+            }
+        }
+        for (A array : arrays) {
+            returnObject(array);
+        }
+    }
+
+    /**
+     * 为最短级别新建一个空闲数组
+     */
+    @Override
+    public void addObject() {
+        assertOpen();
+        if (!buckets[0].push(allocate(1 << minShift))) {
+            throw new IllegalStateException("the bucket is full");
+        }
+    }
+
+    /**
+     * 获取所有级别共用的空闲数组数上限之和，不包括线程本地缓存
+     *
+     * @return 空闲数组数上限
+     */
+    @Override
+    public int getMaxNum() {
+        int max = 0;
+        for (ArrayStack bucket : buckets) {
+            max += bucket.capacity;
+        }
+        return max;
+    }
+
+    /**
+     * 获取借出没有返还的数组数
+     *
+     * @return 正在使用的数组数
+     */
+    @Override
+    public int getActiveNum() {
+        return (int) Math.max(0, borrowedNum.sum() - returnedNum.sum());
+    }
+
+    /**
+     * 获取所有级别共用的空闲数组数，不包括线程本地缓存
+     *
+     * @return 空闲数组数
+     */
+    public int getIdleNum() {
+        int idle = 0;
+        for (ArrayStack bucket : buckets) {
+            idle += bucket.size();
+        }
+        return idle;
+    }
+
+    @Override
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (maintenance != null) {
+            maintenance.cancel();
+        }
+        clear();
+        LogUtil.info(TAG, "pool is closed at %s", new Date());
+    }
+
+    /**
+     * 丢弃所有空闲数组，包括所有线程的本地缓存
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < buckets.length; i++) {
+            drain(i);
+        }
+    }
+
+    /**
+     * 丢弃一个级别的所有空闲数组
+     *
+     * @param index 级别
+     * @return 丢弃的数组数
+     */
+    private int drain(int index) {
+        int drained = 0;
+        while (buckets[index].pop() != null) {
+            drained++;
+        }
+        for (int i = 0; i < threadCaches.length(); i++) {
+            ThreadCache cache = threadCaches.get(i);
+            while (cache != null && cache.poll(index) != null) {
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * 是否有空闲数组，包括所有线程的本地缓存
+     *
+     * @return 有空闲数组时返回true
+     */
+    private boolean hasIdle() {
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i].size() > 0) {
+                return true;
+            }
+            for (int j = 0; j < threadCaches.length(); j++) {
+                ThreadCache cache = threadCaches.get(j);
+                if (cache != null && cache.peek(i)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 丢弃上次调用以来没有借出过的级别的空闲数组，并清理已经结束的线程的本地缓存
+     * 数组没有单独的空闲时间，后台每隔maxLiveTime调用一次，间隔就是空闲的最长时间
+     */
+    @Override
+    public void removeTimeOutedObject() {
+        for (int i = 0; i < threadCaches.length(); i++) {
+            ThreadCache cache = threadCaches.get(i);
+            if (cache != null && !cache.isOwnerAlive()) {
+                threadCaches.compareAndSet(i, cache, null);
+            }
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i].used) {
+                buckets[i].used = false;
+                continue;
+            }
+            for (int n = drain(i); n > 0; n--) {
+                metrics.incrementEvicted();
+            }
+        }
+    }
+
+    /**
+     * 数组不能单独销毁，丢弃即可
+     *
+     * @param p 待摧毁的对象
+     */
+    @Override
+    public void destroy(PooledObject<A> p) {
+        returnedNum.increment();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 没有空闲数组时直接新建，从不阻塞
+     *
+     * @return false
+     */
+    @Override
+    public boolean isBlocked() {
+        return false;
+    }
+
+    /**
+     * 确保对象池时开着的状态
+     */
+    private void assertOpen() {
+        if (isClosed()) {
+            throw new IllegalStateException("pool is not open");
+        }
+    }
+
+    /**
+     * 在调度器中登记丢弃长时间没有借出的级别的维护任务，新建数组时唤醒，没有空闲数组时不再调度
+     *
+     * @param config 配置类
+     * @return 对象池的登记，不在后台丢弃时返回null
+     */
+    private PoolMaintenanceScheduler.Registration registerMaintenance(ArrayPoolConfig config) {
+        if (config.getEvictionPeriod() < 1) {
+            return null;
+        }
+        return config.getMaintenanceScheduler().register(new PoolMaintenanceScheduler.Task() {
+            @Override
+            public long run() {
+                if (isClosed()) {
+                    return -1;
+                }
+                removeTimeOutedObject();
+                if (!hasIdle()) {
+                    return -1;
+                }
+                long now = System.currentTimeMillis();
+                return now > Long.MAX_VALUE - maxLiveTime ? Long.MAX_VALUE : now + maxLiveTime;
+            }
+        }, config.getEvictionPeriod(), 0);
+    }
+
+    /**
+     * 一个级别共用的空闲数组，基于数组的Treiber栈，和{@link LifoIdleObjectStore}相同
+     * 栈顶下标通过CAS移动，每个位置的数组通过CAS交接，放入和取出都不分配对象
+     */
+    static class ArrayStack {
+        final int capacity;
+        private final AtomicReferenceArray<Object> slots;
+        private final AtomicInteger top = new AtomicInteger();
+        /**
+         * 上次清理以来是否借出过
+         */
+        volatile boolean used;
+
+        ArrayStack(int capacity) {
+            this.capacity = capacity;
+            this.slots = new AtomicReferenceArray<>(Math.max(capacity, 1));
+        }
+
+        /**
+         * @param array 空闲数组
+         * @return 栈已满时返回false
+         */
+        boolean push(Object array) {
+            for (; ; ) {
+                int t = top.get();
+                if (t >= capacity) {
+                    return false;
+                }
+                if (top.compareAndSet(t, t + 1)) {
+                    //等待之前取这个位置的线程把数组取走
+                    while (!slots.compareAndSet(t, null, array)) {
+                        Thread.yield();
+                    }
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return 空闲数组，栈为空时返回null
+         */
+        Object pop() {
+            for (; ; ) {
+                int t = top.get();
+                if (t <= 0) {
+                    return null;
+                }
+                if (top.compareAndSet(t, t - 1)) {
+                    //等待放入这个位置的线程把数组写入
+                    for (; ; ) {
+                        Object o = slots.get(t - 1);
+                        if (o != null && slots.compareAndSet(t - 1, o, null)) {
+                            return o;
+                        }
+                        Thread.yield();
+                    }
+                }
+            }
+        }
+
+        int size() {
+            return Math.max(0, Math.min(top.get(), capacity));
+        }
+    }
+
+    /**
+     * 一个线程在每个级别缓存的数组
+     * 只有所属线程放入和取出，清空时其他线程通过CAS取走
+     */
+    static class ThreadCache {
+        /**
+         * 所属线程，线程结束后缓存可以被清理
+         */
+        private final WeakReference<Thread> owner;
+        /**
+         * 每个级别占用size个连续位置，空位为null
+         */
+        private final AtomicReferenceArray<Object> slots;
+        private final int size;
+
+        ThreadCache(Thread owner, int buckets, int size) {
+            this.owner = new WeakReference<>(owner);
+            this.size = Math.max(size, 1);
+            this.slots = new AtomicReferenceArray<>(buckets * this.size);
+        }
+
+        /**
+         * @return 所属线程是否还在运行
+         */
+        boolean isOwnerAlive() {
+            Thread t = owner.get();
+            return t != null && t.isAlive();
+        }
+
+        boolean offer(int index, Object array) {
+            int from = index * size;
+            for (int i = from; i < from + size; i++) {
+                if (slots.get(i) == null && slots.compareAndSet(i, null, array)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean peek(int index) {
+            int from = index * size;
+            for (int i = from; i < from + size; i++) {
+                if (slots.get(i) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Object poll(int index) {
+            int from = index * size;
+            for (int i = from + size - 1; i >= from; i--) {
+                Object o = slots.get(i);
+                if (o != null && slots.compareAndSet(i, o, null)) {
+                    return o;
+                }
+            }
+            return null;
+        }
+    }
+}
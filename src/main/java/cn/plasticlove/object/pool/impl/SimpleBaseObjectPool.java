@@ -4,10 +4,16 @@ import cn.plasticlove.object.pool.*;
 import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
 import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
 import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
 import cn.plasticlove.object.pool.util.LogUtil;
+import cn.plasticlove.object.pool.util.ThreadUtil;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 对象池{@link BaseObjectPool}的一个实现
@@ -25,8 +31,9 @@ import java.util.concurrent.*;
  * <p>3.使用对象池</p>
  * <p>(1). 对象池初始化出来会有{@link SimpleBaseObjectPool#minIdel}个空闲对象，存放在{@link SimpleBaseObjectPool#idleObjects}队列中；整个对象池也会有{@link SimpleBaseObjectPool#minIdel}个对象，存放在{@link SimpleBaseObjectPool#allObjects}的map中</p>
  * <p>(2). 每次获取对象，会从空闲队列中获取，这是如果空闲队列长度小于{@link SimpleBaseObjectPool#minIdel}，会新建对象加入空闲队列中，也会加入到整个对象池的{@link SimpleBaseObjectPool#allObjects}中</p>
- * <p>(3). 当{@link SimpleBaseObjectPool#allObjects}长度达到{@link SimpleBaseObjectPool#maxTotal}时，就不允许新建对象。{@link SimpleBaseObjectPool#idleObjects}的长度会随着线程获取对象而减少，当{@link SimpleBaseObjectPool#idleObjects}长度为零时，获取对象的线程会被阻塞</p>
+ * <p>(3). 当对象总数{@link SimpleBaseObjectPool#totalNum}达到{@link SimpleBaseObjectPool#maxTotal}时，就不允许新建对象，新建前通过CAS占用名额，多个线程同时新建也不会超过最大容量。{@link SimpleBaseObjectPool#idleObjects}的长度会随着线程获取对象而减少，当{@link SimpleBaseObjectPool#idleObjects}长度为零时，获取对象的线程会被阻塞</p>
  * <p>(4). 空闲对象超过{@link SimpleBaseObjectPool#maxLiveTime}会被回收.但仍需要保证对象池的最小空闲对象数。</p>
+ * <p>(5). 返还的对象优先放入当前线程的本地缓存{@link SimpleBaseObjectPool#threadCache}，同一线程下次获取时直接取回，不经过{@link SimpleBaseObjectPool#idleObjects}；空闲队列为空时，其他线程可以从这些本地缓存中窃取对象</p>
  *
  * @author luka-seu
  * @version 1.0
@@ -34,14 +41,20 @@ import java.util.concurrent.*;
 
 public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
     private static final String TAG = SimpleBaseObjectPool.class.getSimpleName();
+    /**
+     * 预先创建的没有调用栈的异常，非阻塞对象池没有空闲对象并且配置了没有调用栈的异常时抛出
+     */
+    private static final IllegalStateException NO_IDLE_OBJECT = stackless(new IllegalStateException("make object failure"));
     /**
      * 对象工厂，用于对象池中对象的创建和销毁
      */
     private final AbstractObjectPoolFactory factory;
     /**
-     * 空闲对象队列
+     * 空闲对象队列，根据获取策略使用无锁的栈或环形队列
+     *
+     * @see IdleObjectStore
      */
-    private LinkedBlockingDeque<PooledObject<T>> idleObjects;
+    private IdleObjectStore<T> idleObjects;
     /**
      * 当前线程池是否处于关闭状态
      */
@@ -77,34 +90,315 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
      */
     private volatile long maxLiveTime;
     /**
-     * 清除过期空闲对象的定时任务
+     * 在共用的调度器中清除过期空闲对象的维护任务，不在后台清除时为null
+     */
+    private final PoolMaintenanceScheduler.Registration maintenance;
+    /**
+     * 每个线程本地缓存的对象数，小于1时不使用线程本地缓存
+     */
+    private volatile int threadCacheSize = SimpleBaseObjectPoolConfig.THREAD_CACHE_SIZE;
+    /**
+     * 借出前是否校验对象
+     */
+    private volatile boolean testOnBorrow;
+    /**
+     * 返还时是否校验对象
+     */
+    private volatile boolean testOnReturn;
+    /**
+     * 是否在后台维护任务中校验空闲对象
+     */
+    private volatile boolean testWhileIdle;
+    /**
+     * 获取对象失败时是否抛出预先创建的没有调用栈的异常
+     */
+    private volatile boolean stacklessException;
+    /**
+     * 空闲校验每次维护最多检查的对象数
+     */
+    private volatile int validationBatchSize = SimpleBaseObjectPoolConfig.VALIDATION_BATCH_SIZE;
+    /**
+     * 线程本地缓存的槽位数，取不小于CPU数两倍的2的幂，最少4个，最多256个
+     */
+    static final int THREAD_CACHE_SLOTS = threadCacheSlots();
+    /**
+     * 所有线程的本地缓存，空闲队列为空时从这里窃取对象
+     * 槽位数固定，线程第一次使用时占用一个槽位，所属线程已经结束的槽位可以被其他线程接管；
+     * 窃取和移除对象时最多扫描{@link SimpleBaseObjectPool#THREAD_CACHE_SLOTS}个缓存，不随线程数增长
+     */
+    private final AtomicReferenceArray<ThreadCache<T>> threadCaches = new AtomicReferenceArray<>(THREAD_CACHE_SLOTS);
+    /**
+     * 当前线程的本地缓存，缓存当前线程最近返还的对象
+     * 虚拟线程数量多、生命周期短，本地缓存几乎不会命中，虚拟线程不使用本地缓存，值为null；
+     * 所有槽位都被运行中的线程占用时，当前线程也不使用本地缓存
+     */
+    private final ThreadLocal<ThreadCache<T>> threadCache = new ThreadLocal<ThreadCache<T>>() {
+        @Override
+        protected ThreadCache<T> initialValue() {
+            if (ThreadUtil.isVirtual(Thread.currentThread())) {
+                return null;
+            }
+            return claimThreadCache(Thread.currentThread());
+        }
+    };
+    /**
+     * 线程本地缓存中的空闲对象数
+     */
+    private final AtomicInteger cachedNum = new AtomicInteger();
+    /**
+     * 正在等待空闲对象的同步和异步请求数，由{@link SimpleBaseObjectPool#asyncWaiters}维护，作为分片时所有分片共用
+     * 有请求等待时，返还的对象直接交给等待的请求或放入空闲队列，不再进入线程本地缓存
+     */
+    private final AtomicInteger waitingNum;
+    /**
+     * 正在补充空闲对象的数目
+     * 补充前先占用名额，新建对象时不持有任何锁
+     */
+    private final AtomicInteger creatingNum = new AtomicInteger();
+    /**
+     * 对象池中的对象总数，包括正在创建的对象
+     * 新建前先通过CAS占用名额，销毁时释放，对象总数不会超过最大容量
+     */
+    private final AtomicInteger totalNum = new AtomicInteger();
+    /**
+     * 借出的对象数，状态变为使用中时加一，返还或作为泄漏对象回收时减一
+     * 作为分片时所有分片共用，对象可能由一个分片交给在另一个分片上等待的请求
+     */
+    private final AtomicInteger activeNum;
+    /**
+     * 在后台补充空闲对象，获取对象时只通知它
+     */
+    private final IdleRefiller refiller;
+    /**
+     * 按空闲开始时间排列的过期检查队列，清除过期空闲对象时只检查可能过期的对象
+     */
+    private final IdleEvictionQueue<T> evictionQueue = new IdleEvictionQueue<>(this);
+    /**
+     * 空闲校验的轮转队列，开启空闲校验时对象登记到对象池后加入队尾
+     * 每次维护只从队头取出一批检查，检查过的对象放回队尾，已经不属于该对象池的对象直接丢弃
+     */
+    private final ConcurrentLinkedQueue<PooledObject<T>> validationRing = new ConcurrentLinkedQueue<>();
+    /**
+     * 批量获取对象的锁，同一时间只有一个批量获取在凑齐对象
+     * 使用公平锁，先到的批量获取先凑齐；作为分片时所有分片共用
+     */
+    private final ReentrantLock batchLock;
+    /**
+     * 对象池的运行指标，作为分片时所有分片共用
+     */
+    private final DefaultPoolMetrics metrics;
+    /**
+     * 检测借出后长时间没有返还的泄漏对象
+     */
+    private final AbandonedObjectDetector<T> abandonedDetector;
+    /**
+     * 异步获取对象的等待队列，等待超时在共用的调度器中执行；作为分片时所有分片共用
+     */
+    private final AsyncWaiters<T> asyncWaiters;
+    /**
+     * 把对象交给等待的请求时的操作
+     */
+    private final AsyncWaiters.Lender<T> lender;
+    /**
+     * 作为{@link StripedObjectPool}的分片时所在的分片组，单独使用时为null
+     */
+    private final StripeGroup<T> group;
+    /**
+     * 作为分片时的分片下标
+     */
+    private final int stripeIndex;
+    /**
+     * 在后台维护任务中并行校验空闲对象
+     */
+    private final IdleValidator<T> idleValidator;
+    /**
+     * 和其他对象池共用的对象总数名额，单独使用时为null
+     */
+    private final PoolCapacity capacity;
+    /**
+     * 根据负载调整最小空闲对象数，作为分片时为null，由{@link StripedObjectPool}统一调整所有分片
+     */
+    private final AdaptiveSizer sizer;
+    /**
+     * 重置返还的对象，配置了后台重置时在后台线程中重置
+     */
+    private final ObjectResetter<T> resetter;
+    /**
+     * 校验一个空闲对象：激活、校验再钝化，任何一步失败都视为无效
      */
-    private ScheduledExecutorService service = Executors
-            .newSingleThreadScheduledExecutor();
+    private final IdleValidator.Check<T> idleCheck = new IdleValidator.Check<T>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean isValid(PooledObject<T> p) {
+            try {
+                factory.activateObject(p);
+                if (!factory.validateObject(p)) {
+                    return false;
+                }
+                factory.passivateObject(p);
+                return true;
+            } catch (Exception e) {
+                LogUtil.warn(TAG, "error when validate idle object", e);
+                return false;
+            }
+        }
+    };
 
     /**
      * @param factory 对象工厂
      * @param config  自定义的对象池配置
      */
     public SimpleBaseObjectPool(AbstractObjectPoolFactory factory, SimpleBaseObjectPoolConfig config) {
+        this(factory, config, null, null, 0, true);
+    }
+
+    /**
+     * 和其他对象池共用名额，构造方法中不预热
+     * 调用方确定要使用这个对象池后再调用{@link SimpleBaseObjectPool#initPool(SimpleBaseObjectPoolConfig)}预热
+     *
+     * @param factory  对象工厂
+     * @param config   自定义的对象池配置
+     * @param capacity 和其他对象池共用的对象总数名额
+     */
+    SimpleBaseObjectPool(AbstractObjectPoolFactory factory, SimpleBaseObjectPoolConfig config, PoolCapacity capacity) {
+        this(factory, config, capacity, null, 0, false);
+    }
+
+    /**
+     * 作为{@link StripedObjectPool}的一个分片
+     * 最小空闲对象数取分到这个分片的部分，名额、等待队列、借出数和运行指标和其他分片共用
+     *
+     * @param factory     对象工厂
+     * @param config      对象池的配置
+     * @param group       所在的分片组
+     * @param stripeIndex 分片下标
+     */
+    SimpleBaseObjectPool(AbstractObjectPoolFactory factory, SimpleBaseObjectPoolConfig config, StripeGroup<T> group, int stripeIndex) {
+        this(factory, config, group.getCapacity(), group, stripeIndex, true);
+    }
+
+    /**
+     * @param factory     对象工厂
+     * @param config      自定义的对象池配置
+     * @param capacity    和其他对象池共用的对象总数名额，为null时只受{@link SimpleBaseObjectPoolConfig#getMaxTotal()}限制
+     * @param group       作为分片时所在的分片组，单独使用时为null
+     * @param stripeIndex 分片下标
+     * @param warmUp      是否在构造方法中预热
+     */
+    private SimpleBaseObjectPool(AbstractObjectPoolFactory factory, SimpleBaseObjectPoolConfig config, PoolCapacity capacity,
+                                 StripeGroup<T> group, int stripeIndex, boolean warmUp) {
 
-        LogUtil.info(TAG, String.format("the pool started at %s", new Date()));
+        LogUtil.info(TAG, "the pool started at %s", new Date());
+        this.capacity = capacity;
+        this.group = group;
+        this.stripeIndex = stripeIndex;
 
         if (factory == null) {
-            LogUtil.info(TAG, "SimpleObjectPoolFactory must not be null");
+            LogUtil.warn(TAG, "SimpleObjectPoolFactory must not be null");
             throw new IllegalStateException("factory is null");
 
         }
         this.factory = factory;
 
         if (config == null) {
-            LogUtil.info(TAG, "SimpleBaseObjectPoolConfig must not be null");
+            LogUtil.warn(TAG, "SimpleBaseObjectPoolConfig must not be null");
             throw new IllegalArgumentException("the config for this kind of pool must be SimpleBaseObjectPoolConfig");
         }
         this.setConfig(config);
-        this.idleObjects = new LinkedBlockingDeque<>(getMaxTotal());
-        initPool();
-        removeTask();
+        if (group != null) {
+            setMinIdel(group.getMinIdel(stripeIndex));
+            this.metrics = group.getMetrics();
+            this.waitingNum = group.getWaitingNum();
+            this.activeNum = group.getActiveNum();
+            this.batchLock = group.getBatchLock();
+        } else {
+            this.metrics = new DefaultPoolMetrics();
+            this.waitingNum = new AtomicInteger();
+            this.activeNum = new AtomicInteger();
+            this.batchLock = new ReentrantLock(true);
+        }
+        this.refiller = new IdleRefiller("object-pool-refill", config.getRefillConcurrency(), new IdleRefiller.Source() {
+            @Override
+            public int getDeficit() {
+                return Math.min(refillTarget() - getIdleNum() - creatingNum.get(), getMaxTotal() - totalNum.get());
+            }
+
+            @Override
+            public int refill() {
+                return ensureMinIdel();
+            }
+        });
+        this.idleObjects = IdleObjectStore.create(getObtainPolicy(), getMaxTotal());
+        this.abandonedDetector = new AbandonedObjectDetector<>(config, metrics);
+        this.asyncWaiters = group != null ? group.getAsyncWaiters() : new AsyncWaiters<T>(waitingNum, metrics,
+                config.getMaintenanceScheduler().getExecutor(), abandonedDetector, config.isStacklessException());
+        this.lender = new AsyncWaiters.Lender<T>() {
+            @Override
+            public boolean activate(PooledObject<T> p) {
+                return SimpleBaseObjectPool.this.activate(p);
+            }
+
+            @Override
+            public boolean passivate(PooledObject<T> p) {
+                return SimpleBaseObjectPool.this.passivate(p, false);
+            }
+
+            @Override
+            public void lent(PooledObject<T> p) {
+                activeNum.incrementAndGet();
+            }
+
+            @Override
+            public void replace() {
+                refiller.signal();
+            }
+        };
+        this.idleValidator = new IdleValidator<>("object-pool-validate", config.getValidationParallelism());
+        this.resetter = new ObjectResetter<>("object-pool-reset", config.getResetConcurrency(), new ObjectResetter.Sink<T>() {
+            @Override
+            public void recycle(PooledObject<T> p) {
+                try {
+                    SimpleBaseObjectPool.this.recycle(p, false);
+                } catch (ObjectDestroyException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        this.sizer = group != null ? null : new AdaptiveSizer(config, getMaxTotal(), metrics, new AdaptiveSizer.Target() {
+            @Override
+            public int getActiveNum() {
+                return SimpleBaseObjectPool.this.getActiveNum();
+            }
+
+            @Override
+            public int getWaitingNum() {
+                return SimpleBaseObjectPool.this.getWaitingNum();
+            }
+
+            @Override
+            public int getIdleNum() {
+                return SimpleBaseObjectPool.this.getIdleNum();
+            }
+
+            @Override
+            public int getMinIdel() {
+                return SimpleBaseObjectPool.this.getMinIdel();
+            }
+
+            @Override
+            public void setMinIdel(int minIdel) {
+                updateMinIdel(minIdel);
+            }
+
+            @Override
+            public boolean evictIdle() {
+                return SimpleBaseObjectPool.this.evictIdle();
+            }
+        });
+        this.maintenance = registerMaintenance(config);
+        if (warmUp) {
+            initPool(config);
+        }
 
     }
 
@@ -120,6 +414,12 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
         setObtainPolicy(config.getObtainPolicy());
         setBlocked(config.isBlocked());
         setMaxLiveTime(config.getMaxLiveTime());
+        setThreadCacheSize(config.getThreadCacheSize());
+        this.testOnBorrow = config.isTestOnBorrow();
+        this.testOnReturn = config.isTestOnReturn();
+        this.testWhileIdle = config.isTestWhileIdle();
+        this.validationBatchSize = Math.max(1, config.getValidationBatchSize());
+        this.stacklessException = config.isStacklessException();
     }
 
     /**
@@ -134,55 +434,116 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
 
     /**
      * 初始化对象池的最小空闲对象数
+     * 按配置的并行度预热，只等待配置的百分比完成
+     *
+     * @param config 配置类
      */
-    private void initPool() {
+    void initPool(SimpleBaseObjectPoolConfig config) {
         //当设置的最小空闲对象数小于1，直接返回
         if (getMinIdel() < 1) {
             return;
         }
-        this.ensureMinIdel(getMinIdel());
-        LogUtil.info(TAG, String.format("pool is inited. min idle objects is %d; max num of objects is %d; there are %d idle objects for use",
-                getMinIdel(), getMaxTotal(), idleObjects.size()));
+        PoolWarmUp.warmUp("object-pool-warm-up", config.getWarmUpParallelism(), getMinIdel(),
+                config.getWarmUpReadyPercent(), new PoolWarmUp.Step() {
+                    @Override
+                    public boolean fillOne() {
+                        return SimpleBaseObjectPool.this.fillOne(getMinIdel());
+                    }
+                });
+        LogUtil.info(TAG, "pool is inited. min idle objects is %d; max num of objects is %d; there are %d idle objects for use",
+                getMinIdel(), getMaxTotal(), getIdleNum());
     }
 
     /**
-     * 产生数量为idleCount的最小空闲对象数加入到空闲对象队列中
+     * 补充空闲对象，直到空闲对象数不低于{@link SimpleBaseObjectPool#refillTarget()}
+     * 新建的对象有请求在等待时直接交给等待的请求，每交出一个，等待数也随之减少
      *
-     * @param idleCount 最小空闲对象数
+     * @return 新建的对象数
      */
-    private synchronized void ensureMinIdel(int idleCount) {
+    private int ensureMinIdel() {
 
-        if (idleCount < 1 || isClosed()) {
-            return;
+        if (isClosed()) {
+            return 0;
         }
-
-        while (idleObjects.size() < idleCount) {
-            LogUtil.info(TAG, String.format("the num of idle objects %d is less than minIdle %d, create new idle objects", idleObjects.size(), idleCount));
-            //当对象池对象数超过最大值，不再确保最小空闲对象数
-            if (allObjects.keySet().size() >= getMaxTotal()) {
-                LogUtil.info(TAG, String.format("the pool size %d reached to max num %d! Create new idle object fail!", allObjects.keySet().size(), getMaxTotal()));
-                LogUtil.info(TAG, String.format("idle num of objects is %d", idleObjects.size()));
-                blocked = true;
-                break;
+        int created = 0;
+        while (fillOne(refillTarget())) {
+            created++;
+            if (LogUtil.isDebugEnabled()) {
+                LogUtil.debug(TAG, "now idle num and total num of objects is %d and %d", getIdleNum(), totalNum.get());
             }
-            PooledObject<T> p = create();
-            if (p == null) {
-                break;
-            }
-            if (this.obtainPolicy.getPolicy().equals(ObtainPolicy.LIFO)) {
-                idleObjects.addFirst(p);
-            } else {
-                idleObjects.addLast(p);
-            }
-            //从设置为空闲状态开始的时间设为上次使用的时间点
-            p.setLastUsedTime(System.currentTimeMillis());
-            allObjects.put(new PooledObjectWrap<>(p.getObject()), p);
-            LogUtil.info(TAG, String.format("now idle num and total num of objects is %d and %d", idleObjects.size(), allObjects.keySet().size()));
         }
         //防止其他线程已经关闭对象池，如果关闭，将对象池清空。防止内存泄露
         if (isClosed()) {
             clear();
         }
+        return created;
+    }
+
+    /**
+     * 后台补充的目标空闲对象数：最小空闲对象数加上正在等待的请求数
+     * 销毁对象腾出名额后，等待的请求由后台新建的对象满足，不需要等其他线程返还
+     *
+     * @return 目标空闲对象数
+     */
+    private int refillTarget() {
+        return getMinIdel() + waitingNum.get();
+    }
+
+    /**
+     * 空闲对象数低于idleCount时新建一个空闲对象
+     * 新建前先通过CAS占用{@link SimpleBaseObjectPool#creatingNum}的名额，
+     * 调用对象工厂时不持有任何锁，多个线程可以同时补充，虚拟线程也不会因此占住载体线程
+     *
+     * @param idleCount 最小空闲对象数
+     * @return 是否新建成功，空闲对象已经足够、对象池已满、已经关闭或者新建失败时返回false
+     */
+    private boolean fillOne(int idleCount) {
+        for (; ; ) {
+            if (isClosed()) {
+                return false;
+            }
+            int creating = creatingNum.get();
+            if (getIdleNum() + creating >= idleCount) {
+                return false;
+            }
+            if (LogUtil.isDebugEnabled()) {
+                LogUtil.debug(TAG, "the num of idle objects %d is less than minIdle %d, create new idle objects", getIdleNum(), idleCount);
+            }
+            //当对象池对象数超过最大值，不再确保最小空闲对象数；正在创建的对象已经计入对象总数
+            if (totalNum.get() >= getMaxTotal()) {
+                if (LogUtil.isDebugEnabled()) {
+                    LogUtil.debug(TAG, "the pool size %d reached to max num %d! Create new idle object fail!", totalNum.get(), getMaxTotal());
+                    LogUtil.debug(TAG, "idle num of objects is %d", getIdleNum());
+                }
+                blocked = true;
+                return false;
+            }
+            if (!creatingNum.compareAndSet(creating, creating + 1)) {
+                continue;
+            }
+            try {
+                //补充最小空闲对象时不抢占其他对象池的名额
+                PooledObject<T> p = create(false);
+                if (p == null) {
+                    return false;
+                }
+                //从设置为空闲状态开始的时间设为上次使用的时间点
+                p.setLastUsedTime(System.currentTimeMillis());
+                register(p);
+                //先登记到对象池再放入空闲队列，防止其他线程取到后无法返还
+                if (!offerIdle(p)) {
+                    try {
+                        destroyObject(p);
+                    } catch (ObjectDestroyException e) {
+                        e.printStackTrace();
+                    }
+                    return false;
+                }
+                return true;
+            } finally {
+                creatingNum.decrementAndGet();
+            }
+        }
     }
 
     /**
@@ -204,10 +565,19 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
             throw new IllegalStateException("factory is null");
         }
         PooledObject<T> obj = this.create();
-
-        addIdelQueue(obj);
+        if (obj == null) {
+            throw new IllegalStateException("make object failure");
+        }
         obj.setLastUsedTime(System.currentTimeMillis());
-        allObjects.put(new PooledObjectWrap<>(obj.getObject()), obj);
+        register(obj);
+        if (!offerIdle(obj)) {
+            try {
+                destroyObject(obj);
+            } catch (ObjectDestroyException e) {
+                e.printStackTrace();
+            }
+            throw new IllegalStateException("idle queue full");
+        }
 
 
     }
@@ -218,41 +588,108 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
      * @return 对象池对象的包装类
      */
     private PooledObject<T> create() {
+        return create(true);
+    }
+
+    /**
+     * 调用对象工厂创建对象
+     * 先通过CAS占用{@link SimpleBaseObjectPool#totalNum}的名额，和其他对象池共用名额时再占用一个共用的名额，
+     * 多个线程同时新建时对象总数也不会超过最大容量
+     *
+     * @param reclaim 名额已满时是否销毁其他对象池的空闲对象腾出名额
+     * @return 对象池对象的包装类，名额已满或者创建失败时返回null
+     */
+    private PooledObject<T> create(boolean reclaim) {
+        if (!reserve()) {
+            return null;
+        }
+        if (capacity != null && !capacity.acquire(this, reclaim)) {
+            totalNum.decrementAndGet();
+            return null;
+        }
         PooledObject<T> obj = null;
+        long start = System.nanoTime();
         try {
             obj = factory.makeObject();
         } catch (Exception e) {
-            LogUtil.info(TAG, "error when create object" + e.getMessage());
-            e.printStackTrace();
+            LogUtil.warn(TAG, "error when create object", e);
         }
         //新创建的对象默认都是空闲状态
         if (obj != null) {
+            metrics.recordCreate(System.nanoTime() - start);
             obj.setState(PooledObjectState.IDEL);
+        } else {
+            totalNum.decrementAndGet();
+            if (capacity != null) {
+                capacity.release();
+            }
         }
 
         return obj;
     }
 
+    /**
+     * 占用一个对象总数的名额
+     *
+     * @return 对象池已满时返回false
+     */
+    private boolean reserve() {
+        for (; ; ) {
+            int total = totalNum.get();
+            if (total >= getMaxTotal()) {
+                return false;
+            }
+            if (totalNum.compareAndSet(total, total + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 将新建的对象登记到对象池中
+     *
+     * @param p 新建的对象
+     */
+    private void register(PooledObject<T> p) {
+        p.setPool(this);
+        allObjects.put(new PooledObjectWrap<>(p.getObject()), p);
+        evictionQueue.add(p);
+        if (testWhileIdle) {
+            validationRing.add(p);
+        }
+        if (maintenance != null) {
+            maintenance.wake();
+        }
+    }
+
     /**
      * 将对象加入到空闲队列中
      *
      * @param obj 待加入的对象包装类
+     * @return 空闲队列已满时返回false
      */
-    private void addIdelQueue(PooledObject<T> obj) {
+    private boolean addIdelQueue(PooledObject<T> obj) {
         if (obj == null) {
-            try {
-                obj = factory.makeObject();
-            } catch (Exception e) {
-                LogUtil.info(TAG, "error when create object" + e.getMessage());
-                e.printStackTrace();
-            }
-        }
-        if (this.obtainPolicy.getPolicy().equals(ObtainPolicy.LIFO)) {
-            idleObjects.addFirst(obj);
-        } else {
-            idleObjects.addLast(obj);
+            obj = create();
         }
+        return obj != null && idleObjects.offer(obj);
+    }
 
+    /**
+     * 将新的空闲对象加入到空闲队列中，有请求在等待时再交给等待的请求
+     *
+     * @param p 新的空闲对象
+     * @return 空闲队列已满时返回false
+     */
+    private boolean offerIdle(PooledObject<T> p) {
+        if (!addIdelQueue(p)) {
+            return false;
+        }
+        //放入后再检查，防止请求在此期间开始等待而错过
+        if (!asyncWaiters.isEmpty()) {
+            dispatchAsyncWaiters();
+        }
+        return true;
     }
 
     /**
@@ -263,136 +700,831 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
      */
     @Override
     public T getObject() throws NoMoreIdleSpaceException {
-        return this.getObject(getMaxWaitTime());
+        return this.getPooledObject(getMaxWaitTime()).getObject();
+    }
+
+    /**
+     * 获取对象的包装类
+     *
+     * @return 需要的对象的包装类
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public PooledObject<T> getPooledObject() throws NoMoreIdleSpaceException {
+        return this.getPooledObject(getMaxWaitTime());
+    }
+
+    /**
+     * 尝试获取对象，没有空闲对象并且等待超时时返回null，不抛出异常
+     * 过载时拒绝请求不需要创建异常，适合大量请求需要快速失败的场景
+     *
+     * @param maxTimeWaitMills 阻塞时的最长等待时间，负值表示一直等待
+     * @return 需要的对象，获取失败时返回null
+     */
+    public T tryGetObject(long maxTimeWaitMills) {
+        try {
+            PooledObject<T> p = borrow(maxTimeWaitMills, true);
+            return p == null ? null : p.getObject();
+        } catch (NoMoreIdleSpaceException e) {
+            //不抛出异常时不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从对象池中获取对象
+     *
+     * @param maxTimeWaitMills 阻塞时的最长等待时间
+     * @return 需要的对象的包装类
+     * @throws NoMoreIdleSpaceException
+     */
+    PooledObject<T> getPooledObject(long maxTimeWaitMills) throws NoMoreIdleSpaceException {
+        return borrow(maxTimeWaitMills, false);
+    }
+
+    /**
+     * 从对象池中获取对象
+     *
+     * @param maxTimeWaitMills 阻塞时的最长等待时间
+     * @param quiet            获取失败时是否返回null而不是抛出异常
+     * @return 需要的对象的包装类
+     * @throws NoMoreIdleSpaceException
+     */
+    private PooledObject<T> borrow(long maxTimeWaitMills, boolean quiet) throws NoMoreIdleSpaceException {
+        LogUtil.debug(TAG, "start getting object");
+        long start = System.nanoTime();
+        long wait = maxTimeWaitMills;
+        PooledObject<T> obj;
+        for (; ; ) {
+            obj = null;
+            boolean created = false;
+            boolean waited = false;
+            //首先判断是否设置了阻塞机制
+            if (blocked) {
+                if (LogUtil.isDebugEnabled()) {
+                    LogUtil.debug(TAG, "blocked queue,wait time is %s mills", wait);
+                }
+                obj = pollIdle();
+                if (obj == null) {
+                    //如果空闲队列没有，且还未达到最大容量就新建对象
+                    if (totalNum.get() < getMaxTotal()) {
+                        if (LogUtil.isDebugEnabled()) {
+                            LogUtil.debug(TAG, "no idle objects, create new object, the num of objects in pool is %d", totalNum.get());
+                        }
+                        obj = create();
+                        if (obj != null) {
+                            register(obj);
+                            created = true;
+                        }
+                    }
+                    //表明对象池已满或者和其他对象池共用的名额已满，且无空闲对象
+                    if (obj == null && (totalNum.get() >= getMaxTotal() || capacity != null && capacity.isExhausted())) {
+                        obj = await(wait);
+                        waited = obj != null;
+                    }
+                }
+                //达到最长等待时间还未获取到对象
+                if (obj == null) {
+                    LogUtil.debug(TAG, "get object fail");
+                    metrics.incrementTimeout();
+                    if (quiet) {
+                        return null;
+                    }
+                    throw exhausted("there is no more idle object and the wait time is out");
+                }
+                //没有设置阻塞机制
+            } else {
+                LogUtil.debug(TAG, "not blocked queue");
+                obj = pollIdle();
+                if (obj == null) {
+                    LogUtil.debug(TAG, "get object fail");
+                    if (quiet) {
+                        return null;
+                    }
+                    throw stacklessException ? NO_IDLE_OBJECT : new IllegalStateException("make object failure");
+                }
+            }
+            //等到的对象在交出前已经激活
+            if (waited || activate(obj)) {
+                break;
+            }
+            //新建的对象也无法使用时不再重试，防止对象工厂一直产生无效对象时空转
+            if (created) {
+                if (quiet) {
+                    return null;
+                }
+                throw new NoMoreIdleSpaceException("unable to activate or validate the new object");
+            }
+            //激活或校验失败的对象已经销毁，在剩余的等待时间内重新获取
+            if (maxTimeWaitMills >= 0) {
+                wait = Math.max(0L, maxTimeWaitMills - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+        long now = System.nanoTime();
+        //先记录借出时间再设置状态，泄漏检测不会读到上次借出的时间
+        obj.setLastBorrowTime(now);
+        abandonedDetector.onBorrow(obj);
+        obj.setState(PooledObjectState.USING);
+        activeNum.incrementAndGet();
+        LogUtil.debug(TAG, "get object successfully");
+        //空闲对象数低于最小值时通知后台补充
+        refiller.signal();
+        metrics.recordBorrow(now - start);
+
+        return obj;
+    }
+
+    /**
+     * 阻塞等待其他线程返还对象
+     * 和异步请求在同一个等待队列中按优先级排队，不指定优先级的同步获取优先级为0；
+     * 先登记等待再检查一次空闲对象，防止返还的对象在此期间进入线程本地缓存或空闲队列而错过
+     *
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 已经激活的空闲对象，等待超时返回null
+     */
+    private PooledObject<T> await(long maxTimeWaitMills) {
+        long waitStart = System.nanoTime();
+        AsyncWaiters.Waiter<T> waiter = asyncWaiters.enlist(0, maxTimeWaitMills);
+        try {
+            dispatchAsyncWaiters();
+            //共用的名额可能在登记等待之前已经释放
+            if (capacity != null && totalNum.get() < getMaxTotal() && !capacity.isExhausted()) {
+                addIdleObject();
+            }
+            return asyncWaiters.awaitObject(waiter);
+        } finally {
+            metrics.recordWait(System.nanoTime() - waitStart);
+        }
+    }
+
+    /**
+     * 异步获取对象，最长等待时间为{@link SimpleBaseObjectPool#getMaxWaitTime()}
+     *
+     * @return 获取到对象时完成的future
+     */
+    @Override
+    public CompletableFuture<T> borrowAsync() {
+        return borrowAsync(getMaxWaitTime());
+    }
+
+    /**
+     * 异步获取对象
+     * 没有空闲对象且对象池已满时进入等待队列，不阻塞调用线程
+     *
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 获取到对象时完成的future
+     */
+    public CompletableFuture<T> borrowAsync(long maxTimeWaitMills) {
+        return borrowOrWait(0, maxTimeWaitMills);
+    }
+
+    /**
+     * 指定优先级和截止时间异步获取对象
+     * 有空闲对象或者还可以新建时和{@link SimpleBaseObjectPool#borrowAsync()}相同；否则按优先级进入等待队列，
+     * 返还的对象先交给优先级最高的请求，优先级相同时交给截止时间最早的请求。
+     * 到截止时间还没有拿到对象时以超时失败，已经过了截止时间的请求不会再拿到对象
+     *
+     * @param priority 优先级，越大越先拿到返还的对象，{@link SimpleBaseObjectPool#borrowAsync()}的优先级为0
+     * @param deadline 截止时间点，取自{@link System#currentTimeMillis()}，负值表示一直等待
+     * @return 获取到对象时完成的future
+     */
+    public CompletableFuture<T> borrowAsync(int priority, long deadline) {
+        return borrowOrWait(priority, deadline < 0 ? -1L : Math.max(0L, deadline - System.currentTimeMillis()));
+    }
+
+    /**
+     * 指定优先级和截止时间获取对象，没有空闲对象时阻塞等待
+     * 和{@link SimpleBaseObjectPool#getObject()}、异步获取在同一个等待队列中排队，{@link SimpleBaseObjectPool#getObject()}的优先级为0，
+     * 优先级更高的请求先拿到返还的对象
+     *
+     * @param priority 优先级，越大越先拿到返还的对象
+     * @param deadline 截止时间点，取自{@link System#currentTimeMillis()}，负值表示一直等待
+     * @return 需要的对象
+     * @throws NoMoreIdleSpaceException 到截止时间还没有拿到对象，或者等待时被中断
+     */
+    public T getObject(int priority, long deadline) throws NoMoreIdleSpaceException {
+        return AsyncWaiters.await(borrowAsync(priority, deadline));
+    }
+
+    /**
+     * 异步获取对象，没有空闲对象且对象池已满时进入等待队列
+     *
+     * @param priority         在等待队列中的优先级
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 获取到对象时完成的future
+     */
+    private CompletableFuture<T> borrowOrWait(int priority, long maxTimeWaitMills) {
+        if (isClosed()) {
+            return AsyncWaiters.failedFuture(new IllegalStateException("pool is not open"));
+        }
+        long start = System.nanoTime();
+        PooledObject<T> obj = pollIdle();
+        //激活或校验失败的对象已经销毁，换一个空闲对象
+        while (obj != null && !activate(obj)) {
+            obj = pollIdle();
+        }
+        if (obj == null && totalNum.get() < getMaxTotal()) {
+            obj = create();
+            if (obj != null) {
+                register(obj);
+                if (!activate(obj)) {
+                    return AsyncWaiters.failedFuture(new NoMoreIdleSpaceException("unable to activate or validate the new object"));
+                }
+            }
+        }
+        if (obj != null) {
+            long now = System.nanoTime();
+            obj.setLastBorrowTime(now);
+            abandonedDetector.onBorrow(obj);
+            obj.setState(PooledObjectState.USING);
+            activeNum.incrementAndGet();
+            refiller.signal();
+            metrics.recordBorrow(now - start);
+            return CompletableFuture.completedFuture(obj.getObject());
+        }
+        if (!blocked) {
+            return AsyncWaiters.failedFuture(exhausted("there is no more idle object"));
+        }
+        CompletableFuture<T> future = asyncWaiters.add(priority, maxTimeWaitMills);
+        //登记后再检查一次，防止返还的对象在此期间进入空闲队列而错过
+        dispatchAsyncWaiters();
+        if (isClosed()) {
+            asyncWaiters.failAll();
+        }
+        return future;
+    }
+
+    /**
+     * 把空闲对象依次交给等待的请求，直到没有空闲对象或没有请求
+     */
+    private void dispatchAsyncWaiters() {
+        dispatchAsyncWaiters(true);
+    }
+
+    /**
+     * 把空闲对象依次交给等待的请求，直到没有空闲对象或没有请求
+     *
+     * @param threadCaches 是否也从线程本地缓存中取；正在创建当前线程的本地缓存时只能从空闲队列中取
+     */
+    private void dispatchAsyncWaiters(boolean threadCaches) {
+        while (!asyncWaiters.isEmpty()) {
+            PooledObject<T> p = threadCaches ? pollIdle() : idleObjects.poll();
+            if (p == null) {
+                return;
+            }
+            if (!asyncWaiters.handOff(p, lender)) {
+                //请求都已经超时或取消，放回空闲队列
+                if (!addIdelQueue(p)) {
+                    try {
+                        destroyObject(p);
+                    } catch (ObjectDestroyException e) {
+                        e.printStackTrace();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 向对象池中返还对象
+     *
+     * @param obj 待返还的对象
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObject(T obj) throws ObjectDestroyException, IllegalObjectStateException {
+        //判断对象是否还属于对象池
+        PooledObject<T> p = allObjects.get(new PooledObjectWrap<>(obj));
+        if (p == null) {
+            throw new IllegalStateException("the object is not part of the pool now");
+        }
+        returnPooledObject(p);
+    }
+
+    /**
+     * 向对象池中返还对象的包装类
+     * 直接通过包装类判断对象是否还属于对象池，不需要查找map
+     *
+     * @param p 待返还的对象的包装类
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnPooledObject(PooledObject<T> p) throws ObjectDestroyException, IllegalObjectStateException {
+        LogUtil.debug(TAG, "returning object");
+        //判断对象是否还属于对象池
+        if (p == null || p.getPool() != this) {
+            throw new IllegalStateException("the object is not part of the pool now");
+        }
+        //通过CAS设置为返还中状态，和回收泄漏对象的线程争夺这个对象，只有一方会成功；重复返还时CAS直接失败
+        if (!p.compareAndSetState(PooledObjectState.USING, PooledObjectState.RETURNING)) {
+            LogUtil.debug(TAG, "state of Object is not using, cannot return to pool");
+            throw new IllegalObjectStateException("the object is in wrong state");
+        }
+        //返还成功后才记录时间，失败的返还不会改动已被回收或重复返还的对象；放回空闲对象之前记录，清除过期对象时不会读到旧的时间
+        p.setLastUsedTime(System.currentTimeMillis());
+        activeNum.decrementAndGet();
+        metrics.recordHold(System.nanoTime() - p.getLastBorrowTime());
+        //配置了后台重置时交给后台线程，重置完成后才放回
+        if (resetter.isDeferred()) {
+            resetter.submit(p);
+        } else {
+            recycle(p, true);
+        }
+        LogUtil.debug(TAG, "finish return object");
+    }
+
+    /**
+     * 重置并钝化返还的对象，再交给等待的异步请求或放回空闲对象
+     *
+     * @param p     返还的对象，已经设置为空闲状态
+     * @param local 是否在返还对象的线程中，是时优先放入当前线程的本地缓存
+     * @throws ObjectDestroyException
+     */
+    private void recycle(PooledObject<T> p, boolean local) throws ObjectDestroyException {
+        //如果对象池关闭或者空闲对象数达到或超过超过对象池最大容量，直接销毁该对象
+        if (isClosed() || getIdleNum() >= maxTotal) {
+            this.destroy(p);
+            return;
+        }
+        //重置、钝化或校验失败的对象已经销毁，腾出的名额由后台补充，有请求在等待时交给等待的请求
+        if (!reset(p) || !passivate(p, testOnReturn)) {
+            refiller.signal();
+            return;
+        }
+        //重置完成后才恢复为空闲状态，返还期间清除和校验不会选中这个对象
+        p.setState(PooledObjectState.IDEL);
+        //有异步请求在等待时直接交给等待最久的请求
+        if (!asyncWaiters.isEmpty() && asyncWaiters.handOff(p, lender)) {
+            LogUtil.debug(TAG, "hand off object to async waiter");
+            return;
+        }
+        //优先放入当前线程的本地缓存，放不下时再放入空闲队列，都放不下时销毁
+        if (!(local && offerThreadCache(p)) && !addIdelQueue(p)) {
+            destroyObject(p);
+        } else if (!asyncWaiters.isEmpty()) {
+            //放回后再检查一次，防止异步请求在此期间开始等待而错过
+            dispatchAsyncWaiters();
+        }
+    }
+
+    /**
+     * 一次获取多个对象
+     * 持有{@link SimpleBaseObjectPool#batchLock}时依次从空闲对象中取出或新建，不够时等待其他线程返还；
+     * 凑不齐时把已经取到的对象放回空闲队列
+     *
+     * @param n                对象数
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return n个对象
+     * @throws NoMoreIdleSpaceException 等待超时仍然凑不齐n个对象
+     */
+    @Override
+    public List<T> getObjects(int n, long maxTimeWaitMills) throws NoMoreIdleSpaceException {
+        if (n > getMaxTotal()) {
+            throw new IllegalArgumentException("cannot get " + n + " objects from a pool of max num " + getMaxTotal());
+        }
+        assertOpen();
+        List<T> objs = new ArrayList<>(Math.max(n, 0));
+        if (n < 1) {
+            return objs;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxTimeWaitMills);
+        List<PooledObject<T>> taken = new ArrayList<>(n);
+        try {
+            //同一时间只有一个批量获取在凑齐对象，防止两个批量获取各持有一部分对象而互相等待
+            if (maxTimeWaitMills < 0) {
+                batchLock.lockInterruptibly();
+            } else if (!batchLock.tryLock(maxTimeWaitMills, TimeUnit.MILLISECONDS)) {
+                metrics.incrementTimeout();
+                throw exhausted("there is no more idle object and the wait time is out");
+            }
+            try {
+                takeObjects(n, maxTimeWaitMills >= 0, deadline, taken);
+            } finally {
+                batchLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (taken.size() < n) {
+            //凑不齐时全部钝化后放回
+            long now = System.currentTimeMillis();
+            List<PooledObject<T>> idle = new ArrayList<>(taken.size());
+            for (PooledObject<T> p : taken) {
+                p.setLastUsedTime(now);
+                if (passivate(p, false)) {
+                    idle.add(p);
+                }
+            }
+            putBackIdle(idle);
+            metrics.incrementTimeout();
+            throw exhausted("cannot get " + n + " idle objects and the wait time is out");
+        }
+        long now = System.nanoTime();
+        for (PooledObject<T> p : taken) {
+            p.setLastBorrowTime(now);
+            abandonedDetector.onBorrow(p);
+            p.setState(PooledObjectState.USING);
+            activeNum.incrementAndGet();
+            metrics.recordBorrow(now - start);
+            objs.add(p.getObject());
+        }
+        refiller.signal();
+        return objs;
+    }
+
+    /**
+     * 持有{@link SimpleBaseObjectPool#batchLock}时凑齐n个对象
+     *
+     * @param n        对象数
+     * @param timed    是否限时等待
+     * @param deadline 等待的截止时间点，取自{@link System#nanoTime()}
+     * @param taken    已经取到的对象
+     */
+    private void takeObjects(int n, boolean timed, long deadline, List<PooledObject<T>> taken) {
+        while (taken.size() < n) {
+            boolean created = false;
+            PooledObject<T> p = pollIdle();
+            if (p == null && totalNum.get() < getMaxTotal()) {
+                p = create();
+                if (p != null) {
+                    register(p);
+                    created = true;
+                }
+            }
+            if (p == null && blocked) {
+                //和其他请求在同一个等待队列中排队，等到的对象已经激活
+                long waitStart = System.nanoTime();
+                AsyncWaiters.Waiter<T> waiter = asyncWaiters.enlist(0, timed ? Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - waitStart)) : -1L);
+                try {
+                    dispatchAsyncWaiters();
+                    p = asyncWaiters.awaitObject(waiter);
+                } finally {
+                    metrics.recordWait(System.nanoTime() - waitStart);
+                }
+                if (p == null) {
+                    return;
+                }
+                taken.add(p);
+                continue;
+            }
+            if (p == null) {
+                return;
+            }
+            //激活或校验失败的对象已经销毁，新建的对象也无法使用时不再重试
+            if (!activate(p)) {
+                if (created) {
+                    return;
+                }
+                continue;
+            }
+            taken.add(p);
+        }
+    }
+
+    /**
+     * 一次返还多个对象
+     * 先检查所有对象，再一起放回空闲队列，只唤醒一次等待的线程
+     *
+     * @param objs 待返还的对象
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObjects(Collection<T> objs) throws ObjectDestroyException, IllegalObjectStateException {
+        List<PooledObject<T>> ps = new ArrayList<>(objs.size());
+        Set<PooledObject<T>> checked = Collections.newSetFromMap(new IdentityHashMap<PooledObject<T>, Boolean>());
+        for (T obj : objs) {
+            PooledObject<T> p = allObjects.get(new PooledObjectWrap<>(obj));
+            if (p == null) {
+                throw new IllegalStateException("the object is not part of the pool now");
+            }
+            if (p.getState() != PooledObjectState.USING || !checked.add(p)) {
+                throw new IllegalObjectStateException("the object is in wrong state");
+            }
+            ps.add(p);
+        }
+        long nanos = System.nanoTime();
+        long now = System.currentTimeMillis();
+        List<PooledObject<T>> idle = new ArrayList<>(ps.size());
+        boolean invalid = false;
+        for (PooledObject<T> p : ps) {
+            //检查之后可能已经被当作泄漏对象回收
+            if (!p.compareAndSetState(PooledObjectState.USING, PooledObjectState.RETURNING)) {
+                continue;
+            }
+            metrics.recordHold(nanos - p.getLastBorrowTime());
+            p.setLastUsedTime(now);
+            activeNum.decrementAndGet();
+            if (resetter.isDeferred()) {
+                resetter.submit(p);
+                continue;
+            }
+            if (isClosed()) {
+                destroyObject(p);
+                continue;
+            }
+            if (!reset(p) || !passivate(p, testOnReturn)) {
+                invalid = true;
+                continue;
+            }
+            p.setState(PooledObjectState.IDEL);
+            //有异步请求在等待时直接交给等待最久的请求
+            if (!asyncWaiters.isEmpty() && asyncWaiters.handOff(p, lender)) {
+                continue;
+            }
+            idle.add(p);
+        }
+        putBackIdle(idle);
+        //销毁的对象腾出了名额，由后台补充
+        if (invalid) {
+            refiller.signal();
+        }
+    }
+
+    /**
+     * 把多个空闲对象一起放回空闲队列，放不下的对象销毁
+     *
+     * @param ps 空闲对象
+     */
+    private void putBackIdle(List<PooledObject<T>> ps) {
+        int offered = idleObjects.offerAll(ps);
+        for (int i = offered; i < ps.size(); i++) {
+            try {
+                destroyObject(ps.get(i));
+            } catch (ObjectDestroyException e) {
+                e.printStackTrace();
+            }
+        }
+        if (offered > 0 && !asyncWaiters.isEmpty()) {
+            //放回后再检查一次，防止异步请求在此期间开始等待而错过
+            dispatchAsyncWaiters();
+        }
+    }
+
+    /**
+     * 获取对象池最大容量
+     *
+     * @return
+     */
+    @Override
+    public int getMaxNum() {
+        return getMaxTotal();
+    }
+
+    /**
+     * 获取对象池活跃的（正在使用）的对象数
+     *
+     * @return
+     */
+    @Override
+    public int getActiveNum() {
+        //后台重置完成前的对象还没有放回，仍然算作活跃；异步请求拿到对象后才计入，请求方立即返还时可能短暂为负
+        return Math.max(activeNum.get() + resetter.getPendingNum(), 0);
+    }
+
+    /**
+     * 获取对象池的运行指标
+     *
+     * @return 对象池的运行指标
+     */
+    @Override
+    public PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取对象池中的空闲对象数，包括空闲队列和线程本地缓存中的对象
+     *
+     * @return 空闲对象数
+     */
+    int getIdleNum() {
+        return idleObjects.size() + cachedNum.get();
+    }
+
+    /**
+     * 获取一个空闲对象
+     * 依次从当前线程的本地缓存、空闲队列、其他线程的本地缓存中获取
+     *
+     * @return 空闲对象，没有时返回null
+     */
+    private PooledObject<T> pollIdle() {
+        PooledObject<T> p = pollThreadCache();
+        if (p == null) {
+            p = idleObjects.poll();
+        }
+        if (p == null) {
+            p = stealThreadCache();
+        }
+        if (p == null && group != null) {
+            p = stealStripe();
+        }
+        return p;
+    }
+
+    /**
+     * 作为分片时从其他分片取一个空闲对象，登记到当前分片
+     *
+     * @return 空闲对象，其他分片都没有空闲对象时返回null
+     */
+    private PooledObject<T> stealStripe() {
+        PooledObject<T> p = group.steal(stripeIndex);
+        if (p != null) {
+            //共用的名额跟着对象转移，只调整当前分片的对象数
+            totalNum.incrementAndGet();
+            register(p);
+        }
+        return p;
+    }
+
+    /**
+     * 作为分片时把一个空闲对象交给其他分片，对象不再属于当前分片
+     * 只从空闲队列和线程本地缓存中取，不会为调用线程创建本地缓存
+     *
+     * @return 交出的空闲对象，没有时返回null
+     */
+    PooledObject<T> surrender() {
+        if (isClosed()) {
+            return null;
+        }
+        PooledObject<T> p = idleObjects.poll();
+        if (p == null) {
+            p = stealThreadCache();
+        }
+        if (p != null && allObjects.remove(new PooledObjectWrap<>(p.getObject())) != null) {
+            totalNum.decrementAndGet();
+        }
+        return p;
+    }
+
+    /**
+     * 从当前线程的本地缓存中取回最近返还的对象
+     *
+     * @return 缓存的对象，没有时返回null
+     */
+    private PooledObject<T> pollThreadCache() {
+        if (threadCacheSize < 1) {
+            return null;
+        }
+        ThreadCache<T> cache = threadCache.get();
+        PooledObject<T> p = cache == null ? null : cache.poll();
+        if (p != null) {
+            cachedNum.decrementAndGet();
+        }
+        return p;
+    }
+
+    /**
+     * 从其他线程的本地缓存中窃取对象
+     *
+     * @return 窃取的对象，没有时返回null
+     */
+    private PooledObject<T> stealThreadCache() {
+        if (cachedNum.get() < 1) {
+            return null;
+        }
+        for (int i = 0; i < THREAD_CACHE_SLOTS; i++) {
+            ThreadCache<T> cache = threadCaches.get(i);
+            PooledObject<T> p = cache == null ? null : cache.poll();
+            if (p != null) {
+                cachedNum.decrementAndGet();
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将返还的对象放入当前线程的本地缓存
+     *
+     * @param p 返还的对象
+     * @return 是否放入成功，有线程在等待或者缓存已满时返回false
+     */
+    private boolean offerThreadCache(PooledObject<T> p) {
+        if (threadCacheSize < 1 || waitingNum.get() > 0) {
+            return false;
+        }
+        ThreadCache<T> cache = threadCache.get();
+        if (cache == null || !cache.offer(p)) {
+            return false;
+        }
+        cachedNum.incrementAndGet();
+        //放入缓存后再检查一次，如果此时有线程开始等待，尝试把对象转交到空闲队列中唤醒它
+        if (waitingNum.get() > 0 && cache.remove(p)) {
+            cachedNum.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 将对象从空闲队列或线程本地缓存中移除
+     *
+     * @param p 待移除的对象
+     * @return 是否移除成功，失败说明对象已经被其他线程取走
+     */
+    private boolean removeIdle(PooledObject<T> p) {
+        if (idleObjects.remove(p)) {
+            return true;
+        }
+        if (cachedNum.get() < 1) {
+            return false;
+        }
+        for (int i = 0; i < THREAD_CACHE_SLOTS; i++) {
+            ThreadCache<T> cache = threadCaches.get(i);
+            if (cache != null && cache.remove(p)) {
+                cachedNum.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * 从对象池中获取对象
+     * 为线程占用一个本地缓存的槽位
+     * 从线程id对应的槽位开始找空的槽位或者所属线程已经结束的槽位，接管后把旧缓存中的对象转移到空闲队列
      *
-     * @param maxTimeWaitMills 阻塞时的最长等待时间
-     * @return 需要的对象
-     * @throws NoMoreIdleSpaceException
+     * @param thread 当前线程
+     * @return 新的本地缓存，所有槽位都被运行中的线程占用时返回null
      */
-    private T getObject(long maxTimeWaitMills) throws NoMoreIdleSpaceException {
-        LogUtil.info(TAG, "start getting object");
-        PooledObject obj = null;
-        //首先判断是否设置了阻塞机制
-        if (blocked) {
-            LogUtil.info(TAG, String.format("blocked queue,wait time is %s mills", getMaxWaitTime()));
-            obj = idleObjects.pollFirst();
-            if (obj == null) {
-                //如果空闲队列没有，且还未达到最大容量就新建对象
-                if (allObjects.size()<getMaxTotal()){
-                    LogUtil.info(TAG, String.format("no idle objects, create new object, the num of objects in pool is %d", allObjects.size()));
-                    try {
-                        obj = factory.makeObject();
-                        allObjects.put(new PooledObjectWrap<T>((T) obj.getObject()),obj);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    //表明对象池已满，且无空闲对象
-                }else {
-                    //当阻塞机制设为负值，可以一直等待下去
-                    if (maxTimeWaitMills < 0) {
-                        try {
-                            obj = idleObjects.takeFirst();
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    } else {
-                        try {
-                            obj = idleObjects.pollFirst(maxTimeWaitMills, TimeUnit.MILLISECONDS);
-                        } catch (InterruptedException e) {
-                            LogUtil.info(TAG, e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
-            //达到最长等待时间还未获取到对象
-            if (obj == null) {
-                LogUtil.info(TAG, "get object fail");
-                throw new NoMoreIdleSpaceException("there is no more idle object and the wait time is out");
+    private ThreadCache<T> claimThreadCache(Thread thread) {
+        ThreadCache<T> cache = new ThreadCache<>(thread, threadCacheSize);
+        int start = (int) thread.getId();
+        for (int i = 0; i < THREAD_CACHE_SLOTS; i++) {
+            int index = (start + i) & (THREAD_CACHE_SLOTS - 1);
+            ThreadCache<T> old = threadCaches.get(index);
+            if (old != null && old.isOwnerAlive()) {
+                continue;
             }
-            //没有设置阻塞机制
-        } else {
-            LogUtil.info(TAG, "not blocked queue");
-            obj = idleObjects.pollFirst();
-            if (obj == null) {
-                LogUtil.info(TAG, "get object fail");
-                throw new IllegalStateException("make object failure");
+            if (threadCaches.compareAndSet(index, old, cache)) {
+                if (old != null) {
+                    drainThreadCache(old);
+                }
+                return cache;
             }
         }
-        obj.setState(PooledObjectState.USING);
-        LogUtil.info(TAG, "get object successfully");
-        //确保空闲对象数不少于最小值
-        ensureMinIdel(getMinIdel());
-
-        return (T) obj.getObject();
+        return null;
     }
 
     /**
-     * 向对象池中返还对象
-     *
-     * @param obj 待返还的对象
-     * @throws ObjectDestroyException
-     * @throws IllegalObjectStateException
+     * 清理已经结束的线程留下的本地缓存，缓存中的对象转移到空闲队列
      */
-    @Override
-    public void returnObject(T obj) throws ObjectDestroyException, IllegalObjectStateException {
-        LogUtil.info(TAG, "returning object");
-        //判断对象是否还属于对象池
-        PooledObject<T> p = allObjects.get(new PooledObjectWrap<>(obj));
-        if (p == null) {
-            throw new IllegalStateException("the object is not part of the pool now");
-        }
-        final PooledObjectState state = p.getState();
-        //同步是防止其他线程改变对象状态
-        synchronized (p) {
-            if (state != PooledObjectState.USING) {
-                LogUtil.info(TAG, "state of Object is not using, cannot return to pool");
-                throw new IllegalObjectStateException("the object is in wrong state");
-            }
-        }
-        //如果对象池关闭或者空闲对象数达到或超过超过对象池最大容量，直接销毁该对象
-        if (isClosed() || idleObjects.size() >= maxTotal) {
-            this.destroy(p);
-        } else {
-            if (this.obtainPolicy.getPolicy().equals(ObtainPolicy.LIFO)) {
-                idleObjects.addFirst(p);
-            } else {
-                idleObjects.addLast(p);
+    private void pruneThreadCaches() {
+        for (int i = 0; i < THREAD_CACHE_SLOTS; i++) {
+            ThreadCache<T> cache = threadCaches.get(i);
+            if (cache != null && !cache.isOwnerAlive() && threadCaches.compareAndSet(i, cache, null)) {
+                drainThreadCache(cache);
             }
-            p.setState(PooledObjectState.IDEL);
-            p.setLastUsedTime(System.currentTimeMillis());
         }
-        LogUtil.info(TAG, "finish return object");
     }
 
     /**
-     * 获取对象池最大容量
+     * 把已经不再使用的本地缓存中的对象转移到空闲队列，放不下的对象销毁
      *
-     * @return
+     * @param cache 已经从槽位中移除的本地缓存
      */
-    @Override
-    public int getMaxNum() {
-        return getMaxTotal();
+    private void drainThreadCache(ThreadCache<T> cache) {
+        PooledObject<T> p = cache.poll();
+        boolean drained = false;
+        while (p != null) {
+            cachedNum.decrementAndGet();
+            if (!addIdelQueue(p)) {
+                try {
+                    destroyObject(p);
+                } catch (ObjectDestroyException e) {
+                    e.printStackTrace();
+                }
+            } else {
+                drained = true;
+            }
+            p = cache.poll();
+        }
+        //可能在创建线程本地缓存的过程中，不能再取线程本地缓存
+        if (drained && !asyncWaiters.isEmpty()) {
+            dispatchAsyncWaiters(false);
+        }
     }
 
     /**
-     * 获取对象池活跃的（正在使用）的对象数
+     * 计算线程本地缓存的槽位数
      *
-     * @return
+     * @return 不小于CPU数两倍的2的幂，最少4个，最多256个
      */
-    @Override
-    public int getActiveNum() {
-        return allObjects.size() - idleObjects.size();
+    private static int threadCacheSlots() {
+        int n = 4;
+        while (n < 2 * Runtime.getRuntime().availableProcessors() && n < 256) {
+            n <<= 1;
+        }
+        return n;
     }
 
     /**
-     * 关闭对象池的同步锁
+     * 关闭对象池的锁
      */
-    private final Object closeLock = new Object();
+    private final ReentrantLock closeLock = new ReentrantLock();
 
     /**
      * 关闭对象池
@@ -402,14 +1534,27 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
         if (isClosed()) {
             return;
         }
-        //同步是为了防止多个线程同时关闭对象池
-        synchronized (closeLock) {
-            clear();
-            //关闭清除过期空闲对象的定时任务
-            service.shutdownNow();
+        //加锁是为了防止多个线程同时关闭对象池，销毁对象在锁外进行
+        closeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
             closed = true;
-            LogUtil.info(TAG, String.format("pool is closed at %s", new Date()));
+        } finally {
+            closeLock.unlock();
         }
+        clear();
+        //取消清除过期空闲对象的维护任务
+        if (maintenance != null) {
+            maintenance.cancel();
+        }
+        refiller.shutdown();
+        idleValidator.shutdown();
+        //等待重置的对象在对象池关闭后被销毁
+        resetter.shutdown();
+        asyncWaiters.failAll();
+        LogUtil.info(TAG, "pool is closed at %s", new Date());
     }
 
     /**
@@ -428,6 +1573,16 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
 
             p = idleObjects.poll();
         }
+        //线程本地缓存中的对象也是空闲对象
+        p = stealThreadCache();
+        while (p != null) {
+            try {
+                destroy(p);
+            } catch (ObjectDestroyException e) {
+                e.printStackTrace();
+            }
+            p = stealThreadCache();
+        }
     }
 
     /**
@@ -458,61 +1613,420 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
      */
     @Override
     public void destroy(PooledObject<T> p) throws ObjectDestroyException {
-        LogUtil.info(TAG, "start to destroy object");
-        idleObjects.remove(p);
-        allObjects.remove(new PooledObjectWrap<>(p.getObject()));
-        factory.destroyObject(p);
+        LogUtil.debug(TAG, "start to destroy object");
+        removeIdle(p);
+        destroyObject(p);
 
     }
 
     /**
-     * 用于清除过期空闲对象的task
+     * 销毁已经不在空闲队列和线程本地缓存中的对象
+     *
+     * @param p 待摧毁的对象
+     * @throws ObjectDestroyException
      */
-    private void removeTask() {
+    private void destroyObject(PooledObject<T> p) throws ObjectDestroyException {
+        boolean removed = allObjects.remove(new PooledObjectWrap<>(p.getObject())) != null;
+        if (removed) {
+            totalNum.decrementAndGet();
+        }
+        markInvalid(p);
+        p.setPool(null);
+        long start = System.nanoTime();
+        try {
+            factory.destroyObject(p);
+        } finally {
+            //对象真正销毁后再释放共用的名额，同一个对象只释放一次
+            if (removed && capacity != null) {
+                capacity.release();
+            }
+        }
+        metrics.recordDestroy(System.nanoTime() - start);
+    }
 
+    /**
+     * 把销毁的对象设置为已销毁状态，被当作泄漏对象回收的对象保持{@link PooledObjectState#ABANDONED}
+     * 之后的返还、清除和校验都会因为状态不符直接失败
+     *
+     * @param p 正在销毁的对象
+     */
+    static void markInvalid(PooledObject<?> p) {
+        for (; ; ) {
+            PooledObjectState state = p.getState();
+            if (state == PooledObjectState.ABANDONED || state == PooledObjectState.INVALID) {
+                return;
+            }
+            if (p.compareAndSetState(state, PooledObjectState.INVALID)) {
+                return;
+            }
+        }
+    }
 
-        Runnable task = new Runnable() {
+    /**
+     * 在调度器中登记清除过期空闲对象的维护任务
+     * 每次清除后根据最早可能过期的对象决定下次清除的时间，对象池中没有对象时不再调度
+     *
+     * @param config 配置类
+     * @return 对象池的登记，不在后台清除时返回null
+     */
+    private PoolMaintenanceScheduler.Registration registerMaintenance(SimpleBaseObjectPoolConfig config) {
+        if (config.getEvictionPeriod() < 1) {
+            return null;
+        }
+        return config.getMaintenanceScheduler().register(new PoolMaintenanceScheduler.Task() {
             @Override
-            public void run() {
+            public long run() {
+                if (isClosed()) {
+                    return -1;
+                }
+                //先校验空闲对象，销毁的无效对象在清除后一起补充
+                if (testWhileIdle) {
+                    validateIdle();
+                }
                 try {
-                    LogUtil.info(TAG, Thread.currentThread().getName() + " start to clear the idle objects which are time out");
+                    LogUtil.debug(TAG, "%s start to clear the idle objects which are time out", Thread.currentThread().getName());
                     removeTimeOutedObject();
                 } catch (ObjectDestroyException e) {
                     e.printStackTrace();
                 }
+                if (sizer != null) {
+                    sizer.resize();
+                }
+                //有对象在使用时每个间隔检测一次泄漏对象
+                boolean abandoned = abandonedDetector.isEnabled() && getActiveNum() > 0;
+                if (abandoned) {
+                    removeAbandoned();
+                }
+                //需要校验空闲对象、检测泄漏对象或自动调整时每个间隔执行一次
+                if (abandoned || testWhileIdle && totalNum.get() > 0 || sizer != null && sizer.isEnabled()) {
+                    return System.currentTimeMillis();
+                }
+                long next = evictionQueue.nextCheckTime();
+                if (next == Long.MAX_VALUE) {
+                    return -1;
+                }
+                return next > Long.MAX_VALUE - getMaxLiveTime() ? Long.MAX_VALUE : next + getMaxLiveTime();
             }
-        };
-        //延后10s触发，之后每隔60s执行一次
-        service.scheduleAtFixedRate(task, 10, 60, TimeUnit.SECONDS);
+        }, config.getEvictionPeriod(), config.getEvictionJitterPercent());
     }
 
     /**
      * 清除对象池的过期空闲对象
+     * 通过{@link IdleEvictionQueue}只检查可能过期的对象，不遍历所有对象
      *
      * @throws ObjectDestroyException
      */
     @Override
     public void removeTimeOutedObject() throws ObjectDestroyException {
-        long now = System.currentTimeMillis();
-        long timeout = now - getMaxLiveTime();
-        ArrayList<PooledObject<T>> removeList = new ArrayList<>();
-        Iterator<PooledObject<T>> iterator = allObjects.values().iterator();
-        while (iterator.hasNext()) {
-            PooledObject<T> next = iterator.next();
-            if (next.getState() == PooledObjectState.IDEL && next.getLastUsedTime() <= timeout) {
-                removeList.add(next);
+        long timeout = System.currentTimeMillis() - getMaxLiveTime();
+        evictionQueue.evict(timeout, new IdleEvictionQueue.Evictor<T>() {
+            @Override
+            public boolean evict(PooledObject<T> p) {
+                //只有成功从空闲队列或线程本地缓存中移除的对象才能销毁，否则说明已被其他线程取走
+                if (!removeIdle(p)) {
+                    return false;
+                }
+                p.setState(PooledObjectState.EVICTING);
+                try {
+                    destroyObject(p);
+                } catch (ObjectDestroyException e) {
+                    e.printStackTrace();
+                }
+                metrics.incrementEvicted();
+                return true;
+            }
+        });
+        pruneThreadCaches();
+        //清除后要确保满足最小空闲对象数，只通知后台补充，维护线程不调用对象工厂新建对象
+        refiller.signal();
+
+    }
+
+    /**
+     * 校验一批空闲对象
+     * 从轮转队列的队头最多检查一批对象，其中空闲的对象先从空闲队列或线程本地缓存中取出，校验期间不会被借出；
+     * 有效的对象放回，无效的对象销毁。检查过的对象放回队尾，多次维护后所有对象都会被校验到，
+     * 单次维护的耗时和批大小成正比，而不是和对象总数成正比
+     *
+     * @return 校验失败的对象数
+     */
+    private int validateIdle() {
+        List<PooledObject<T>> batch = new ArrayList<>(validationBatchSize);
+        List<PooledObject<T>> checked = new ArrayList<>(validationBatchSize);
+        PooledObject<T> p;
+        while (checked.size() < validationBatchSize && !isClosed() && (p = validationRing.poll()) != null) {
+            //已经销毁或转移到其他分片的对象不再校验
+            if (p.getPool() != this) {
+                continue;
+            }
+            checked.add(p);
+            //只有成功取出的对象才校验，否则说明已被其他线程取走
+            if (p.isIdel() && removeIdle(p)) {
+                p.setState(PooledObjectState.VALIDATING);
+                batch.add(p);
+            }
+        }
+        int invalid = batch.isEmpty() ? 0 : validateBatch(batch);
+        for (PooledObject<T> c : checked) {
+            if (c.getPool() == this) {
+                validationRing.add(c);
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * 并行校验一批已经取出的空闲对象
+     *
+     * @param batch 已经从空闲队列或线程本地缓存中取出的对象
+     * @return 校验失败的对象数
+     */
+    private int validateBatch(List<PooledObject<T>> batch) {
+        boolean[] valid = idleValidator.validate(batch, idleCheck);
+        List<PooledObject<T>> alive = new ArrayList<>(batch.size());
+        int invalid = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (valid[i]) {
+                batch.get(i).setState(PooledObjectState.IDEL);
+                alive.add(batch.get(i));
+            } else {
+                invalidate(batch.get(i));
+                invalid++;
+            }
+        }
+        putBackIdle(alive);
+        //防止校验期间对象池已经关闭
+        if (isClosed()) {
+            clear();
+        }
+        return invalid;
+    }
+
+    /**
+     * 借出前激活对象，配置了借出时校验时再校验
+     * 激活或校验失败的对象被销毁
+     *
+     * @param p 即将借出的空闲对象，已经不在空闲队列中
+     * @return 是否可以借出
+     */
+    @SuppressWarnings("unchecked")
+    private boolean activate(PooledObject<T> p) {
+        try {
+            factory.activateObject(p);
+            if (!testOnBorrow || factory.validateObject(p)) {
+                return true;
+            }
+            LogUtil.debug(TAG, "object is invalid when borrowing");
+        } catch (Exception e) {
+            LogUtil.warn(TAG, "error when activate object", e);
+        }
+        invalidate(p);
+        return false;
+    }
+
+    /**
+     * 创建没有空闲对象时抛出的异常，配置了没有调用栈的异常时返回预先创建的实例
+     *
+     * @param message 异常信息
+     * @return 异常
+     */
+    private NoMoreIdleSpaceException exhausted(String message) {
+        return stacklessException ? NoMoreIdleSpaceException.stackless() : new NoMoreIdleSpaceException(message);
+    }
+
+    /**
+     * 清除预先创建的异常的调用栈
+     *
+     * @param e 异常
+     * @return 没有调用栈的异常
+     */
+    private static IllegalStateException stackless(IllegalStateException e) {
+        e.setStackTrace(new StackTraceElement[0]);
+        return e;
+    }
+
+    /**
+     * 返还的对象钝化前重置对象，重置失败的对象被销毁
+     *
+     * @param p 返还的对象，还没有放入空闲队列
+     * @return 是否重置成功
+     */
+    @SuppressWarnings("unchecked")
+    private boolean reset(PooledObject<T> p) {
+        try {
+            factory.resetObject(p);
+            return true;
+        } catch (Exception e) {
+            LogUtil.warn(TAG, "error when reset object", e);
+        }
+        invalidate(p);
+        return false;
+    }
+
+    /**
+     * 对象重新变为空闲前钝化对象，需要时先校验
+     * 钝化或校验失败的对象被销毁
+     *
+     * @param p        返还的对象，还没有放入空闲队列
+     * @param validate 是否先校验
+     * @return 是否可以重新变为空闲
+     */
+    @SuppressWarnings("unchecked")
+    private boolean passivate(PooledObject<T> p, boolean validate) {
+        try {
+            if (!validate || factory.validateObject(p)) {
+                factory.passivateObject(p);
+                return true;
             }
+            LogUtil.debug(TAG, "object is invalid when returning");
+        } catch (Exception e) {
+            LogUtil.warn(TAG, "error when passivate object", e);
+        }
+        invalidate(p);
+        return false;
+    }
+
+    /**
+     * 销毁激活、校验或钝化失败的对象
+     *
+     * @param p 无效的对象，已经不在空闲队列中
+     */
+    private void invalidate(PooledObject<T> p) {
+        metrics.incrementValidationFailed();
+        try {
+            destroyObject(p);
+        } catch (ObjectDestroyException e) {
+            e.printStackTrace();
         }
-        Iterator<PooledObject<T>> removeIt = removeList.iterator();
-        while (removeIt.hasNext()) {
-            PooledObject<T> nextRemove = removeIt.next();
-            if (nextRemove.getState() == PooledObjectState.IDEL) {
-                destroy(nextRemove);
+    }
+
+    /**
+     * 报告并按配置回收泄漏对象
+     *
+     * @return 新发现的泄漏对象数
+     */
+    private int removeAbandoned() {
+        int found = abandonedDetector.detect(allObjects.values(), new AbandonedObjectDetector.Reclaimer<T>() {
+            @Override
+            public boolean reclaim(PooledObject<T> p) {
+                if (!p.compareAndSetState(PooledObjectState.USING, PooledObjectState.ABANDONED)) {
+                    return false;
+                }
+                activeNum.decrementAndGet();
+                try {
+                    destroyObject(p);
+                } catch (ObjectDestroyException e) {
+                    e.printStackTrace();
+                }
+                return true;
             }
+        });
+        //回收后腾出了名额，通知后台新建对象交给等待的请求，维护线程不调用对象工厂
+        if (found > 0) {
+            refiller.signal();
+        }
+        return found;
+    }
+
+    /**
+     * 获取正在阻塞等待或异步等待对象的请求数
+     *
+     * @return 等待的请求数
+     */
+    int getWaitingNum() {
+        return waitingNum.get();
+    }
+
+    /**
+     * 销毁一个空闲对象，为共用名额的其他对象池腾出名额
+     * 只从空闲队列和线程本地缓存中取，不会为调用线程创建本地缓存
+     *
+     * @return 是否销毁了一个对象
+     */
+    boolean evictIdle() {
+        PooledObject<T> p = idleObjects.poll();
+        if (p == null) {
+            p = stealThreadCache();
+        }
+        if (p == null) {
+            return false;
+        }
+        try {
+            destroyObject(p);
+        } catch (ObjectDestroyException e) {
+            e.printStackTrace();
+        }
+        metrics.incrementEvicted();
+        return true;
+    }
+
+    /**
+     * 修改最小空闲对象数，变大时通知后台补充
+     *
+     * @param minIdel 新的最小空闲对象数
+     */
+    void updateMinIdel(int minIdel) {
+        int old = getMinIdel();
+        setMinIdel(minIdel);
+        if (minIdel > old) {
+            refiller.signal();
         }
-        //清除后要确保满足最小空闲对象数
-        ensureMinIdel(getMinIdel());
+    }
+
+    /**
+     * 查找对象在对象池中的包装类
+     *
+     * @param obj 对象
+     * @return 对象的包装类，对象不属于对象池时返回null
+     */
+    PooledObject<T> find(T obj) {
+        return allObjects.get(new PooledObjectWrap<>(obj));
+    }
+
+    /**
+     * 获取已经返还、正在等待后台重置的对象数
+     *
+     * @return 等待重置的对象数
+     */
+    int getResettingNum() {
+        return resetter.getPendingNum();
+    }
+
+    /**
+     * 通知后台补充空闲对象，共用的名额被其他对象池释放后调用
+     * 补充的目标包括等待的请求数，新建的对象直接交给等待的请求，调用线程不调用对象工厂
+     */
+    void signalRefill() {
+        refiller.signal();
+    }
 
+    /**
+     * 新建一个空闲对象交给等待的请求，等待前共用的名额已经被其他对象池释放时调用
+     *
+     * @return 是否新建成功
+     */
+    private boolean addIdleObject() {
+        if (isClosed()) {
+            return false;
+        }
+        PooledObject<T> p = create(false);
+        if (p == null) {
+            return false;
+        }
+        p.setLastUsedTime(System.currentTimeMillis());
+        register(p);
+        if (!asyncWaiters.isEmpty() && asyncWaiters.handOff(p, lender)) {
+            return true;
+        }
+        if (!offerIdle(p)) {
+            try {
+                destroyObject(p);
+            } catch (ObjectDestroyException e) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -617,6 +2131,92 @@ public class SimpleBaseObjectPool<T> implements BaseObjectPool<T> {
         this.maxWaitTime = maxWaitTime;
     }
 
+    /**
+     * 设置每个线程本地缓存的对象数
+     *
+     * @param threadCacheSize 每个线程本地缓存的对象数
+     */
+    private void setThreadCacheSize(int threadCacheSize) {
+        this.threadCacheSize = threadCacheSize;
+    }
+
+    /**
+     * 线程本地缓存
+     * 由所属线程放入和取回对象，其他线程可以通过CAS窃取其中的对象
+     *
+     * @param <T>
+     */
+    static class ThreadCache<T> {
+        /**
+         * 所属线程，线程结束后缓存可以被清理
+         */
+        private final WeakReference<Thread> owner;
+        /**
+         * 缓存的对象，空位为null
+         */
+        private final AtomicReferenceArray<PooledObject<T>> slots;
+
+        ThreadCache(Thread owner, int size) {
+            this.owner = new WeakReference<>(owner);
+            this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+        }
+
+        /**
+         * 放入对象
+         *
+         * @param p 待放入的对象
+         * @return 缓存已满时返回false
+         */
+        boolean offer(PooledObject<T> p) {
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) == null && slots.compareAndSet(i, null, p)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 取出一个对象，优先取最后放入的位置
+         *
+         * @return 缓存的对象，没有时返回null
+         */
+        PooledObject<T> poll() {
+            for (int i = slots.length() - 1; i >= 0; i--) {
+                PooledObject<T> p = slots.get(i);
+                if (p != null && slots.compareAndSet(i, p, null)) {
+                    return p;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 移除指定对象
+         *
+         * @param p 待移除的对象
+         * @return 对象不在缓存中时返回false
+         */
+        boolean remove(PooledObject<T> p) {
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) == p && slots.compareAndSet(i, p, null)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 判断所属线程是否还在运行
+         *
+         * @return 所属线程是否还在运行
+         */
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+    }
+
     /**
      * 用于存放所有对象的map的键
      * 使用的也是包装类
@@ -2,6 +2,8 @@ package cn.plasticlove.object.pool.impl;
 
 import cn.plasticlove.object.pool.BaseObjectPoolConfig;
 import cn.plasticlove.object.pool.ObtainPolicy;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
 
 /**
  * 针对{@link SimpleBaseObjectPool}的配置类
@@ -21,6 +23,46 @@ public class SimpleBaseObjectPoolConfig extends BaseObjectPoolConfig {
      * 对象池最小空闲对象数默认值
      */
     static final int MIN_IDEL = 2;
+    /**
+     * 每个线程本地缓存的对象数默认值
+     */
+    static final int THREAD_CACHE_SIZE = 4;
+    /**
+     * 同时补充空闲对象的后台线程数默认值
+     */
+    static final int REFILL_CONCURRENCY = 2;
+    /**
+     * 预热并行度默认值
+     */
+    static final int WARM_UP_PARALLELISM = 1;
+    /**
+     * 构造方法返回前预热完成的百分比默认值
+     */
+    static final int WARM_UP_READY_PERCENT = 100;
+    /**
+     * 两次清除过期空闲对象之间的最短间隔默认值
+     */
+    static final long EVICTION_PERIOD_MILLS = 1000 * 60L;
+    /**
+     * 清除过期空闲对象时随机推后的最大百分比默认值
+     */
+    static final int EVICTION_JITTER_PERCENT = 10;
+    /**
+     * 泄漏检测时记录借出调用栈的百分比默认值
+     */
+    static final int ABANDONED_TRACE_PERCENT = 1;
+    /**
+     * 空闲校验每批校验的对象数默认值
+     */
+    static final int VALIDATION_BATCH_SIZE = 8;
+    /**
+     * 空闲校验的并行度默认值
+     */
+    static final int VALIDATION_PARALLELISM = 2;
+    /**
+     * 自适应调整时在预测的并发数之上多保留的百分比默认值
+     */
+    static final int ADAPTIVE_SPARE_PERCENT = 20;
     /**
      * 对象池最大容量
      */
@@ -34,6 +76,100 @@ public class SimpleBaseObjectPoolConfig extends BaseObjectPoolConfig {
      * 默认为true
      */
     private boolean blocked = true;
+    /**
+     * 每个线程本地缓存的最近返还对象数
+     * 小于1时不使用线程本地缓存
+     */
+    private int threadCacheSize = THREAD_CACHE_SIZE;
+    /**
+     * 同时补充空闲对象的后台线程数
+     * 小于1时不使用后台线程，由获取对象的线程直接补充
+     */
+    private int refillConcurrency = REFILL_CONCURRENCY;
+    /**
+     * 对象池创建时同时新建最小空闲对象的线程数
+     * 为1时在构造方法的线程中依次新建
+     */
+    private int warmUpParallelism = WARM_UP_PARALLELISM;
+    /**
+     * 构造方法返回前至少完成的预热百分比
+     * 0表示立即返回，全部在后台预热；100表示所有最小空闲对象新建完成后才返回
+     */
+    private int warmUpReadyPercent = WARM_UP_READY_PERCENT;
+    /**
+     * 两次清除过期空闲对象之间的最短间隔
+     * 小于1时不在后台清除，只能手动调用{@link SimpleBaseObjectPool#removeTimeOutedObject()}
+     */
+    private long evictionPeriod = EVICTION_PERIOD_MILLS;
+    /**
+     * 每次清除时在间隔的基础上随机推后的最大百分比，避免大量对象池同时清除
+     */
+    private int evictionJitterPercent = EVICTION_JITTER_PERCENT;
+    /**
+     * 执行清除过期空闲对象等后台维护任务的调度器
+     * 为null时使用所有对象池共用的{@link PoolMaintenanceScheduler#getShared()}
+     */
+    private PoolMaintenanceScheduler maintenanceScheduler;
+    /**
+     * 借出超过多长时间仍没有返还的对象视为泄漏对象
+     * 小于1时不检测泄漏对象
+     */
+    private long abandonedTimeout;
+    /**
+     * 记录借出调用栈的借出次数百分比，报告泄漏对象时附带借出的调用栈
+     * 创建调用栈的开销较大，只抽样记录
+     */
+    private int abandonedTracePercent = ABANDONED_TRACE_PERCENT;
+    /**
+     * 是否回收泄漏对象
+     * 回收的对象被销毁，原来的使用者之后不能再返还
+     */
+    private boolean removeAbandoned;
+    /**
+     * 借出前是否校验对象，校验失败的对象被销毁，换一个对象借出
+     */
+    private boolean testOnBorrow;
+    /**
+     * 返还时是否校验对象，校验失败的对象被销毁，不再放回对象池
+     */
+    private boolean testOnReturn;
+    /**
+     * 是否在后台维护任务中校验空闲对象
+     * 校验期间对象从空闲对象中取出，不会被借出
+     */
+    private boolean testWhileIdle;
+    /**
+     * 空闲校验时每次维护最多检查的对象数，其中空闲的对象取出并校验
+     */
+    private int validationBatchSize = VALIDATION_BATCH_SIZE;
+    /**
+     * 空闲校验时同时校验一批对象的线程数
+     * 小于2时在后台维护线程中依次校验
+     */
+    private int validationParallelism = VALIDATION_PARALLELISM;
+    /**
+     * 是否根据观测到的负载自动调整最小空闲对象数
+     * 配置的最小空闲对象数作为下限，调整在后台维护任务中进行
+     */
+    private boolean adaptiveSizing;
+    /**
+     * 自适应调整时最小空闲对象数的上限
+     * 小于1时以对象池最大容量为上限
+     */
+    private int adaptiveMaxIdel;
+    /**
+     * 自适应调整时在预测的并发数之上多保留的百分比
+     */
+    private int adaptiveSparePercent = ADAPTIVE_SPARE_PERCENT;
+    /**
+     * 在后台重置返还对象的线程数
+     * 小于1时在返还对象的线程中直接重置
+     */
+    private int resetConcurrency;
+    /**
+     * 获取对象失败时是否抛出预先创建的没有调用栈的异常
+     */
+    private boolean stacklessException;
 
 
     public boolean isBlocked() {
@@ -90,5 +226,376 @@ public class SimpleBaseObjectPoolConfig extends BaseObjectPoolConfig {
         return minIdel;
     }
 
+    /**
+     * 获取每个线程本地缓存的对象数
+     *
+     * @return 每个线程本地缓存的对象数
+     */
+    public int getThreadCacheSize() {
+        return threadCacheSize;
+    }
+
+    /**
+     * 设置每个线程本地缓存的对象数，小于1时不使用线程本地缓存
+     *
+     * @param threadCacheSize 每个线程本地缓存的对象数
+     */
+    public void setThreadCacheSize(int threadCacheSize) {
+        this.threadCacheSize = threadCacheSize;
+    }
+
+    /**
+     * 获取同时补充空闲对象的后台线程数
+     *
+     * @return 同时补充空闲对象的后台线程数
+     */
+    public int getRefillConcurrency() {
+        return refillConcurrency;
+    }
+
+    /**
+     * 设置同时补充空闲对象的后台线程数，小于1时由获取对象的线程直接补充
+     *
+     * @param refillConcurrency 同时补充空闲对象的后台线程数
+     */
+    public void setRefillConcurrency(int refillConcurrency) {
+        this.refillConcurrency = refillConcurrency;
+    }
+
+    /**
+     * 获取预热并行度
+     *
+     * @return 对象池创建时同时新建最小空闲对象的线程数
+     */
+    public int getWarmUpParallelism() {
+        return warmUpParallelism;
+    }
+
+    /**
+     * 设置预热并行度，为1时在构造方法的线程中依次新建
+     *
+     * @param warmUpParallelism 对象池创建时同时新建最小空闲对象的线程数
+     */
+    public void setWarmUpParallelism(int warmUpParallelism) {
+        this.warmUpParallelism = warmUpParallelism;
+    }
+
+    /**
+     * 获取构造方法返回前至少完成的预热百分比
+     *
+     * @return 构造方法返回前至少完成的预热百分比
+     */
+    public int getWarmUpReadyPercent() {
+        return warmUpReadyPercent;
+    }
+
+    /**
+     * 设置构造方法返回前至少完成的预热百分比
+     * 0表示立即返回，剩下的在后台继续预热
+     *
+     * @param warmUpReadyPercent 构造方法返回前至少完成的预热百分比，取值0到100
+     */
+    public void setWarmUpReadyPercent(int warmUpReadyPercent) {
+        this.warmUpReadyPercent = warmUpReadyPercent;
+    }
+
+    /**
+     * 获取两次清除过期空闲对象之间的最短间隔
+     *
+     * @return 两次清除之间的最短间隔，单位毫秒
+     */
+    public long getEvictionPeriod() {
+        return evictionPeriod;
+    }
+
+    /**
+     * 设置两次清除过期空闲对象之间的最短间隔，小于1时不在后台清除
+     *
+     * @param evictionPeriod 两次清除之间的最短间隔，单位毫秒
+     */
+    public void setEvictionPeriod(long evictionPeriod) {
+        this.evictionPeriod = evictionPeriod;
+    }
+
+    /**
+     * 获取每次清除时随机推后的最大百分比
+     *
+     * @return 随机推后的最大百分比
+     */
+    public int getEvictionJitterPercent() {
+        return evictionJitterPercent;
+    }
+
+    /**
+     * 设置每次清除时随机推后的最大百分比，0表示不随机推后
+     *
+     * @param evictionJitterPercent 随机推后的最大百分比
+     */
+    public void setEvictionJitterPercent(int evictionJitterPercent) {
+        this.evictionJitterPercent = evictionJitterPercent;
+    }
+
+    /**
+     * 获取执行后台维护任务的调度器
+     *
+     * @return 调度器，没有设置时返回所有对象池共用的调度器
+     */
+    public PoolMaintenanceScheduler getMaintenanceScheduler() {
+        return maintenanceScheduler == null ? PoolMaintenanceScheduler.getShared() : maintenanceScheduler;
+    }
+
+    /**
+     * 设置执行后台维护任务的调度器，多个对象池可以共用同一个调度器
+     *
+     * @param maintenanceScheduler 调度器
+     */
+    public void setMaintenanceScheduler(PoolMaintenanceScheduler maintenanceScheduler) {
+        this.maintenanceScheduler = maintenanceScheduler;
+    }
+
+    /**
+     * 获取泄漏检测时间
+     *
+     * @return 借出超过多长时间仍没有返还的对象视为泄漏对象，单位毫秒
+     */
+    public long getAbandonedTimeout() {
+        return abandonedTimeout;
+    }
+
+    /**
+     * 设置泄漏检测时间，小于1时不检测泄漏对象
+     * 检测在后台维护任务中进行，间隔为{@link SimpleBaseObjectPoolConfig#getEvictionPeriod()}
+     *
+     * @param abandonedTimeout 借出超过多长时间仍没有返还的对象视为泄漏对象，单位毫秒
+     */
+    public void setAbandonedTimeout(long abandonedTimeout) {
+        this.abandonedTimeout = abandonedTimeout;
+    }
+
+    /**
+     * 获取记录借出调用栈的百分比
+     *
+     * @return 记录借出调用栈的借出次数百分比
+     */
+    public int getAbandonedTracePercent() {
+        return abandonedTracePercent;
+    }
+
+    /**
+     * 设置记录借出调用栈的百分比，0表示不记录，100表示每次借出都记录
+     *
+     * @param abandonedTracePercent 记录借出调用栈的借出次数百分比
+     */
+    public void setAbandonedTracePercent(int abandonedTracePercent) {
+        this.abandonedTracePercent = abandonedTracePercent;
+    }
+
+    /**
+     * 是否回收泄漏对象
+     *
+     * @return 是否回收泄漏对象
+     */
+    public boolean isRemoveAbandoned() {
+        return removeAbandoned;
+    }
+
+    /**
+     * 设置是否回收泄漏对象，不回收时只报告
+     *
+     * @param removeAbandoned 是否回收泄漏对象
+     */
+    public void setRemoveAbandoned(boolean removeAbandoned) {
+        this.removeAbandoned = removeAbandoned;
+    }
+
+    /**
+     * 借出前是否校验对象
+     *
+     * @return 借出前是否校验对象
+     */
+    public boolean isTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    /**
+     * 设置借出前是否校验对象
+     *
+     * @param testOnBorrow 借出前是否校验对象
+     */
+    public void setTestOnBorrow(boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    /**
+     * 返还时是否校验对象
+     *
+     * @return 返还时是否校验对象
+     */
+    public boolean isTestOnReturn() {
+        return testOnReturn;
+    }
+
+    /**
+     * 设置返还时是否校验对象
+     *
+     * @param testOnReturn 返还时是否校验对象
+     */
+    public void setTestOnReturn(boolean testOnReturn) {
+        this.testOnReturn = testOnReturn;
+    }
+
+    /**
+     * 是否在后台校验空闲对象
+     *
+     * @return 是否在后台校验空闲对象
+     */
+    public boolean isTestWhileIdle() {
+        return testWhileIdle;
+    }
+
+    /**
+     * 设置是否在后台校验空闲对象
+     * 校验在后台维护任务中进行，间隔为{@link SimpleBaseObjectPoolConfig#getEvictionPeriod()}，不在后台清除时也不校验
+     *
+     * @param testWhileIdle 是否在后台校验空闲对象
+     */
+    public void setTestWhileIdle(boolean testWhileIdle) {
+        this.testWhileIdle = testWhileIdle;
+    }
+
+    /**
+     * 获取空闲校验每批校验的对象数
+     *
+     * @return 每批校验的对象数
+     */
+    public int getValidationBatchSize() {
+        return validationBatchSize;
+    }
 
+    /**
+     * 设置空闲校验每批校验的对象数
+     * 每次维护最多检查这么多对象，所有对象轮流检查；同一时间最多只有这么多空闲对象因为校验而不能被借出
+     *
+     * @param validationBatchSize 每批校验的对象数
+     */
+    public void setValidationBatchSize(int validationBatchSize) {
+        this.validationBatchSize = validationBatchSize;
+    }
+
+    /**
+     * 获取空闲校验的并行度
+     *
+     * @return 同时校验一批对象的线程数
+     */
+    public int getValidationParallelism() {
+        return validationParallelism;
+    }
+
+    /**
+     * 设置空闲校验的并行度，小于2时在后台维护线程中依次校验
+     *
+     * @param validationParallelism 同时校验一批对象的线程数
+     */
+    public void setValidationParallelism(int validationParallelism) {
+        this.validationParallelism = validationParallelism;
+    }
+
+    /**
+     * 是否根据负载自动调整最小空闲对象数
+     *
+     * @return 是否自动调整
+     */
+    public boolean isAdaptiveSizing() {
+        return adaptiveSizing;
+    }
+
+    /**
+     * 设置是否根据负载自动调整最小空闲对象数
+     * 每个维护间隔根据平均并发的借用数、等待时间和新建对象的耗时预测下一段时间的并发数，
+     * 负载上升时提前增大最小空闲对象数并在后台补充，负载下降时逐步减小并销毁多余的空闲对象。
+     * 调整在后台维护任务中进行，间隔为{@link SimpleBaseObjectPoolConfig#getEvictionPeriod()}，不在后台清除时也不调整
+     *
+     * @param adaptiveSizing 是否自动调整
+     */
+    public void setAdaptiveSizing(boolean adaptiveSizing) {
+        this.adaptiveSizing = adaptiveSizing;
+    }
+
+    /**
+     * 获取自适应调整时最小空闲对象数的上限
+     *
+     * @return 最小空闲对象数的上限，小于1时以对象池最大容量为上限
+     */
+    public int getAdaptiveMaxIdel() {
+        return adaptiveMaxIdel;
+    }
+
+    /**
+     * 设置自适应调整时最小空闲对象数的上限，不会超过对象池最大容量
+     *
+     * @param adaptiveMaxIdel 最小空闲对象数的上限
+     */
+    public void setAdaptiveMaxIdel(int adaptiveMaxIdel) {
+        this.adaptiveMaxIdel = adaptiveMaxIdel;
+    }
+
+    /**
+     * 获取自适应调整时多保留的百分比
+     *
+     * @return 在预测的并发数之上多保留的百分比
+     */
+    public int getAdaptiveSparePercent() {
+        return adaptiveSparePercent;
+    }
+
+    /**
+     * 设置自适应调整时在预测的并发数之上多保留的百分比
+     *
+     * @param adaptiveSparePercent 多保留的百分比
+     */
+    public void setAdaptiveSparePercent(int adaptiveSparePercent) {
+        this.adaptiveSparePercent = adaptiveSparePercent;
+    }
+
+    /**
+     * 获取在后台重置返还对象的线程数
+     *
+     * @return 后台线程数，小于1时在返还对象的线程中直接重置
+     */
+    public int getResetConcurrency() {
+        return resetConcurrency;
+    }
+
+    /**
+     * 设置在后台重置返还对象的线程数
+     * 大于0时返还对象只把对象交给后台线程，由后台线程调用{@link AbstractObjectPoolFactory#resetObject(PooledObject)}和钝化，
+     * 完成后才重新变为空闲，重置的耗时不计入返还的耗时；重置期间对象仍然计入正在使用的对象数，
+     * 并且不会放入返还线程的本地缓存
+     *
+     * @param resetConcurrency 后台线程数，小于1时在返还对象的线程中直接重置
+     */
+    public void setResetConcurrency(int resetConcurrency) {
+        this.resetConcurrency = resetConcurrency;
+    }
+
+    /**
+     * 获取对象失败时是否抛出预先创建的没有调用栈的异常
+     *
+     * @return 是否使用没有调用栈的异常
+     */
+    public boolean isStacklessException() {
+        return stacklessException;
+    }
+
+    /**
+     * 设置获取对象失败时是否抛出预先创建的没有调用栈的异常
+     * 为true时没有空闲对象、等待超时都抛出{@link NoMoreIdleSpaceException#stackless()}，
+     * 非阻塞对象池没有空闲对象时抛出的{@link IllegalStateException}也是预先创建的，过载时拒绝请求几乎没有开销。
+     * 不关心失败原因时也可以使用{@link SimpleBaseObjectPool#tryGetObject(long)}，失败时返回null
+     *
+     * @param stacklessException 是否使用没有调用栈的异常
+     */
+    public void setStacklessException(boolean stacklessException) {
+        this.stacklessException = stacklessException;
+    }
 }
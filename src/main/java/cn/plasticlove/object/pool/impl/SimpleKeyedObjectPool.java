@@ -0,0 +1,442 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+import cn.plasticlove.object.pool.KeyedObjectPool;
+import cn.plasticlove.object.pool.PoolMetrics;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+import cn.plasticlove.object.pool.util.LogUtil;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 按键分组的对象池{@link KeyedObjectPool}的一个实现
+ * <p>
+ * 每个键对应一个{@link SimpleBaseObjectPool}，有自己的空闲对象、线程本地缓存、等待队列和运行指标，
+ * {@link SimpleKeyedObjectPoolConfig}中继承的配置对每个键分别生效。所有键的对象池共用一个{@link PoolCapacity}，
+ * 新建对象前先占用名额，对象总数不会超过{@link SimpleKeyedObjectPoolConfig#getGlobalMaxTotal()}。
+ * </p>
+ * <p>
+ * 名额已满时：获取对象先销毁最久没有获取过对象的其他键的一个空闲对象，腾出名额后再新建；
+ * 没有可以销毁的空闲对象时在这个键的对象池中等待。返还对象时如果名额已满、这个键没有等待的请求而其他键有，
+ * 在后台把这个键的一个空闲对象销毁，名额让给等待最多的键，由它的后台补充线程新建一个对象。
+ * </p>
+ * <p>
+ * 获取对象时只查找一次{@link ConcurrentHashMap}，不分配对象；第一次使用一个键时才新建它的对象池，
+ * 同一个键只新建一个，放入map后再由一个线程预热。
+ * 用过的键一直保留，适用于键的数目有限的场景，比如后端分片。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see SimpleKeyedObjectPoolConfig
+ **/
+
+public class SimpleKeyedObjectPool<K, T> implements KeyedObjectPool<K, T> {
+    private static final String TAG = SimpleKeyedObjectPool.class.getSimpleName();
+    /**
+     * 对象工厂，用于所有键的对象的创建和销毁
+     */
+    private final AbstractKeyedObjectPoolFactory<K, T> factory;
+    /**
+     * 每个键的对象池共用的配置
+     */
+    private final SimpleKeyedObjectPoolConfig config;
+    /**
+     * 每个键的对象池
+     */
+    private final ConcurrentHashMap<K, KeyedPool<T>> pools = new ConcurrentHashMap<>();
+    /**
+     * 所有键共用的对象总数名额
+     */
+    private final PoolCapacity capacity;
+    /**
+     * 后台维护线程，返还对象时把名额让给其他键的操作在这里执行，不占用返还对象的线程
+     */
+    private final ScheduledExecutorService service;
+    /**
+     * 当前对象池是否处于关闭状态
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * @param factory 对象工厂
+     * @param config  自定义的对象池配置
+     */
+    public SimpleKeyedObjectPool(AbstractKeyedObjectPoolFactory<K, T> factory, SimpleKeyedObjectPoolConfig config) {
+        LogUtil.info(TAG, "the pool started at %s", new Date());
+        if (factory == null) {
+            throw new IllegalStateException("factory is null");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("the config for this kind of pool must be SimpleKeyedObjectPoolConfig");
+        }
+        if (config.getGlobalMaxTotal() < 1) {
+            throw new IllegalArgumentException("globalMaxTotal must be positive");
+        }
+        this.factory = factory;
+        this.config = config;
+        this.capacity = new PoolCapacity(config.getGlobalMaxTotal(), new PoolCapacity.Reclaimer() {
+            @Override
+            public boolean reclaim(BaseObjectPool<?> requester) {
+                return reclaimColdest(requester);
+            }
+        });
+        this.service = config.getMaintenanceScheduler().getExecutor();
+    }
+
+    /**
+     * @param factory 对象工厂
+     */
+    public SimpleKeyedObjectPool(AbstractKeyedObjectPoolFactory<K, T> factory) {
+        this(factory, new SimpleKeyedObjectPoolConfig());
+    }
+
+    /**
+     * 获取指定键的对象
+     *
+     * @param key 键
+     * @return 需要的对象
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public T getObject(K key) throws NoMoreIdleSpaceException {
+        return getPooledObject(key).getObject();
+    }
+
+    /**
+     * 获取指定键的对象的包装类
+     *
+     * @param key 键
+     * @return 需要的对象的包装类
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public PooledObject<T> getPooledObject(K key) throws NoMoreIdleSpaceException {
+        KeyedPool<T> kp = pool(key);
+        kp.touch();
+        return kp.pool.getPooledObject();
+    }
+
+    /**
+     * 异步获取指定键的对象
+     *
+     * @param key 键
+     * @return 获取到对象时完成的future
+     */
+    @Override
+    public CompletableFuture<T> borrowAsync(K key) {
+        if (isClosed()) {
+            return AsyncWaiters.failedFuture(new IllegalStateException("pool is not open"));
+        }
+        KeyedPool<T> kp = pool(key);
+        kp.touch();
+        return kp.pool.borrowAsync();
+    }
+
+    /**
+     * 将对象返还到指定键下
+     *
+     * @param key 获取对象时的键
+     * @param obj 待返还的对象
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObject(K key, T obj) throws ObjectDestroyException, IllegalObjectStateException {
+        KeyedPool<T> kp = existing(key);
+        kp.pool.returnObject(obj);
+        reuseCapacity(kp);
+    }
+
+    /**
+     * 将对象的包装类返还到指定键下
+     *
+     * @param key 获取对象时的键
+     * @param p   待返还的对象的包装类
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnPooledObject(K key, PooledObject<T> p) throws ObjectDestroyException, IllegalObjectStateException {
+        KeyedPool<T> kp = existing(key);
+        kp.pool.returnPooledObject(p);
+        reuseCapacity(kp);
+    }
+
+    /**
+     * 获取指定键的对象池，第一次使用这个键时新建
+     *
+     * @param key 键
+     * @return 这个键的对象池
+     */
+    private KeyedPool<T> pool(K key) {
+        KeyedPool<T> kp = pools.get(key);
+        if (kp != null) {
+            return kp;
+        }
+        assertOpen();
+        //map的锁中只新建对象池，不调用对象工厂；并发新建同一个键时只有一个线程新建
+        kp = pools.computeIfAbsent(key, new Function<K, KeyedPool<T>>() {
+            @Override
+            public KeyedPool<T> apply(K k) {
+                return new KeyedPool<>(new SimpleBaseObjectPool<T>(factory.forKey(k), config, capacity));
+            }
+        });
+        //放入map后再预热，只有一个线程预热，其他线程不等待预热完成
+        if (kp.start()) {
+            kp.pool.initPool(config);
+            //防止其他线程已经关闭对象池
+            if (isClosed()) {
+                kp.pool.close();
+            }
+        }
+        return kp;
+    }
+
+    /**
+     * 获取已经存在的键的对象池
+     *
+     * @param key 键
+     * @return 这个键的对象池
+     */
+    private KeyedPool<T> existing(K key) {
+        KeyedPool<T> kp = pools.get(key);
+        if (kp == null) {
+            throw new IllegalStateException("the object is not part of the pool now");
+        }
+        return kp;
+    }
+
+    /**
+     * 名额已满时销毁最久没有获取过对象的其他键的一个空闲对象
+     *
+     * @param requester 需要新建对象的键的对象池
+     * @return 是否销毁了一个对象
+     */
+    private boolean reclaimColdest(BaseObjectPool<?> requester) {
+        KeyedPool<T> coldest = null;
+        for (KeyedPool<T> kp : pools.values()) {
+            if (kp.pool == requester || kp.pool.getIdleNum() < 1) {
+                continue;
+            }
+            if (coldest == null || kp.lastBorrowTime < coldest.lastBorrowTime) {
+                coldest = kp;
+            }
+        }
+        return coldest != null && coldest.pool.evictIdle();
+    }
+
+    /**
+     * 名额已满时，把刚返还到这个键的空闲对象让给等待最多的其他键
+     * 返还对象的线程只读取计数，名额没有满或者这个键自己有等待的请求时直接返回；
+     * 销毁空闲对象在后台维护线程中进行，腾出的名额由等待的键的后台补充线程新建对象，返还对象的线程不调用对象工厂
+     *
+     * @param from 刚返还对象的键的对象池
+     */
+    private void reuseCapacity(final KeyedPool<T> from) {
+        if (!capacity.isExhausted() || from.pool.getWaitingNum() > 0) {
+            return;
+        }
+        KeyedPool<T> target = null;
+        int most = 0;
+        for (KeyedPool<T> kp : pools.values()) {
+            int waiting = kp.pool.getWaitingNum();
+            if (kp != from && waiting > most) {
+                most = waiting;
+                target = kp;
+            }
+        }
+        if (target == null) {
+            return;
+        }
+        final KeyedPool<T> to = target;
+        try {
+            service.execute(new Runnable() {
+                @Override
+                public void run() {
+                    //补充的目标包括等待的请求数，腾出名额后通知即可
+                    if (from.pool.evictIdle()) {
+                        to.pool.signalRefill();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //维护线程已经关闭，不再转让名额
+        }
+    }
+
+    /**
+     * 获取所有键的对象总数上限
+     *
+     * @return 对象总数上限
+     */
+    @Override
+    public int getMaxNum() {
+        return capacity.getMaxTotal();
+    }
+
+    /**
+     * 获取所有键的对象总数
+     *
+     * @return 对象总数
+     */
+    @Override
+    public int getTotalNum() {
+        return capacity.getTotalNum();
+    }
+
+    /**
+     * 获取指定键正在使用的对象数
+     *
+     * @param key 键
+     * @return 正在使用的对象数
+     */
+    @Override
+    public int getActiveNum(K key) {
+        KeyedPool<T> kp = pools.get(key);
+        return kp == null ? 0 : kp.pool.getActiveNum();
+    }
+
+    /**
+     * 获取指定键的空闲对象数
+     *
+     * @param key 键
+     * @return 空闲对象数
+     */
+    @Override
+    public int getIdleNum(K key) {
+        KeyedPool<T> kp = pools.get(key);
+        return kp == null ? 0 : kp.pool.getIdleNum();
+    }
+
+    /**
+     * 获取所有用过的键
+     *
+     * @return 所有用过的键
+     */
+    @Override
+    public Set<K> getKeys() {
+        return Collections.unmodifiableSet(pools.keySet());
+    }
+
+    /**
+     * 获取指定键的运行指标
+     *
+     * @param key 键
+     * @return 运行指标
+     */
+    @Override
+    public PoolMetrics getMetrics(K key) {
+        KeyedPool<T> kp = pools.get(key);
+        return kp == null ? null : kp.pool.getMetrics();
+    }
+
+    /**
+     * 清除指定键的空闲对象
+     *
+     * @param key 键
+     */
+    @Override
+    public void clear(K key) {
+        KeyedPool<T> kp = pools.get(key);
+        if (kp != null) {
+            kp.pool.clear();
+        }
+    }
+
+    /**
+     * 清除所有键的空闲对象
+     */
+    @Override
+    public void clear() {
+        for (KeyedPool<T> kp : pools.values()) {
+            kp.pool.clear();
+        }
+    }
+
+    /**
+     * 关闭对象池，关闭所有键的对象池
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (KeyedPool<T> kp : pools.values()) {
+            kp.pool.close();
+        }
+        LogUtil.info(TAG, "pool is closed at %s", new Date());
+    }
+
+    /**
+     * 判断是否已经关闭对象池
+     *
+     * @return
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 确保对象池时开着的状态
+     */
+    private void assertOpen() {
+        if (isClosed()) {
+            throw new IllegalStateException("pool is not open");
+        }
+    }
+
+    /**
+     * 一个键的对象池
+     *
+     * @param <T>
+     */
+    static class KeyedPool<T> {
+        final SimpleBaseObjectPool<T> pool;
+        /**
+         * 上次获取对象的时间，名额已满时优先销毁最久没有获取过对象的键的空闲对象
+         */
+        volatile long lastBorrowTime;
+        /**
+         * 是否已经有线程负责预热
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        KeyedPool(SimpleBaseObjectPool<T> pool) {
+            this.pool = pool;
+            this.lastBorrowTime = System.currentTimeMillis();
+        }
+
+        /**
+         * 记录获取对象的时间，同一毫秒内只写一次
+         */
+        void touch() {
+            long now = System.currentTimeMillis();
+            if (lastBorrowTime != now) {
+                lastBorrowTime = now;
+            }
+        }
+
+        /**
+         * 标记开始预热，只有第一个调用的线程返回true
+         *
+         * @return 是否由调用线程预热
+         */
+        boolean start() {
+            return !started.get() && started.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.ObtainPolicy;
+
+/**
+ * 针对{@link SimpleKeyedObjectPool}的配置类
+ * 继承的配置对每个键分别生效，比如{@link SimpleKeyedObjectPoolConfig#getMaxTotal()}是每个键的对象数上限，
+ * {@link SimpleKeyedObjectPoolConfig#getMinIdel()}是每个键的最小空闲对象数（默认为0）；
+ * 另外增加了所有键的对象总数上限
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class SimpleKeyedObjectPoolConfig extends SimpleBaseObjectPoolConfig {
+    /**
+     * 所有键的对象总数上限默认值
+     */
+    static final int GLOBAL_MAX_TOTAL = 64;
+    /**
+     * 所有键的对象总数上限
+     */
+    private int globalMaxTotal = GLOBAL_MAX_TOTAL;
+
+    public SimpleKeyedObjectPoolConfig() {
+        super();
+        //键的数目不固定，默认不为每个键保留空闲对象
+        setMinIdel(0);
+    }
+
+    public SimpleKeyedObjectPoolConfig(ObtainPolicy obtainPolicy, long maxWaitTime, long maxLiveTime, int maxTotalPerKey,
+                                       int minIdelPerKey, boolean blocked, int globalMaxTotal) {
+        super(obtainPolicy, maxWaitTime, maxLiveTime, maxTotalPerKey, minIdelPerKey, blocked);
+        this.globalMaxTotal = globalMaxTotal;
+    }
+
+    /**
+     * 获取所有键的对象总数上限
+     *
+     * @return 所有键的对象总数上限
+     */
+    public int getGlobalMaxTotal() {
+        return globalMaxTotal;
+    }
+
+    /**
+     * 设置所有键的对象总数上限
+     * 达到上限后，新建对象前会先销毁最久没有使用的其他键的空闲对象
+     *
+     * @param globalMaxTotal 所有键的对象总数上限
+     */
+    public void setGlobalMaxTotal(int globalMaxTotal) {
+        this.globalMaxTotal = globalMaxTotal;
+    }
+}
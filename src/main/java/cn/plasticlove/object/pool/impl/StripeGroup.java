@@ -0,0 +1,185 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.metrics.DefaultPoolMetrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link StripedObjectPool}的所有分片共用的状态
+ * <p>
+ * 每个分片是一个{@link SimpleBaseObjectPool}，有自己的空闲对象容器、线程本地缓存和对象计数；
+ * 对象总数名额、等待队列、借出数、等待数、批量获取的锁和运行指标由所有分片共用，
+ * 任何一个分片返还的对象都可以交给在其他分片上等待的请求，所有分片的对象总数之和不会超过最大容量。
+ * </p>
+ * <p>
+ * 分片的空闲对象用完时通过{@link StripeGroup#steal(int)}从其他分片取一个空闲对象，对象随之转移到取走它的分片，
+ * 共用的名额跟着对象转移，不需要释放再占用。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+class StripeGroup<T> {
+    /**
+     * 所有分片共用的对象总数名额，名额已满时不销毁其他分片的空闲对象，空闲对象由取对象的分片直接转移
+     */
+    private final PoolCapacity capacity;
+    /**
+     * 所有分片共用的运行指标
+     */
+    private final DefaultPoolMetrics metrics = new DefaultPoolMetrics();
+    /**
+     * 所有分片正在等待的同步和异步请求数
+     */
+    private final AtomicInteger waitingNum = new AtomicInteger();
+    /**
+     * 所有分片借出的对象数，对象可能从一个分片借出、在另一个分片登记，只在这里计数
+     */
+    private final AtomicInteger activeNum = new AtomicInteger();
+    /**
+     * 所有分片共用的等待队列
+     */
+    private final AsyncWaiters<T> asyncWaiters;
+    /**
+     * 所有分片共用的批量获取锁，同一时间只有一个批量获取在凑齐对象
+     */
+    private final ReentrantLock batchLock = new ReentrantLock(true);
+    /**
+     * 分片数
+     */
+    private final int stripeNum;
+    /**
+     * 所有分片的最小空闲对象数之和
+     */
+    private final int minIdel;
+    /**
+     * 所有分片，全部创建完成后设置，之前为null
+     */
+    private volatile SimpleBaseObjectPool<T>[] stripes;
+
+    /**
+     * @param config    对象池的配置
+     * @param stripeNum 分片数
+     */
+    StripeGroup(SimpleBaseObjectPoolConfig config, int stripeNum) {
+        this.stripeNum = stripeNum;
+        this.minIdel = Math.max(0, config.getMinIdel());
+        this.capacity = new PoolCapacity(config.getMaxTotal(), new PoolCapacity.Reclaimer() {
+            @Override
+            public boolean reclaim(BaseObjectPool<?> requester) {
+                return false;
+            }
+        });
+        this.asyncWaiters = new AsyncWaiters<>(waitingNum, metrics, config.getMaintenanceScheduler().getExecutor(),
+                new AbandonedObjectDetector<T>(config, metrics), config.isStacklessException());
+    }
+
+    /**
+     * 设置所有分片
+     *
+     * @param stripes 所有分片，下标和创建分片时传入的下标一致
+     */
+    void setStripes(SimpleBaseObjectPool<T>[] stripes) {
+        this.stripes = stripes;
+    }
+
+    /**
+     * 获取一个分片的最小空闲对象数，最小空闲对象数平均分到每个分片，余数分给前面的分片
+     *
+     * @param index 分片下标
+     * @return 分片的最小空闲对象数
+     */
+    int getMinIdel(int index) {
+        return share(minIdel, index);
+    }
+
+    /**
+     * 把总数平均分到每个分片，余数分给前面的分片
+     *
+     * @param total 总数
+     * @param index 分片下标
+     * @return 分到这个分片的数目
+     */
+    int share(int total, int index) {
+        return total / stripeNum + (index < total % stripeNum ? 1 : 0);
+    }
+
+    /**
+     * 从其他分片取一个空闲对象，从下一个分片开始依次尝试
+     * 取到的对象已经不属于原来的分片，调用方需要登记到自己的分片
+     *
+     * @param index 取对象的分片的下标
+     * @return 空闲对象，其他分片都没有空闲对象时返回null
+     */
+    PooledObject<T> steal(int index) {
+        SimpleBaseObjectPool<T>[] all = stripes;
+        if (all == null) {
+            return null;
+        }
+        for (int i = 1; i < all.length; i++) {
+            PooledObject<T> p = all[(index + i) % all.length].surrender();
+            if (p != null) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取所有分片共用的对象总数名额
+     *
+     * @return 对象总数名额
+     */
+    PoolCapacity getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取所有分片共用的运行指标
+     *
+     * @return 运行指标
+     */
+    DefaultPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取所有分片共用的等待数
+     *
+     * @return 等待数
+     */
+    AtomicInteger getWaitingNum() {
+        return waitingNum;
+    }
+
+    /**
+     * 获取所有分片共用的借出数
+     *
+     * @return 借出数
+     */
+    AtomicInteger getActiveNum() {
+        return activeNum;
+    }
+
+    /**
+     * 获取所有分片共用的等待队列
+     *
+     * @return 等待队列
+     */
+    AsyncWaiters<T> getAsyncWaiters() {
+        return asyncWaiters;
+    }
+
+    /**
+     * 获取所有分片共用的批量获取锁
+     *
+     * @return 批量获取锁
+     */
+    ReentrantLock getBatchLock() {
+        return batchLock;
+    }
+}
@@ -0,0 +1,642 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.BaseObjectPool;
+import cn.plasticlove.object.pool.ObtainPolicy;
+import cn.plasticlove.object.pool.PoolMetrics;
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.PooledObjectState;
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.exception.ObjectDestroyException;
+import cn.plasticlove.object.pool.util.LogUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分片的对象池{@link BaseObjectPool}实现
+ * 对象池由多个分片组成，默认每个可用处理器一个分片，每个分片是一个{@link SimpleBaseObjectPool}，
+ * 有自己的空闲对象容器、线程本地缓存和对象计数，避免所有线程竞争同一个空闲队列。
+ * <p>
+ * 1.获取对象时，线程根据自身的哈希值选择一个分片，由这个分片获取；
+ * 分片没有空闲对象时依次从其他分片取一个空闲对象，都没有时再新建对象或者阻塞等待。
+ * </p>
+ * <p>
+ * 2.返还对象时，对象返还给它所属的分片。所有分片共用一个等待队列{@link StripeGroup}，
+ * 任何一个分片返还的对象都可以交给在其他分片上等待的请求。
+ * </p>
+ * <p>
+ * 3.所有分片共用对象总数名额，对象总数不会超过{@link StripedObjectPool#maxTotal}；
+ * 最小空闲对象数平均分到每个分片，由各个分片自己补充，自动调整时由对象池统一调整后再分到每个分片。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ * @see StripedObjectPoolConfig
+ **/
+
+public class StripedObjectPool<T> implements BaseObjectPool<T> {
+    private static final String TAG = StripedObjectPool.class.getSimpleName();
+    /**
+     * 所有分片
+     */
+    private final SimpleBaseObjectPool<T>[] stripes;
+    /**
+     * 所有分片共用的名额、等待队列和运行指标
+     */
+    private final StripeGroup<T> group;
+    /**
+     * 当前对象池是否处于关闭状态
+     */
+    private volatile boolean closed = false;
+    /**
+     * 是否开启阻塞机制
+     */
+    private final boolean blocked;
+    /**
+     * 对象池中所能容纳的最大对象数
+     */
+    private final int maxTotal;
+    /**
+     * 从对象池中获取对象的策略
+     */
+    private final ObtainPolicy obtainPolicy;
+    /**
+     * 阻塞等待的最长时间
+     */
+    private final long maxWaitTime;
+    /**
+     * 空闲对象的最长生命周期
+     */
+    private final long maxLiveTime;
+    /**
+     * 根据负载调整所有分片的最小空闲对象数
+     */
+    private final AdaptiveSizer sizer;
+    /**
+     * 在共用的调度器中自动调整最小空闲对象数的维护任务，不自动调整时为null
+     */
+    private final PoolMaintenanceScheduler.Registration sizing;
+    /**
+     * 自动调整时下一个销毁空闲对象的分片
+     */
+    private final AtomicInteger evictStripe = new AtomicInteger();
+
+    /**
+     * @param factory 对象工厂
+     * @param config  自定义的对象池配置
+     */
+    @SuppressWarnings("unchecked")
+    public StripedObjectPool(AbstractObjectPoolFactory factory, StripedObjectPoolConfig config) {
+        if (factory == null) {
+            throw new IllegalStateException("factory is null");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("the config for this kind of pool must be StripedObjectPoolConfig");
+        }
+        if (config.getMaxTotal() < 1) {
+            throw new IllegalArgumentException("maxTotal must be positive");
+        }
+        this.maxTotal = config.getMaxTotal();
+        this.obtainPolicy = config.getObtainPolicy();
+        this.maxWaitTime = config.getMaxWaitTime();
+        this.maxLiveTime = config.getMaxLiveTime();
+        this.blocked = config.isBlocked();
+
+        int stripeNum = Math.max(1, Math.min(config.getStripes(), maxTotal));
+        this.group = new StripeGroup<>(config, stripeNum);
+        this.stripes = new SimpleBaseObjectPool[stripeNum];
+        for (int i = 0; i < stripeNum; i++) {
+            stripes[i] = new SimpleBaseObjectPool<>(factory, config, group, i);
+        }
+        group.setStripes(stripes);
+        this.sizer = new AdaptiveSizer(config, maxTotal, group.getMetrics(), new AdaptiveSizer.Target() {
+            @Override
+            public int getActiveNum() {
+                return StripedObjectPool.this.getActiveNum();
+            }
+
+            @Override
+            public int getWaitingNum() {
+                return group.getWaitingNum().get();
+            }
+
+            @Override
+            public int getIdleNum() {
+                return StripedObjectPool.this.getIdleNum();
+            }
+
+            @Override
+            public int getMinIdel() {
+                return StripedObjectPool.this.getMinIdel();
+            }
+
+            @Override
+            public void setMinIdel(int minIdel) {
+                for (int i = 0; i < stripes.length; i++) {
+                    stripes[i].updateMinIdel(group.share(minIdel, i));
+                }
+            }
+
+            @Override
+            public boolean evictIdle() {
+                int start = evictStripe.getAndIncrement() & Integer.MAX_VALUE;
+                for (int i = 0; i < stripes.length; i++) {
+                    if (stripes[(start + i) % stripes.length].evictIdle()) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        this.sizing = registerSizing(config);
+        LogUtil.info(TAG, "pool is inited. %d stripes; min idle objects is %d; max num of objects is %d",
+                stripeNum, getMinIdel(), maxTotal);
+    }
+
+    /**
+     * @param factory 对象工厂
+     */
+    public StripedObjectPool(AbstractObjectPoolFactory factory) {
+        this(factory, new StripedObjectPoolConfig());
+    }
+
+    /**
+     * 在调度器中登记自动调整最小空闲对象数的维护任务，分片自己不再调整
+     *
+     * @param config 配置类
+     * @return 对象池的登记，不自动调整时返回null
+     */
+    private PoolMaintenanceScheduler.Registration registerSizing(StripedObjectPoolConfig config) {
+        if (!sizer.isEnabled()) {
+            return null;
+        }
+        PoolMaintenanceScheduler.Registration registration = config.getMaintenanceScheduler().register(new PoolMaintenanceScheduler.Task() {
+            @Override
+            public long run() {
+                if (isClosed()) {
+                    return -1;
+                }
+                sizer.resize();
+                return System.currentTimeMillis();
+            }
+        }, config.getEvictionPeriod(), config.getEvictionJitterPercent());
+        registration.wake();
+        return registration;
+    }
+
+    /**
+     * 向对象池添加对象
+     */
+    @Override
+    public void addObject() {
+        assertOpen();
+        home().addObject();
+    }
+
+    /**
+     * 获取对象
+     *
+     * @return 需要的对象
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public T getObject() throws NoMoreIdleSpaceException {
+        return getPooledObject(maxWaitTime).getObject();
+    }
+
+    /**
+     * 获取对象的包装类
+     *
+     * @return 需要的对象的包装类
+     * @throws NoMoreIdleSpaceException
+     */
+    @Override
+    public PooledObject<T> getPooledObject() throws NoMoreIdleSpaceException {
+        return getPooledObject(maxWaitTime);
+    }
+
+    /**
+     * 从对象池中获取对象
+     *
+     * @param maxTimeWaitMills 阻塞时的最长等待时间，负值表示一直等待
+     * @return 需要的对象
+     * @throws NoMoreIdleSpaceException 没有空闲对象并且等待超时
+     */
+    public T getObject(long maxTimeWaitMills) throws NoMoreIdleSpaceException {
+        return getPooledObject(maxTimeWaitMills).getObject();
+    }
+
+    /**
+     * 从对象池中获取对象
+     * 依次从所在分片、其他分片获取，都没有时新建对象，达到最大容量时阻塞等待
+     *
+     * @param maxTimeWaitMills 阻塞时的最长等待时间，负值表示一直等待
+     * @return 需要的对象的包装类
+     * @throws NoMoreIdleSpaceException 没有空闲对象并且等待超时
+     */
+    public PooledObject<T> getPooledObject(long maxTimeWaitMills) throws NoMoreIdleSpaceException {
+        assertOpen();
+        return home().getPooledObject(maxTimeWaitMills);
+    }
+
+    /**
+     * 尝试获取对象，没有空闲对象并且等待超时时返回null，不抛出异常
+     * 过载时拒绝请求不需要创建异常，适合大量请求需要快速失败的场景
+     *
+     * @param maxTimeWaitMills 阻塞时的最长等待时间，负值表示一直等待
+     * @return 需要的对象，获取失败时返回null
+     */
+    public T tryGetObject(long maxTimeWaitMills) {
+        return home().tryGetObject(maxTimeWaitMills);
+    }
+
+    /**
+     * 异步获取对象，最长等待时间为{@link StripedObjectPool#getMaxWaitTime()}
+     *
+     * @return 获取到对象时完成的future
+     */
+    @Override
+    public CompletableFuture<T> borrowAsync() {
+        return borrowAsync(maxWaitTime);
+    }
+
+    /**
+     * 异步获取对象
+     * 没有空闲对象且对象池已满时进入所有分片共用的等待队列，不阻塞调用线程
+     *
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return 获取到对象时完成的future
+     */
+    public CompletableFuture<T> borrowAsync(long maxTimeWaitMills) {
+        if (isClosed()) {
+            return AsyncWaiters.failedFuture(new IllegalStateException("pool is not open"));
+        }
+        return home().borrowAsync(maxTimeWaitMills);
+    }
+
+    /**
+     * 指定优先级和截止时间异步获取对象
+     *
+     * @param priority 优先级，越大越先拿到返还的对象，{@link StripedObjectPool#borrowAsync()}的优先级为0
+     * @param deadline 截止时间点，取自{@link System#currentTimeMillis()}，负值表示一直等待
+     * @return 获取到对象时完成的future
+     * @see SimpleBaseObjectPool#borrowAsync(int, long)
+     */
+    public CompletableFuture<T> borrowAsync(int priority, long deadline) {
+        if (isClosed()) {
+            return AsyncWaiters.failedFuture(new IllegalStateException("pool is not open"));
+        }
+        return home().borrowAsync(priority, deadline);
+    }
+
+    /**
+     * 指定优先级和截止时间获取对象，没有空闲对象时阻塞等待
+     *
+     * @param priority 优先级，越大越先拿到返还的对象
+     * @param deadline 截止时间点，取自{@link System#currentTimeMillis()}，负值表示一直等待
+     * @return 需要的对象
+     * @throws NoMoreIdleSpaceException 到截止时间还没有拿到对象，或者等待时被中断
+     * @see SimpleBaseObjectPool#getObject(int, long)
+     */
+    public T getObject(int priority, long deadline) throws NoMoreIdleSpaceException {
+        return AsyncWaiters.await(borrowAsync(priority, deadline));
+    }
+
+    /**
+     * 向对象池中返还对象，对象返还给它所属的分片
+     *
+     * @param obj 待返还的对象
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObject(T obj) throws ObjectDestroyException, IllegalObjectStateException {
+        PooledObject<T> p = find(obj);
+        if (p == null) {
+            throw new IllegalStateException("the object is not part of the pool now");
+        }
+        returnPooledObject(p);
+    }
+
+    /**
+     * 向对象池中返还对象的包装类，直接通过包装类找到所属的分片
+     *
+     * @param p 待返还的对象的包装类
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnPooledObject(PooledObject<T> p) throws ObjectDestroyException, IllegalObjectStateException {
+        SimpleBaseObjectPool<T> owner = owner(p);
+        if (owner == null) {
+            throw new IllegalStateException("the object is not part of the pool now");
+        }
+        owner.returnPooledObject(p);
+    }
+
+    /**
+     * 一次获取多个对象，由所在分片凑齐，所有分片同一时间只有一个批量获取在凑齐对象
+     *
+     * @param n                对象数
+     * @param maxTimeWaitMills 最长等待时间，负值表示一直等待
+     * @return n个对象
+     * @throws NoMoreIdleSpaceException 等待超时仍然凑不齐n个对象
+     */
+    @Override
+    public List<T> getObjects(int n, long maxTimeWaitMills) throws NoMoreIdleSpaceException {
+        assertOpen();
+        return home().getObjects(n, maxTimeWaitMills);
+    }
+
+    /**
+     * 一次返还多个对象
+     * 先检查所有对象，再按所属的分片分组返还
+     *
+     * @param objs 待返还的对象
+     * @throws ObjectDestroyException
+     * @throws IllegalObjectStateException
+     */
+    @Override
+    public void returnObjects(Collection<T> objs) throws ObjectDestroyException, IllegalObjectStateException {
+        Map<SimpleBaseObjectPool<T>, List<T>> byOwner = new IdentityHashMap<>();
+        Set<PooledObject<T>> checked = Collections.newSetFromMap(new IdentityHashMap<PooledObject<T>, Boolean>());
+        for (T obj : objs) {
+            PooledObject<T> p = find(obj);
+            SimpleBaseObjectPool<T> owner = owner(p);
+            if (owner == null) {
+                throw new IllegalStateException("the object is not part of the pool now");
+            }
+            if (p.getState() != PooledObjectState.USING || !checked.add(p)) {
+                throw new IllegalObjectStateException("the object is in wrong state");
+            }
+            List<T> owned = byOwner.get(owner);
+            if (owned == null) {
+                owned = new ArrayList<>();
+                byOwner.put(owner, owned);
+            }
+            owned.add(obj);
+        }
+        for (Map.Entry<SimpleBaseObjectPool<T>, List<T>> entry : byOwner.entrySet()) {
+            entry.getKey().returnObjects(entry.getValue());
+        }
+    }
+
+    /**
+     * 获取对象池最大容量
+     *
+     * @return 对象池最大容量
+     */
+    @Override
+    public int getMaxNum() {
+        return maxTotal;
+    }
+
+    /**
+     * 获取对象池活跃的（正在使用）的对象数
+     * 所有分片共用借出数，再加上各个分片等待后台重置的对象
+     *
+     * @return 活跃的对象数
+     */
+    @Override
+    public int getActiveNum() {
+        int active = group.getActiveNum().get();
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            active += stripe.getResettingNum();
+        }
+        return Math.max(active, 0);
+    }
+
+    /**
+     * 获取对象池的运行指标，所有分片共用
+     *
+     * @return 对象池的运行指标
+     */
+    @Override
+    public PoolMetrics getMetrics() {
+        return group.getMetrics();
+    }
+
+    /**
+     * 获取所有分片的空闲对象数
+     *
+     * @return 空闲对象数
+     */
+    public int getIdleNum() {
+        int idle = 0;
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            idle += stripe.getIdleNum();
+        }
+        return idle;
+    }
+
+    /**
+     * 获取分片数
+     *
+     * @return 分片数
+     */
+    public int getStripeNum() {
+        return stripes.length;
+    }
+
+    /**
+     * 关闭对象池的锁
+     */
+    private final ReentrantLock closeLock = new ReentrantLock();
+
+    /**
+     * 关闭对象池，依次关闭所有分片
+     */
+    @Override
+    public void close() {
+        if (isClosed()) {
+            return;
+        }
+        //加锁是为了防止多个线程同时关闭对象池，关闭分片在锁外进行
+        closeLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.unlock();
+        }
+        if (sizing != null) {
+            sizing.cancel();
+        }
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    /**
+     * 清除所有分片的空闲对象
+     */
+    @Override
+    public void clear() {
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * 判断是否已经关闭对象池
+     *
+     * @return 是否已经关闭
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 判断是否设置阻塞机制
+     *
+     * @return 是否阻塞
+     */
+    @Override
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    /**
+     * 销毁对象，由对象所属的分片销毁
+     *
+     * @param p 待摧毁的对象
+     * @throws ObjectDestroyException
+     */
+    @Override
+    public void destroy(PooledObject<T> p) throws ObjectDestroyException {
+        SimpleBaseObjectPool<T> owner = owner(p);
+        if (owner == null) {
+            throw new IllegalStateException("the object is not part of the pool now");
+        }
+        owner.destroy(p);
+    }
+
+    /**
+     * 清除所有分片的过期空闲对象
+     *
+     * @throws ObjectDestroyException
+     */
+    @Override
+    public void removeTimeOutedObject() throws ObjectDestroyException {
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            stripe.removeTimeOutedObject();
+        }
+    }
+
+    /**
+     * 根据当前线程的哈希值选择所在分片
+     *
+     * @return 分片下标
+     */
+    private int homeStripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    /**
+     * 获取当前线程所在的分片
+     *
+     * @return 所在分片
+     */
+    private SimpleBaseObjectPool<T> home() {
+        return stripes[homeStripe()];
+    }
+
+    /**
+     * 查找对象的包装类，先查所在分片，再查其他分片
+     *
+     * @param obj 对象
+     * @return 对象的包装类，不属于任何分片时返回null
+     */
+    private PooledObject<T> find(T obj) {
+        int home = homeStripe();
+        for (int i = 0; i < stripes.length; i++) {
+            PooledObject<T> p = stripes[(home + i) % stripes.length].find(obj);
+            if (p != null) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取对象所属的分片
+     *
+     * @param p 对象的包装类
+     * @return 所属的分片，不属于任何分片时返回null
+     */
+    private SimpleBaseObjectPool<T> owner(PooledObject<T> p) {
+        if (p == null) {
+            return null;
+        }
+        BaseObjectPool<T> pool = p.getPool();
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            if (stripe == pool) {
+                return stripe;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 确保对象池时开着的状态
+     */
+    private void assertOpen() {
+        if (isClosed()) {
+            throw new IllegalStateException("pool is not open");
+        }
+    }
+
+    /**
+     * 获取当前对象池的最小空闲对象数，即所有分片的最小空闲对象数之和
+     *
+     * @return 当前对象池的最小空闲对象数
+     */
+    public int getMinIdel() {
+        int minIdel = 0;
+        for (SimpleBaseObjectPool<T> stripe : stripes) {
+            minIdel += stripe.getMinIdel();
+        }
+        return minIdel;
+    }
+
+    /**
+     * 获取当前对象池最长阻塞时间
+     *
+     * @return 当前对象池最长阻塞时间
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * 获取当前对象池的空闲对象的最长生命周期
+     *
+     * @return 当前对象池的空闲对象的最长生命周期
+     */
+    public long getMaxLiveTime() {
+        return maxLiveTime;
+    }
+
+    /**
+     * 获取当前对象池获取对象策略
+     *
+     * @return 当前对象池获取对象策略
+     */
+    public ObtainPolicy getObtainPolicy() {
+        return obtainPolicy;
+    }
+}
@@ -0,0 +1,46 @@
+package cn.plasticlove.object.pool.impl;
+
+import cn.plasticlove.object.pool.ObtainPolicy;
+
+/**
+ * 针对{@link StripedObjectPool}的配置类
+ * 相比于{@link SimpleBaseObjectPoolConfig}增加了分片数
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class StripedObjectPoolConfig extends SimpleBaseObjectPoolConfig {
+    /**
+     * 分片数，默认每个可用处理器一个分片
+     */
+    private int stripes = Runtime.getRuntime().availableProcessors();
+
+    public StripedObjectPoolConfig() {
+        super();
+    }
+
+    public StripedObjectPoolConfig(ObtainPolicy obtainPolicy, long maxWaitTime, long maxLiveTime, int maxTotal, int minIdel, boolean blocked, int stripes) {
+        super(obtainPolicy, maxWaitTime, maxLiveTime, maxTotal, minIdel, blocked);
+        this.stripes = stripes;
+    }
+
+    /**
+     * 获取分片数
+     *
+     * @return 分片数
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * 设置分片数
+     * 分片数不会超过对象池最大容量
+     *
+     * @param stripes 分片数
+     */
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+}
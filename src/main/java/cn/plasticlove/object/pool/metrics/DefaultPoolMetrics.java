@@ -0,0 +1,155 @@
+package cn.plasticlove.object.pool.metrics;
+
+import cn.plasticlove.object.pool.PoolMetrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PoolMetrics}的默认实现
+ * 由对象池在获取、返还、创建、销毁对象时调用记录方法，记录过程不分配对象。
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class DefaultPoolMetrics implements PoolMetrics {
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+    private final LatencyHistogram waitLatency = new LatencyHistogram();
+    private final LatencyHistogram createLatency = new LatencyHistogram();
+    private final LatencyHistogram destroyLatency = new LatencyHistogram();
+    private final LatencyHistogram holdTime = new LatencyHistogram();
+    /**
+     * 等待超时次数
+     */
+    private final LongAdder timeoutCount = new LongAdder();
+    /**
+     * 过期清除的对象数
+     */
+    private final LongAdder evictedCount = new LongAdder();
+    /**
+     * 发现的泄漏对象数
+     */
+    private final LongAdder abandonedCount = new LongAdder();
+    /**
+     * 校验失败的对象数
+     */
+    private final LongAdder validationFailedCount = new LongAdder();
+    /**
+     * 自适应调整中增大和减小最小空闲对象数的次数
+     */
+    private final LongAdder adaptiveGrowCount = new LongAdder();
+    private final LongAdder adaptiveShrinkCount = new LongAdder();
+
+    public void recordBorrow(long nanos) {
+        borrowLatency.record(nanos);
+    }
+
+    public void recordWait(long nanos) {
+        waitLatency.record(nanos);
+    }
+
+    public void recordCreate(long nanos) {
+        createLatency.record(nanos);
+    }
+
+    public void recordDestroy(long nanos) {
+        destroyLatency.record(nanos);
+    }
+
+    public void recordHold(long nanos) {
+        holdTime.record(nanos);
+    }
+
+    public void incrementTimeout() {
+        timeoutCount.increment();
+    }
+
+    public void incrementEvicted() {
+        evictedCount.increment();
+    }
+
+    public void incrementAbandoned() {
+        abandonedCount.increment();
+    }
+
+    public void incrementValidationFailed() {
+        validationFailedCount.increment();
+    }
+
+    public void incrementAdaptiveGrow() {
+        adaptiveGrowCount.increment();
+    }
+
+    public void incrementAdaptiveShrink() {
+        adaptiveShrinkCount.increment();
+    }
+
+    @Override
+    public LatencyHistogram getBorrowLatency() {
+        return borrowLatency;
+    }
+
+    @Override
+    public LatencyHistogram getWaitLatency() {
+        return waitLatency;
+    }
+
+    @Override
+    public LatencyHistogram getCreateLatency() {
+        return createLatency;
+    }
+
+    @Override
+    public LatencyHistogram getDestroyLatency() {
+        return destroyLatency;
+    }
+
+    @Override
+    public LatencyHistogram getHoldTime() {
+        return holdTime;
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return createLatency.getCount();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount.sum();
+    }
+
+    @Override
+    public long getAbandonedCount() {
+        return abandonedCount.sum();
+    }
+
+    @Override
+    public long getValidationFailedCount() {
+        return validationFailedCount.sum();
+    }
+
+    @Override
+    public long getAdaptiveGrowCount() {
+        return adaptiveGrowCount.sum();
+    }
+
+    @Override
+    public long getAdaptiveShrinkCount() {
+        return adaptiveShrinkCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "borrow[" + borrowLatency + "], wait[" + waitLatency + "], create[" + createLatency
+                + "], destroy[" + destroyLatency + "], hold[" + holdTime + "], timeouts=" + getTimeoutCount()
+                + ", evicted=" + getEvictedCount() + ", abandoned=" + getAbandonedCount()
+                + ", validationFailed=" + getValidationFailedCount() + ", adaptiveGrow=" + getAdaptiveGrowCount()
+                + ", adaptiveShrink=" + getAdaptiveShrinkCount();
+    }
+}
@@ -0,0 +1,253 @@
+package cn.plasticlove.object.pool.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 记录耗时分布的直方图
+ * 按数值的二进制位数分桶，每个2的幂区间再等分为8个子桶，相对误差不超过12.5%。
+ * <p>
+ * 计数按线程分片，每个分片是一个计数数组，记录时只对当前线程所在分片的一个桶做原子加，
+ * 不分配任何对象；分片在第一次被使用时创建。查询时汇总所有分片。
+ * </p>
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class LatencyHistogram {
+    /**
+     * 每个2的幂区间的子桶数为2的SUB_BITS次方
+     */
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    /**
+     * 可以区分的最大数值的二进制位数，更大的数值记入最后一个桶（约18分钟）
+     */
+    private static final int MAX_EXP = 40;
+    /**
+     * 桶数
+     */
+    static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB_COUNT;
+    /**
+     * 分片数组中记录总和和最大值的位置
+     */
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+    /**
+     * 分片数，不超过8
+     */
+    private static final int STRIPES;
+
+    static {
+        int n = 1;
+        while (n < Runtime.getRuntime().availableProcessors() && n < 8) {
+            n <<= 1;
+        }
+        STRIPES = n;
+    }
+
+    /**
+     * 各个分片的计数数组
+     */
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * 记录一个数值
+     *
+     * @param value 数值，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        AtomicLongArray counts = stripe();
+        counts.getAndIncrement(bucket(value));
+        counts.getAndAdd(SUM, value);
+        long max = counts.get(MAX);
+        while (value > max && !counts.compareAndSet(MAX, max, value)) {
+            max = counts.get(MAX);
+        }
+    }
+
+    /**
+     * 获取记录的次数
+     *
+     * @return 记录的次数
+     */
+    public long getCount() {
+        long count = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                count += counts.get(i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取记录的数值总和
+     * 两次查询的差值除以间隔即为间隔内的平均并发数，比如持有时间的总和对应平均持有对象的线程数
+     *
+     * @return 数值总和
+     */
+    public long getSum() {
+        long sum = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) {
+                sum += counts.get(SUM);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 获取记录的最大值
+     *
+     * @return 最大值
+     */
+    public long getMax() {
+        long max = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts != null) {
+                max = Math.max(max, counts.get(MAX));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 获取平均值
+     *
+     * @return 平均值，没有记录时为0
+     */
+    public double getMean() {
+        long count = 0;
+        long sum = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                count += counts.get(i);
+            }
+            sum += counts.get(SUM);
+        }
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * 获取分位数
+     *
+     * @param percentile 百分位，例如99.9
+     * @return 分位数所在桶的上界，不超过最大值；没有记录时为0
+     */
+    public long getPercentile(double percentile) {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = counts.get(i);
+                merged[i] += c;
+                count += c;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * count);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 清空所有记录
+     * 和记录并发执行时，清空期间的记录可能部分丢失
+     */
+    public void reset() {
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray counts = stripes.get(s);
+            if (counts == null) {
+                continue;
+            }
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, p99.9=%d, max=%d",
+                getCount(), getMean(), getPercentile(50), getPercentile(99), getPercentile(99.9), getMax());
+    }
+
+    /**
+     * 获取当前线程所在分片，第一次使用时创建
+     *
+     * @return 分片的计数数组
+     */
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        int index = (h ^ (h >>> 16)) & (STRIPES - 1);
+        AtomicLongArray counts = stripes.get(index);
+        if (counts == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS + 2));
+            counts = stripes.get(index);
+        }
+        return counts;
+    }
+
+    /**
+     * 计算数值所在的桶
+     *
+     * @param value 非负数值
+     * @return 桶的下标
+     */
+    static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        if (exp > MAX_EXP) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * 计算桶的上界
+     *
+     * @param index 桶的下标
+     * @return 桶中最大的数值
+     */
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long lower = (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
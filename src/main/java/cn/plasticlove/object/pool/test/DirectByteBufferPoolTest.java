@@ -0,0 +1,116 @@
+package cn.plasticlove.object.pool.test;
+
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.impl.DirectByteBufferPool;
+import cn.plasticlove.object.pool.impl.DirectByteBufferPoolConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 直接内存缓冲区对象池测试类
+ * @author luka-seu
+ **/
+
+public class DirectByteBufferPoolTest {
+    private DirectByteBufferPool pool;
+
+    @Before
+    public void initTest() {
+        DirectByteBufferPoolConfig config = new DirectByteBufferPoolConfig(512, 64 * 1024, 128 * 1024);
+        config.setSlabSize(16 * 1024);
+        config.setMaxWaitTime(100);
+        pool = new DirectByteBufferPool(config);
+    }
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void testSizeClasses() throws Exception {
+        ByteBuffer small = pool.borrow(100);
+        ByteBuffer medium = pool.borrow(513);
+        ByteBuffer exact = pool.borrow(4096);
+        Assert.assertTrue(small.isDirect());
+        Assert.assertEquals(512, small.capacity());
+        Assert.assertEquals(1024, medium.capacity());
+        Assert.assertEquals(4096, exact.capacity());
+        Assert.assertEquals(3, pool.getActiveNum());
+        //同一级别的缓冲区从同一块内存切分，互不重叠
+        ByteBuffer other = pool.borrow(512);
+        small.putLong(0, 1L);
+        other.putLong(0, 2L);
+        Assert.assertEquals(1L, small.getLong(0));
+        //返还时恢复position和limit
+        small.putInt(42).flip();
+        pool.returnObject(small);
+        ByteBuffer again = pool.borrow(200);
+        Assert.assertSame(small, again);
+        Assert.assertEquals(0, again.position());
+        Assert.assertEquals(512, again.limit());
+        pool.returnObject(again);
+        pool.returnObject(other);
+        pool.returnObject(medium);
+        pool.returnObject(exact);
+        Assert.assertEquals(0, pool.getActiveNum());
+        Assert.assertEquals(3 * 16 * 1024, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        ByteBuffer first = pool.borrow(64 * 1024);
+        ByteBuffer second = pool.borrow(60 * 1024);
+        Assert.assertEquals(128 * 1024, pool.getAllocatedBytes());
+        try {
+            pool.borrow(64 * 1024);
+            Assert.fail("the direct memory budget should be used up");
+        } catch (NoMoreIdleSpaceException e) {
+            //直接内存达到预算，等待超时
+        }
+        Assert.assertEquals(1, pool.getMetrics().getTimeoutCount());
+        //预算用完时小的请求也可以使用更大级别的空闲缓冲区
+        CompletableFuture<ByteBuffer> waiting = pool.borrowAsync(1024);
+        Assert.assertFalse(waiting.isDone());
+        pool.returnObject(first);
+        Assert.assertSame(first, waiting.get(1, TimeUnit.SECONDS));
+        pool.returnObject(first);
+        pool.returnObject(second);
+        //所有缓冲区都空闲后整级释放，预算可以被其他级别使用
+        pool.clear();
+        Assert.assertEquals(0, pool.getAllocatedBytes());
+        Assert.assertEquals(512, pool.borrow(512).capacity());
+    }
+
+    @Test
+    public void testIllegalReturn() throws Exception {
+        ByteBuffer buffer = pool.borrow(512);
+        try {
+            pool.returnObject(ByteBuffer.allocate(512));
+            Assert.fail("heap buffer is not part of the pool");
+        } catch (IllegalObjectStateException e) {
+            //不是直接内存
+        }
+        try {
+            pool.returnObject(ByteBuffer.allocateDirect(1000));
+            Assert.fail("the capacity is not a size class");
+        } catch (IllegalObjectStateException e) {
+            //容量不是任何级别的大小
+        }
+        pool.returnObject(buffer);
+        pool.clear();
+        try {
+            pool.returnObject(buffer);
+            Assert.fail("the buffer is returned twice");
+        } catch (IllegalObjectStateException e) {
+            //返还的次数超过了借出的次数
+        }
+    }
+}
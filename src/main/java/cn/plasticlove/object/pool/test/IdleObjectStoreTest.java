@@ -0,0 +1,78 @@
+package cn.plasticlove.object.pool.test;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.impl.FifoIdleObjectStore;
+import cn.plasticlove.object.pool.impl.IdleObjectStore;
+import cn.plasticlove.object.pool.impl.LifoIdleObjectStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 空闲对象容器测试类
+ * @author luka-seu
+ **/
+
+public class IdleObjectStoreTest {
+
+    @Test
+    public void testCapacity() {
+        //容量不是2的幂时也不能多放
+        checkCapacity(new FifoIdleObjectStore<Person>(3));
+        checkCapacity(new LifoIdleObjectStore<Person>(3));
+    }
+
+    @Test
+    public void testRemovedSlotReuse() {
+        checkRemovedSlotReuse(new FifoIdleObjectStore<Person>(3));
+        checkRemovedSlotReuse(new LifoIdleObjectStore<Person>(3));
+    }
+
+    private void checkCapacity(IdleObjectStore<Person> store) {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(store.offer(new PooledObject<>(new Person())));
+        }
+        Assert.assertFalse(store.offer(new PooledObject<>(new Person())));
+        Assert.assertEquals(3, store.size());
+        Assert.assertNotNull(store.poll());
+        Assert.assertTrue(store.offer(new PooledObject<>(new Person())));
+        Assert.assertFalse(store.offer(new PooledObject<>(new Person())));
+    }
+
+    private void checkRemovedSlotReuse(IdleObjectStore<Person> store) {
+        PooledObject<Person> a = new PooledObject<>(new Person());
+        PooledObject<Person> b = new PooledObject<>(new Person());
+        PooledObject<Person> c = new PooledObject<>(new Person());
+        store.offer(a);
+        store.offer(b);
+        store.offer(c);
+        //移除后留下占位标记，不能重复移除
+        Assert.assertTrue(store.remove(b));
+        Assert.assertFalse(store.remove(b));
+        Assert.assertEquals(2, store.size());
+        //容器已满时复用占位标记的位置，多次移除、放入后取出的仍然正好是容器中的对象
+        PooledObject<Person> d = new PooledObject<>(new Person());
+        Assert.assertTrue(store.offer(d));
+        Assert.assertTrue(store.remove(a));
+        PooledObject<Person> e = new PooledObject<>(new Person());
+        Assert.assertTrue(store.offer(e));
+        Assert.assertFalse(store.offer(new PooledObject<>(new Person())));
+        Assert.assertEquals(3, store.size());
+        Set<PooledObject<Person>> left = Collections.newSetFromMap(new IdentityHashMap<PooledObject<Person>, Boolean>());
+        PooledObject<Person> p;
+        while ((p = store.poll()) != null) {
+            left.add(p);
+        }
+        List<PooledObject<Person>> expected = Arrays.asList(c, d, e);
+        Assert.assertEquals(3, left.size());
+        Assert.assertTrue(left.containsAll(expected));
+        Assert.assertEquals(0, store.size());
+        Assert.assertTrue(store.offer(a));
+        Assert.assertSame(a, store.poll());
+    }
+}
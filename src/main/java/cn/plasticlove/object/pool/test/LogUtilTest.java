@@ -0,0 +1,39 @@
+package cn.plasticlove.object.pool.test;
+
+import cn.plasticlove.object.pool.util.LogUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 日志工具测试类
+ * @author luka-seu
+ **/
+
+public class LogUtilTest {
+
+    @Test
+    public void testBadRecordKeepsWriter() throws Exception {
+        Object bad = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("broken toString");
+            }
+        };
+        //后台线程写出失败的日志
+        LogUtil.info("LogUtilTest", "bad argument %s", bad);
+        LogUtil.info("LogUtilTest", "bad format %d", "not a number");
+        Thread.sleep(300);
+        Thread writer = null;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if ("object-pool-log-writer".equals(t.getName())) {
+                writer = t;
+            }
+        }
+        Assert.assertNotNull(writer);
+        Assert.assertTrue(writer.isAlive());
+        //调用线程写出失败的日志时也不抛出异常
+        LogUtil.info("LogUtilTest", "bad argument %s", bad);
+        LogUtil.flush();
+        Assert.assertTrue(writer.isAlive());
+    }
+}
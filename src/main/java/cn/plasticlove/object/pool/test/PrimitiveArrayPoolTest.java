@@ -0,0 +1,132 @@
+package cn.plasticlove.object.pool.test;
+
+import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
+import cn.plasticlove.object.pool.impl.ArrayPoolConfig;
+import cn.plasticlove.object.pool.impl.ByteArrayPool;
+import cn.plasticlove.object.pool.impl.CharArrayPool;
+import cn.plasticlove.object.pool.impl.LongArrayPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基本类型数组对象池测试类
+ * @author luka-seu
+ **/
+
+public class PrimitiveArrayPoolTest {
+
+    @Test
+    public void testBuckets() throws Exception {
+        ArrayPoolConfig config = new ArrayPoolConfig(64, 4096, 2);
+        config.setThreadCacheSize(0);
+        ByteArrayPool pool = new ByteArrayPool(config);
+        Assert.assertEquals(64, pool.borrow(1).length);
+        Assert.assertEquals(128, pool.borrow(65).length);
+        Assert.assertEquals(1024, pool.borrow(1024).length);
+        //超过最大长度时按需要的长度新建，返还时丢弃
+        byte[] huge = pool.borrow(5000);
+        Assert.assertEquals(5000, huge.length);
+        Assert.assertEquals(4, pool.getActiveNum());
+        pool.returnObject(huge);
+        Assert.assertEquals(0, pool.getIdleNum());
+        //同一级别的数组被复用，超过级别容量的被丢弃
+        byte[] first = pool.borrow(100);
+        byte[] second = pool.borrow(100);
+        byte[] third = pool.borrow(100);
+        pool.returnObject(first);
+        pool.returnObject(second);
+        pool.returnObject(third);
+        Assert.assertEquals(2, pool.getIdleNum());
+        Assert.assertSame(second, pool.borrow(128));
+        Assert.assertSame(first, pool.borrow(70));
+        Assert.assertNotSame(third, pool.borrow(128));
+        pool.close();
+    }
+
+    @Test
+    public void testThreadCache() throws Exception {
+        ArrayPoolConfig config = new ArrayPoolConfig(16, 1024, 4);
+        config.setClearOnReturn(true);
+        final CharArrayPool pool = new CharArrayPool(config);
+        char[] chars = pool.borrow(16);
+        chars[0] = 'a';
+        pool.returnObject(chars);
+        //线程本地缓存不计入共用的空闲数组，其他线程拿不到
+        Assert.assertEquals(0, pool.getIdleNum());
+        final AtomicReference<char[]> other = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(pool.borrow(16));
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertNotSame(chars, other.get());
+        char[] again = pool.borrow(10);
+        Assert.assertSame(chars, again);
+        Assert.assertEquals('\0', again[0]);
+        //清空时连同线程本地缓存一起丢弃
+        pool.returnObject(again);
+        pool.clear();
+        Assert.assertNotSame(chars, pool.borrow(16));
+        pool.close();
+    }
+
+    @Test
+    public void testDefaultBounds() throws Exception {
+        ByteArrayPool pool = new ByteArrayPool();
+        //越长的级别保留的数组越少，元素总数不超过上限
+        Assert.assertTrue(pool.getMaxNum() < 16 * 15);
+        byte[] first = pool.borrow(256 * 1024);
+        byte[] second = pool.borrow(256 * 1024);
+        pool.returnObject(first);
+        pool.returnObject(second);
+        Assert.assertEquals(1, pool.getIdleNum());
+        //比元素总数上限还长的级别不保留空闲数组，长数组也不放入线程本地缓存
+        byte[] large = pool.borrow(1024 * 1024);
+        pool.returnObject(large);
+        Assert.assertEquals(1, pool.getIdleNum());
+        Assert.assertNotSame(large, pool.borrow(1024 * 1024));
+        //短数组仍然放入线程本地缓存
+        byte[] small = pool.borrow(1024);
+        pool.returnObject(small);
+        Assert.assertEquals(1, pool.getIdleNum());
+        Assert.assertSame(small, pool.borrow(1024));
+        pool.close();
+    }
+
+    @Test
+    public void testIllegalReturn() throws Exception {
+        LongArrayPool pool = new LongArrayPool(new ArrayPoolConfig(64, 1024, 4));
+        try {
+            pool.returnObject(new long[100]);
+            Assert.fail("the length is not a bucket");
+        } catch (IllegalObjectStateException e) {
+            //长度不是任何级别的长度
+        }
+        try {
+            pool.returnObject(new long[32]);
+            Assert.fail("the array is shorter than the smallest bucket");
+        } catch (IllegalObjectStateException e) {
+            //比最小级别还短
+        }
+        //长时间没有借出的级别在清理时被丢弃
+        pool.returnObject(pool.borrow(64));
+        pool.returnObject(pool.borrow(256));
+        pool.removeTimeOutedObject();
+        pool.returnObject(pool.borrow(64));
+        pool.removeTimeOutedObject();
+        pool.removeTimeOutedObject();
+        Assert.assertEquals(2, pool.getMetrics().getEvictedCount());
+        pool.close();
+        try {
+            pool.borrow(64);
+            Assert.fail("pool is closed");
+        } catch (IllegalStateException e) {
+            //对象池已经关闭
+        }
+    }
+}
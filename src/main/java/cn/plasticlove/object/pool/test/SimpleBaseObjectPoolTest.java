@@ -1,15 +1,33 @@
 package cn.plasticlove.object.pool.test;
 
+import cn.plasticlove.object.pool.ObtainPolicy;
 import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.PooledObjectState;
 import cn.plasticlove.object.pool.exception.IllegalObjectStateException;
 import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
 import cn.plasticlove.object.pool.exception.ObjectDestroyException;
 import cn.plasticlove.object.pool.impl.AbstractObjectPoolFactory;
+import cn.plasticlove.object.pool.impl.PoolMaintenanceScheduler;
 import cn.plasticlove.object.pool.impl.SimpleBaseObjectPool;
 import cn.plasticlove.object.pool.impl.SimpleBaseObjectPoolConfig;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * 测试类
  * @author luka-seu
@@ -208,6 +226,736 @@ public class SimpleBaseObjectPoolTest {
         t5.start();
         Thread.sleep(60000);
     }
+    @Test
+    public void testPooledObject() throws Exception {
+        PooledObject<Person> p = pool.getPooledObject();
+        Assert.assertSame(pool, p.getPool());
+        Assert.assertEquals(1, pool.getActiveNum());
+        pool.returnPooledObject(p);
+        Assert.assertEquals(0, pool.getActiveNum());
+        //重复返还同一个包装类会报出异常
+        try {
+            pool.returnPooledObject(p);
+            Assert.fail();
+        } catch (IllegalObjectStateException e) {
+            //expected
+        }
+        //其他对象池的包装类不能返还到这个对象池
+        SimpleBaseObjectPool<Person> other = new SimpleBaseObjectPool<>(factory, config);
+        try {
+            pool.returnPooledObject(other.getPooledObject());
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            //expected
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testThreadCacheSteal() throws Exception {
+        SimpleBaseObjectPoolConfig cacheConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                100, 60000, 1, 0, true);
+        final SimpleBaseObjectPool<Person> cachePool = new SimpleBaseObjectPool<>(factory, cacheConfig);
+        final CountDownLatch returned = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Person> owned = new AtomicReference<>();
+        Thread owner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    owned.set(cachePool.getObject());
+                    cachePool.returnObject(owned.get());
+                    returned.countDown();
+                    done.await();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        owner.start();
+        returned.await();
+        //对象在仍在运行的线程的本地缓存中，空闲队列为空时从缓存中窃取
+        Person stolen = cachePool.getObject();
+        Assert.assertSame(owned.get(), stolen);
+        cachePool.returnObject(stolen);
+        done.countDown();
+        owner.join();
+        //大量短命线程轮流借用唯一的对象，已经结束的线程留下的缓存被接管或窃取，对象不会丢失
+        final AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < 64; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        cachePool.returnObject(cachePool.getObject());
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+            t.start();
+            t.join();
+        }
+        Assert.assertEquals(0, failed.get());
+        Assert.assertEquals(1, cachePool.getMetrics().getCreatedCount());
+        cachePool.close();
+    }
+
+    @Test
+    public void testBorrowAsync() throws Exception {
+        Person p1 = pool.getObject();
+        pool.getObject();
+        pool.getObject();
+        //对象池已满，异步请求按顺序等待
+        CompletableFuture<Person> f1 = pool.borrowAsync(-1);
+        CompletableFuture<Person> f2 = pool.borrowAsync(-1);
+        Assert.assertFalse(f1.isDone());
+        Assert.assertFalse(f2.isDone());
+        //返还的对象直接交给等待最久的请求
+        pool.returnObject(p1);
+        Assert.assertSame(p1, f1.get());
+        Assert.assertFalse(f2.isDone());
+        //取消的请求不再接收对象
+        f2.cancel(false);
+        pool.returnObject(f1.get());
+        Assert.assertEquals(2, pool.getActiveNum());
+        pool.getObject();
+        //等待超时
+        try {
+            pool.borrowAsync(100).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof NoMoreIdleSpaceException);
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testBackgroundRefill() throws Exception {
+        Set<Thread> creators = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        config.setMinIdel(2);
+        config.setMaxTotal(5);
+        SimpleBaseObjectPool<Person> slowPool = new SimpleBaseObjectPool<>(slowFactory(50, creators), config);
+        creators.clear();
+        //取走两个空闲对象，获取的线程不等待新建对象
+        long start = System.nanoTime();
+        slowPool.getObject();
+        slowPool.getObject();
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        //后台线程补充最小空闲对象数
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slowPool.getMetrics().getCreatedCount() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(4, slowPool.getMetrics().getCreatedCount());
+        Assert.assertFalse(creators.contains(Thread.currentThread()));
+        slowPool.close();
+    }
+
+    @Test
+    public void testParallelWarmUp() throws Exception {
+        Set<Thread> creators = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        config.setMinIdel(40);
+        config.setMaxTotal(40);
+        config.setWarmUpParallelism(10);
+        config.setWarmUpReadyPercent(25);
+        //10个线程同时新建，完成25%即10个对象只需要一轮
+        long start = System.nanoTime();
+        SimpleBaseObjectPool<Person> slowPool = new SimpleBaseObjectPool<>(slowFactory(100, creators), config);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(350));
+        Assert.assertTrue(slowPool.getMetrics().getCreatedCount() >= 10);
+        //剩下的在后台继续预热
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slowPool.getMetrics().getCreatedCount() < 40 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(40, slowPool.getMetrics().getCreatedCount());
+        Assert.assertEquals(10, creators.size());
+        slowPool.close();
+    }
+
+    @Test
+    public void testCreateWithinMaxTotal() throws Exception {
+        final AtomicInteger makeNum = new AtomicInteger();
+        AbstractObjectPoolFactory countingFactory = new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                makeNum.incrementAndGet();
+                Thread.sleep(20);
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+        };
+        SimpleBaseObjectPoolConfig capConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                5000, 60000, 4, 0, true);
+        final SimpleBaseObjectPool<Person> capPool = new SimpleBaseObjectPool<>(countingFactory, capConfig);
+        //对象工厂很慢，很多线程同时发现没有空闲对象，新建的对象总数也不能超过最大容量
+        final int threadNum = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadNum);
+        final AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < threadNum; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 5; j++) {
+                            Person p = capPool.getObject();
+                            Thread.sleep(1);
+                            capPool.returnObject(p);
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failed.get());
+        Assert.assertTrue(String.valueOf(makeNum.get()), makeNum.get() <= 4);
+        Assert.assertEquals(0, capPool.getActiveNum());
+        capPool.close();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        List<Person> two = pool.getObjects(2, 100);
+        Assert.assertEquals(2, two.size());
+        Assert.assertEquals(2, pool.getActiveNum());
+        //只剩一个名额，凑不齐两个时一个也不获取
+        try {
+            pool.getObjects(2, 100);
+            Assert.fail();
+        } catch (NoMoreIdleSpaceException e) {
+            //expected
+        }
+        Assert.assertEquals(2, pool.getActiveNum());
+        //同一个对象不能返还两次，所有对象都不返还
+        try {
+            pool.returnObjects(Arrays.asList(two.get(0), two.get(0)));
+            Assert.fail();
+        } catch (IllegalObjectStateException e) {
+            //expected
+        }
+        Assert.assertEquals(2, pool.getActiveNum());
+        pool.returnObjects(two);
+        Assert.assertEquals(0, pool.getActiveNum());
+        Assert.assertEquals(3, pool.getObjects(3, 100).size());
+        pool.close();
+    }
+
+    @Test
+    public void testEvictIdle() throws Exception {
+        SimpleBaseObjectPoolConfig evictConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                100, 100, 3, 0, true);
+        SimpleBaseObjectPool<Person> evictPool = new SimpleBaseObjectPool<>(factory, evictConfig);
+        Person a = evictPool.getObject();
+        Person b = evictPool.getObject();
+        Person c = evictPool.getObject();
+        evictPool.returnObject(a);
+        evictPool.returnObject(b);
+        Thread.sleep(150);
+        //只清除过期的空闲对象，正在使用的对象不受影响
+        evictPool.removeTimeOutedObject();
+        Assert.assertEquals(2, evictPool.getMetrics().getEvictedCount());
+        Assert.assertEquals(1, evictPool.getActiveNum());
+        //刚返还的对象还没有过期
+        evictPool.returnObject(c);
+        evictPool.removeTimeOutedObject();
+        Assert.assertEquals(2, evictPool.getMetrics().getEvictedCount());
+        Thread.sleep(150);
+        evictPool.removeTimeOutedObject();
+        Assert.assertEquals(3, evictPool.getMetrics().getEvictedCount());
+        Assert.assertEquals(0, evictPool.getActiveNum());
+        evictPool.close();
+    }
+
+    @Test
+    public void testObjectStates() throws Exception {
+        SimpleBaseObjectPoolConfig stateConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                100, 100, 1, 0, true);
+        SimpleBaseObjectPool<Person> statePool = new SimpleBaseObjectPool<>(factory, stateConfig);
+        PooledObject<Person> p = statePool.getPooledObject();
+        Assert.assertEquals(PooledObjectState.USING, p.getState());
+        statePool.returnPooledObject(p);
+        Assert.assertEquals(PooledObjectState.IDEL, p.getState());
+        //清除后的对象是已销毁状态，不能再借出或返还
+        Thread.sleep(150);
+        statePool.removeTimeOutedObject();
+        Assert.assertEquals(PooledObjectState.INVALID, p.getState());
+        Assert.assertFalse(p.compareAndSetState(PooledObjectState.USING, PooledObjectState.RETURNING));
+        Assert.assertNotSame(p.getObject(), statePool.getObject());
+        statePool.close();
+    }
+
+    @Test
+    public void testMaintenanceScheduler() throws Exception {
+        PoolMaintenanceScheduler scheduler = new PoolMaintenanceScheduler("test-maintenance", 1);
+        SimpleBaseObjectPoolConfig maintainConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                100, 100, 3, 0, true);
+        maintainConfig.setEvictionPeriod(50);
+        maintainConfig.setMaintenanceScheduler(scheduler);
+        List<SimpleBaseObjectPool<Person>> pools = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pools.add(new SimpleBaseObjectPool<Person>(factory, maintainConfig));
+        }
+        //没有对象的对象池不调度
+        Assert.assertEquals(0, scheduler.getScheduledNum());
+        SimpleBaseObjectPool<Person> busy = pools.get(0);
+        busy.returnObject(busy.getObject());
+        Assert.assertEquals(1, scheduler.getScheduledNum());
+        //对象过期被清除后不再调度
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((busy.getMetrics().getEvictedCount() < 1 || scheduler.getScheduledNum() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, busy.getMetrics().getEvictedCount());
+        Assert.assertEquals(0, scheduler.getScheduledNum());
+        for (SimpleBaseObjectPool<Person> p : pools) {
+            p.close();
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testRemoveAbandoned() throws Exception {
+        final Set<String> creators = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        AbstractObjectPoolFactory recordingFactory = new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                creators.add(Thread.currentThread().getName());
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+        };
+        PoolMaintenanceScheduler scheduler = new PoolMaintenanceScheduler("test-maintenance", 1);
+        SimpleBaseObjectPoolConfig abandonedConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                5000, 60000, 1, 0, true);
+        abandonedConfig.setEvictionPeriod(50);
+        abandonedConfig.setMaintenanceScheduler(scheduler);
+        abandonedConfig.setAbandonedTimeout(100);
+        abandonedConfig.setAbandonedTracePercent(100);
+        abandonedConfig.setRemoveAbandoned(true);
+        SimpleBaseObjectPool<Person> abandonedPool = new SimpleBaseObjectPool<>(recordingFactory, abandonedConfig);
+        PooledObject<Person> leaked = abandonedPool.getPooledObject();
+        Assert.assertNotNull(leaked.getBorrowTrace());
+        //对象池已满，泄漏对象被回收后等待的线程拿到新建的对象
+        Person p = abandonedPool.getObject();
+        Assert.assertNotSame(leaked.getObject(), p);
+        Assert.assertEquals(PooledObjectState.ABANDONED, leaked.getState());
+        Assert.assertEquals(1, abandonedPool.getMetrics().getAbandonedCount());
+        //替换的对象由后台补充，维护线程不调用对象工厂
+        for (String creator : creators) {
+            Assert.assertFalse(creator, creator.startsWith("test-maintenance"));
+        }
+        try {
+            abandonedPool.returnPooledObject(leaked);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        abandonedPool.returnObject(p);
+        abandonedPool.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        final Set<Object> broken = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        AbstractObjectPoolFactory validatingFactory = new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+
+            @Override
+            public boolean validateObject(PooledObject p) {
+                return !broken.contains(p.getObject());
+            }
+        };
+        PoolMaintenanceScheduler scheduler = new PoolMaintenanceScheduler("test-maintenance", 1);
+        SimpleBaseObjectPoolConfig validateConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                1000, 60000, 4, 4, true);
+        validateConfig.setTestOnBorrow(true);
+        validateConfig.setTestWhileIdle(true);
+        validateConfig.setEvictionPeriod(50);
+        validateConfig.setMaintenanceScheduler(scheduler);
+        validateConfig.setValidationBatchSize(3);
+        SimpleBaseObjectPool<Person> validatePool = new SimpleBaseObjectPool<>(validatingFactory, validateConfig);
+        //借出前校验：无效的对象被销毁，换一个对象借出
+        Person p = validatePool.getObject();
+        validatePool.returnObject(p);
+        broken.add(p);
+        Person q = validatePool.getObject();
+        Assert.assertNotSame(p, q);
+        Assert.assertFalse(broken.contains(q));
+        validatePool.returnObject(q);
+        //后台分批校验：所有空闲对象都无效时全部销毁并补充
+        List<Person> all = validatePool.getObjects(4, 1000);
+        broken.addAll(all);
+        validatePool.returnObjects(all);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (validatePool.getMetrics().getValidationFailedCount() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(5, validatePool.getMetrics().getValidationFailedCount());
+        List<Person> fresh = validatePool.getObjects(4, 1000);
+        for (Person person : fresh) {
+            Assert.assertFalse(broken.contains(person));
+        }
+        Assert.assertEquals(5, validatePool.getMetrics().getValidationFailedCount());
+        validatePool.returnObjects(fresh);
+        validatePool.close();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testDeferredReset() throws Exception {
+        final Set<Object> dirty = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        final CountDownLatch resuming = new CountDownLatch(1);
+        AbstractObjectPoolFactory resettingFactory = new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+
+            @Override
+            public void resetObject(PooledObject p) throws Exception {
+                resuming.await();
+                dirty.remove(p.getObject());
+            }
+        };
+        SimpleBaseObjectPoolConfig resetConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                1000, 60000, 1, 1, true);
+        resetConfig.setResetConcurrency(1);
+        SimpleBaseObjectPool<Person> resetPool = new SimpleBaseObjectPool<>(resettingFactory, resetConfig);
+        Person p = resetPool.getObject();
+        dirty.add(p);
+        //重置在后台线程中等待，返还不会被阻塞
+        resetPool.returnObject(p);
+        Assert.assertEquals(1, resetPool.getActiveNum());
+        //重置完成前对象不会被借出
+        CompletableFuture<Person> waiting = resetPool.borrowAsync();
+        Thread.sleep(50);
+        Assert.assertFalse(waiting.isDone());
+        resuming.countDown();
+        Person q = waiting.get(1, TimeUnit.SECONDS);
+        Assert.assertSame(p, q);
+        Assert.assertFalse(dirty.contains(q));
+        resetPool.returnObject(q);
+        resetPool.close();
+    }
+
+    @Test
+    public void testReplaceDestroyedOnReturn() throws Exception {
+        //在返还的线程中补充和在后台补充都要把新建的对象交给等待的请求
+        checkReplaceDestroyedOnReturn(0);
+        checkReplaceDestroyedOnReturn(2);
+    }
+
+    private void checkReplaceDestroyedOnReturn(int refillConcurrency) throws Exception {
+        final Set<Object> broken = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        final Set<Object> unusable = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+        AbstractObjectPoolFactory failingFactory = new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+
+            @Override
+            public void resetObject(PooledObject p) throws Exception {
+                if (broken.contains(p.getObject())) {
+                    throw new IllegalStateException("cannot reset");
+                }
+            }
+
+            @Override
+            public void activateObject(PooledObject p) throws Exception {
+                if (unusable.contains(p.getObject())) {
+                    throw new IllegalStateException("cannot activate");
+                }
+            }
+        };
+        SimpleBaseObjectPoolConfig replaceConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                2000, 60000, 1, 0, true);
+        replaceConfig.setRefillConcurrency(refillConcurrency);
+        SimpleBaseObjectPool<Person> replacePool = new SimpleBaseObjectPool<>(failingFactory, replaceConfig);
+        Person p = replacePool.getObject();
+        broken.add(p);
+        CompletableFuture<Person> waiting = blockingGet(replacePool);
+        //重置失败的对象被销毁，腾出的名额新建对象交给阻塞等待的线程
+        replacePool.returnObject(p);
+        Person q = waiting.get(1, TimeUnit.SECONDS);
+        Assert.assertNotSame(p, q);
+        //交出前激活失败的对象被销毁，请求放回队列后拿到新建的对象
+        CompletableFuture<Person> async = replacePool.borrowAsync();
+        unusable.add(q);
+        replacePool.returnObject(q);
+        Person r = async.get(1, TimeUnit.SECONDS);
+        Assert.assertNotSame(q, r);
+        replacePool.returnObject(r);
+        Assert.assertEquals(0, replacePool.getActiveNum());
+        Assert.assertEquals(3, replacePool.getMetrics().getCreatedCount());
+        replacePool.close();
+    }
+
+    @Test
+    public void testPriorityWaiters() throws Exception {
+        SimpleBaseObjectPoolConfig priorityConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                1000, 60000, 1, 0, true);
+        final SimpleBaseObjectPool<Person> priorityPool = new SimpleBaseObjectPool<>(factory, priorityConfig);
+        Person p = priorityPool.getObject();
+        long now = System.currentTimeMillis();
+        CompletableFuture<Person> batch = priorityPool.borrowAsync(0, now + 5000);
+        CompletableFuture<Person> relaxed = priorityPool.borrowAsync(10, now + 5000);
+        CompletableFuture<Person> urgent = priorityPool.borrowAsync(10, now + 2000);
+        CompletableFuture<Person> expiring = priorityPool.borrowAsync(20, now + 30);
+        Thread.sleep(100);
+        //过了截止时间的请求超时失败，不会拿到对象
+        Assert.assertTrue(expiring.isCompletedExceptionally());
+        //优先级相同时截止时间早的先拿到
+        priorityPool.returnObject(p);
+        Assert.assertSame(p, urgent.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(relaxed.isDone());
+        priorityPool.returnObject(p);
+        Assert.assertSame(p, relaxed.get(1, TimeUnit.SECONDS));
+        //同步获取也可以插到低优先级的请求前面
+        final CompletableFuture<Person> blocking = new CompletableFuture<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocking.complete(priorityPool.getObject(5, System.currentTimeMillis() + 5000));
+                } catch (Exception e) {
+                    blocking.completeExceptionally(e);
+                }
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        priorityPool.returnObject(p);
+        Assert.assertSame(p, blocking.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(batch.isDone());
+        priorityPool.returnObject(p);
+        Assert.assertSame(p, batch.get(1, TimeUnit.SECONDS));
+        priorityPool.returnObject(p);
+        Assert.assertEquals(1, priorityPool.getMetrics().getTimeoutCount());
+        priorityPool.close();
+    }
+
+    @Test
+    public void testSyncWaiterOrder() throws Exception {
+        SimpleBaseObjectPoolConfig orderConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                5000, 60000, 1, 0, true);
+        SimpleBaseObjectPool<Person> orderPool = new SimpleBaseObjectPool<>(factory, orderConfig);
+        Person p = orderPool.getObject();
+        //取消的请求留在队列中，交出对象时跳过
+        CompletableFuture<Person> cancelled = orderPool.borrowAsync();
+        Assert.assertTrue(cancelled.cancel(false));
+        //同步获取和异步获取在同一个队列中排队，先开始等待的同步获取不会排在之后的异步请求后面
+        CompletableFuture<Person> blocking = blockingGet(orderPool);
+        CompletableFuture<Person> later = orderPool.borrowAsync();
+        orderPool.returnObject(p);
+        Assert.assertSame(p, blocking.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(later.isDone());
+        //先开始等待的异步请求也先于之后的同步获取
+        CompletableFuture<Person> after = blockingGet(orderPool);
+        orderPool.returnObject(p);
+        Assert.assertSame(p, later.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(after.isDone());
+        orderPool.returnObject(p);
+        Assert.assertSame(p, after.get(1, TimeUnit.SECONDS));
+        orderPool.returnObject(p);
+        Assert.assertEquals(0, orderPool.getActiveNum());
+        orderPool.close();
+    }
+
+    @Test
+    public void testTryGetObject() throws Exception {
+        SimpleBaseObjectPoolConfig sheddingConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                10, 60000, 1, 0, true);
+        sheddingConfig.setStacklessException(true);
+        SimpleBaseObjectPool<Person> sheddingPool = new SimpleBaseObjectPool<>(factory, sheddingConfig);
+        Person p = sheddingPool.tryGetObject(0);
+        Assert.assertNotNull(p);
+        //对象池已满时返回null，不抛出异常
+        Assert.assertNull(sheddingPool.tryGetObject(10));
+        //抛出的异常是预先创建的，没有调用栈
+        NoMoreIdleSpaceException first = null;
+        try {
+            sheddingPool.getObject();
+            Assert.fail("the pool is exhausted");
+        } catch (NoMoreIdleSpaceException e) {
+            Assert.assertEquals(0, e.getStackTrace().length);
+            first = e;
+        }
+        try {
+            sheddingPool.borrowAsync(10).get(1, TimeUnit.SECONDS);
+            Assert.fail("the pool is exhausted");
+        } catch (ExecutionException e) {
+            Assert.assertSame(first, e.getCause());
+        }
+        //异步请求先以超时完成再计数，等待计数完成
+        long deadline = System.currentTimeMillis() + 1000;
+        while (sheddingPool.getMetrics().getTimeoutCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(3, sheddingPool.getMetrics().getTimeoutCount());
+        sheddingPool.returnObject(p);
+        Assert.assertSame(p, sheddingPool.tryGetObject(0));
+        sheddingPool.returnObject(p);
+        sheddingPool.close();
+    }
+
+    @Test
+    public void testAdaptiveSizing() throws Exception {
+        PoolMaintenanceScheduler scheduler = new PoolMaintenanceScheduler("test-maintenance", 1);
+        SimpleBaseObjectPoolConfig adaptiveConfig = new SimpleBaseObjectPoolConfig(new ObtainPolicy(ObtainPolicy.LIFO),
+                1000, 60000, 20, 1, true);
+        adaptiveConfig.setAdaptiveSizing(true);
+        adaptiveConfig.setAdaptiveMaxIdel(12);
+        adaptiveConfig.setEvictionPeriod(20);
+        adaptiveConfig.setEvictionJitterPercent(0);
+        adaptiveConfig.setMaintenanceScheduler(scheduler);
+        final SimpleBaseObjectPool<Person> adaptivePool = new SimpleBaseObjectPool<>(factory, adaptiveConfig);
+        //8个线程陆续开始持续借用，负载在多个维护间隔内上升，最小空闲对象数随之增大
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> borrowers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        try {
+                            Person p = adaptivePool.getObject();
+                            Thread.sleep(5);
+                            adaptivePool.returnObject(p);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            });
+            t.start();
+            borrowers.add(t);
+            Thread.sleep(50);
+        }
+        //稳定负载下需要的空闲对象数取决于采样到的正在使用的对象数，只检查增大过并且在配置的上下限之间
+        long deadline = System.currentTimeMillis() + 5000;
+        while (adaptivePool.getMetrics().getAdaptiveGrowCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(adaptivePool.getMinIdel() >= 1);
+        Assert.assertTrue(adaptivePool.getMinIdel() <= 12);
+        Assert.assertTrue(adaptivePool.getMetrics().getAdaptiveGrowCount() > 0);
+        //负载停止后逐步减小到配置的下限，并销毁多余的空闲对象
+        running.set(false);
+        for (Thread t : borrowers) {
+            t.join();
+        }
+        deadline = System.currentTimeMillis() + 5000;
+        while ((adaptivePool.getMinIdel() > 1 || liveNum(adaptivePool) > 1) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, adaptivePool.getMinIdel());
+        Assert.assertEquals(1, liveNum(adaptivePool));
+        Assert.assertEquals(0, adaptivePool.getActiveNum());
+        Assert.assertTrue(adaptivePool.getMetrics().getAdaptiveShrinkCount() > 0);
+        adaptivePool.close();
+        scheduler.shutdown();
+    }
+
+    /**
+     * 在另一个线程中同步获取对象，等到线程开始阻塞等待后返回
+     *
+     * @param pool 对象池
+     * @return 获取到对象时完成的future
+     */
+    private CompletableFuture<Person> blockingGet(final SimpleBaseObjectPool<Person> pool) throws InterruptedException {
+        final CompletableFuture<Person> result = new CompletableFuture<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(pool.getObject());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return result;
+    }
+
+    /**
+     * 对象池中还没有销毁的对象数
+     *
+     * @param pool 对象池
+     * @return 新建的对象数减去销毁的对象数
+     */
+    private long liveNum(SimpleBaseObjectPool<Person> pool) {
+        return pool.getMetrics().getCreatedCount() - pool.getMetrics().getDestroyLatency().getCount();
+    }
+
+    /**
+     * 新建对象时休眠的对象工厂
+     *
+     * @param millis   新建一个对象的耗时
+     * @param creators 记录新建对象的线程
+     * @return 对象工厂
+     */
+    private AbstractObjectPoolFactory slowFactory(final long millis, final Set<Thread> creators) {
+        return new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                creators.add(Thread.currentThread());
+                Thread.sleep(millis);
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+        };
+    }
+
     @Test
     public void testRemoveTimeoutObject() throws InterruptedException {
         Thread.sleep(1000*1000);
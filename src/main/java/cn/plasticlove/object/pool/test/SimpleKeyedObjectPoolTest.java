@@ -0,0 +1,173 @@
+package cn.plasticlove.object.pool.test;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.impl.AbstractKeyedObjectPoolFactory;
+import cn.plasticlove.object.pool.impl.SimpleKeyedObjectPool;
+import cn.plasticlove.object.pool.impl.SimpleKeyedObjectPoolConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按键分组的对象池测试类
+ * @author luka-seu
+ **/
+
+public class SimpleKeyedObjectPoolTest {
+    private SimpleKeyedObjectPoolConfig config;
+    AbstractKeyedObjectPoolFactory<String, Person> factory;
+    SimpleKeyedObjectPool<String, Person> pool;
+    /**
+     * 调用对象工厂新建对象的线程
+     */
+    Set<Thread> creators;
+
+    @Before
+    public void initTest() {
+        config = new SimpleKeyedObjectPoolConfig();
+        config.setMaxTotal(4);
+        config.setGlobalMaxTotal(6);
+        config.setMaxWaitTime(200);
+        creators = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        factory = new AbstractKeyedObjectPoolFactory<String, Person>() {
+            @Override
+            public Person create(String key) throws Exception {
+                creators.add(Thread.currentThread());
+                return new Person();
+            }
+
+            @Override
+            public PooledObject<Person> wrap(Person person) {
+                return new PooledObject<>(person);
+            }
+        };
+        pool = new SimpleKeyedObjectPool<>(factory, config);
+    }
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void testGlobalMaxTotal() throws Exception {
+        List<Person> cold = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            cold.add(pool.getObject("cold"));
+        }
+        for (Person person : cold) {
+            pool.returnObject("cold", person);
+        }
+        Assert.assertEquals(4, pool.getIdleNum("cold"));
+        Thread.sleep(5);
+        //名额已满时，销毁冷门键的空闲对象腾出名额
+        List<Person> hot = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            hot.add(pool.getObject("hot"));
+        }
+        Assert.assertEquals(6, pool.getTotalNum());
+        Assert.assertEquals(2, pool.getIdleNum("cold"));
+        Assert.assertEquals(2, pool.getMetrics("cold").getEvictedCount());
+        Assert.assertEquals(4, pool.getActiveNum("hot"));
+        //每个键的上限仍然生效
+        try {
+            pool.getObject("hot");
+            Assert.fail("the key should be exhausted");
+        } catch (NoMoreIdleSpaceException e) {
+            //这个键已满，等待超时
+        }
+        Assert.assertEquals(6, pool.getTotalNum());
+    }
+
+    @Test
+    public void testReuseCapacityForWaiter() throws Exception {
+        final List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            persons.add(pool.getObject("a"));
+            persons.add(pool.getObject("b"));
+        }
+        Assert.assertEquals(6, pool.getTotalNum());
+        final AtomicReference<Person> got = new AtomicReference<>();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    got.set(pool.getObject("c"));
+                } catch (NoMoreIdleSpaceException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        creators.clear();
+        //键a没有等待的请求，返还的名额让给等待的键c
+        pool.returnObject("a", persons.get(0));
+        waiter.join(1000);
+        Assert.assertNotNull(got.get());
+        //键c的对象由后台新建，返还对象的线程不调用对象工厂
+        Assert.assertFalse(creators.contains(Thread.currentThread()));
+        Assert.assertEquals(0, pool.getIdleNum("a"));
+        Assert.assertEquals(1, pool.getActiveNum("c"));
+        Assert.assertEquals(6, pool.getTotalNum());
+    }
+
+    @Test
+    public void testConcurrentFirstUse() throws Exception {
+        final AtomicInteger makeNum = new AtomicInteger();
+        AbstractKeyedObjectPoolFactory<String, Person> countingFactory = new AbstractKeyedObjectPoolFactory<String, Person>() {
+            @Override
+            public Person create(String key) throws Exception {
+                makeNum.incrementAndGet();
+                Thread.sleep(10);
+                return new Person();
+            }
+
+            @Override
+            public PooledObject<Person> wrap(Person person) {
+                return new PooledObject<>(person);
+            }
+        };
+        config.setMinIdel(2);
+        final SimpleKeyedObjectPool<String, Person> warmPool = new SimpleKeyedObjectPool<>(countingFactory, config);
+        //很多线程同时第一次使用同一个键，只新建并预热一个对象池，新建的对象不超过这个键的上限
+        final int threadNum = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadNum);
+        final AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < threadNum; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Person p = warmPool.getObject("shard");
+                        warmPool.returnObject("shard", p);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failed.get());
+        Assert.assertTrue(String.valueOf(makeNum.get()), makeNum.get() <= 4);
+        Assert.assertEquals(makeNum.get(), warmPool.getTotalNum());
+        warmPool.close();
+    }
+}
@@ -0,0 +1,127 @@
+package cn.plasticlove.object.pool.test;
+
+import cn.plasticlove.object.pool.PooledObject;
+import cn.plasticlove.object.pool.exception.NoMoreIdleSpaceException;
+import cn.plasticlove.object.pool.impl.AbstractObjectPoolFactory;
+import cn.plasticlove.object.pool.impl.StripedObjectPool;
+import cn.plasticlove.object.pool.impl.StripedObjectPoolConfig;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分片对象池测试类
+ * @author luka-seu
+ **/
+
+public class StripedObjectPoolTest {
+    private StripedObjectPoolConfig config;
+    AbstractObjectPoolFactory factory;
+    StripedObjectPool<Person> pool;
+
+    @Before
+    public void initTest() {
+        config = new StripedObjectPoolConfig();
+        config.setMinIdel(2);
+        config.setMaxTotal(8);
+        config.setStripes(4);
+        config.setMaxWaitTime(200);
+        factory = new AbstractObjectPoolFactory() {
+            @Override
+            public Object create() throws Exception {
+                return new Person();
+            }
+
+            @Override
+            public PooledObject wrap(Object o) {
+                return new PooledObject(o);
+            }
+        };
+        pool = new StripedObjectPool<>(factory, config);
+    }
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void testMinIdel() {
+        Assert.assertEquals(4, pool.getStripeNum());
+        Assert.assertEquals(2, pool.getIdleNum());
+    }
+
+    @Test
+    public void testMaxTotal() throws Exception {
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            persons.add(pool.getObject());
+        }
+        Assert.assertEquals(8, pool.getActiveNum());
+        try {
+            pool.getObject();
+            Assert.fail("the pool should be exhausted");
+        } catch (NoMoreIdleSpaceException e) {
+            //对象池已满，等待超时
+        }
+        for (Person person : persons) {
+            pool.returnObject(person);
+        }
+        Assert.assertEquals(0, pool.getActiveNum());
+        Assert.assertEquals(8, pool.getIdleNum());
+    }
+
+    @Test
+    public void testStealFromOtherStripe() throws Exception {
+        final AtomicReference<Person> returned = new AtomicReference<>();
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            persons.add(pool.getObject());
+        }
+        final Person last = persons.remove(7);
+        //在另一个线程返还，对象进入那个线程所在的分片
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pool.returnObject(last);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        t.start();
+        t.join();
+        returned.set(pool.getObject());
+        Assert.assertSame(last, returned.get());
+    }
+
+    @Test
+    public void testWaiterIsHandedReturnedObject() throws Exception {
+        final List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            persons.add(pool.getObject());
+        }
+        final AtomicReference<Person> got = new AtomicReference<>();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    got.set(pool.getObject(-1));
+                } catch (NoMoreIdleSpaceException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        pool.returnObject(persons.get(0));
+        waiter.join(1000);
+        Assert.assertSame(persons.get(0), got.get());
+    }
+}
@@ -0,0 +1,32 @@
+package cn.plasticlove.object.pool.util;
+
+/**
+ * 日志级别
+ * 低于{@link LogUtil#getLevel()}的日志直接丢弃
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public enum LogLevel {
+    /**
+     * 调试日志，获取、返还对象等每次操作都会打印
+     */
+    DEBUG,
+    /**
+     * 对象池创建、关闭等生命周期日志
+     */
+    INFO,
+    /**
+     * 创建、销毁对象失败等异常情况
+     */
+    WARN,
+    /**
+     * 错误
+     */
+    ERROR,
+    /**
+     * 关闭所有日志
+     */
+    OFF
+}
@@ -1,50 +1,403 @@
 package cn.plasticlove.object.pool.util;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
-
-import java.util.logging.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author luka-seu
  * 打印日志工具
+ * <p>
+ * 日志按级别{@link LogLevel}过滤，低于当前级别的日志在调用处直接返回，不做任何分配。
+ * 通过级别检查的日志只把格式串和参数写入预先分配好的环形缓冲区，
+ * 由后台线程格式化（{@link String#format(String, Object...)}）并写入日志文件。
+ * 缓冲区已满时丢弃日志，不会阻塞调用线程。
+ * </p>
+ * <p>
+ * 参数为基本类型时会自动装箱，在热点路径上应先调用{@link LogUtil#isDebugEnabled()}判断。
+ * </p>
+ * 日志级别和文件可以通过系统属性cn.plasticlove.object.pool.log.level和cn.plasticlove.object.pool.log.file设置
  **/
 
 public class LogUtil {
-    private static FileHandler fileHandler;
+    /**
+     * 默认日志文件
+     */
+    private static final String LOG_FILE = System.getProperty("cn.plasticlove.object.pool.log.file", "log.log");
+    /**
+     * 环形缓冲区大小，必须是2的幂
+     */
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MASK = BUFFER_SIZE - 1;
+    /**
+     * 当前日志级别
+     */
+    private static volatile LogLevel level = parseLevel(System.getProperty("cn.plasticlove.object.pool.log.level"));
+    /**
+     * 预先分配的日志事件
+     */
+    private static final LogEvent[] events = new LogEvent[BUFFER_SIZE];
+    /**
+     * 每个位置的序号，等于写入位置时可以写，等于写入位置加一时可以读
+     */
+    private static final AtomicLongArray sequences = new AtomicLongArray(BUFFER_SIZE);
+    /**
+     * 下一个写入位置
+     */
+    private static final AtomicLong tail = new AtomicLong();
+    /**
+     * 下一个读取位置，只在{@link LogUtil#drain()}中修改
+     */
+    private static volatile long head;
+    /**
+     * 缓冲区满时丢弃的日志数
+     */
+    private static final AtomicLong dropped = new AtomicLong();
+    /**
+     * 后台写日志的线程
+     */
+    private static final Thread writer;
+    /**
+     * 后台线程是否正在休眠
+     */
+    private static volatile boolean sleeping;
+    /**
+     * 日志输出，只在{@link LogUtil#drain()}中使用
+     */
+    private static PrintWriter out;
+    /**
+     * 写出日志的锁，后台线程和{@link LogUtil#flush()}可能同时写出
+     * 使用{@link ReentrantLock}而不是synchronized，虚拟线程调用flush时不会占住载体线程
+     */
+    private static final ReentrantLock drainLock = new ReentrantLock();
+    /**
+     * 正在写出的日志，从缓冲区复制出来后立即释放缓冲区的位置，只在持有{@link LogUtil#drainLock}时使用
+     */
+    private static final LogEvent draining = new LogEvent();
 
     static {
-        try {
-            fileHandler = new FileHandler("log.log");
-        } catch (IOException e) {
-            e.printStackTrace();
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            events[i] = new LogEvent();
+            sequences.set(i, i);
         }
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "object-pool-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }));
     }
 
+    private LogUtil() {
+    }
+
+    /**
+     * 获取当前日志级别
+     *
+     * @return 当前日志级别
+     */
+    public static LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * 设置日志级别
+     *
+     * @param level 日志级别
+     */
+    public static void setLevel(LogLevel level) {
+        LogUtil.level = level == null ? LogLevel.INFO : level;
+    }
+
+    /**
+     * 判断指定级别的日志是否打印
+     *
+     * @param l 日志级别
+     * @return 是否打印
+     */
+    public static boolean isEnabled(LogLevel l) {
+        return l.ordinal() >= level.ordinal() && l != LogLevel.OFF;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    public static boolean isInfoEnabled() {
+        return isEnabled(LogLevel.INFO);
+    }
+
+    public static void debug(String tag, String msg) {
+        log(LogLevel.DEBUG, tag, msg, 0, null, null, null, null);
+    }
+
+    public static void debug(String tag, String format, Object arg) {
+        log(LogLevel.DEBUG, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void debug(String tag, String format, Object arg1, Object arg2) {
+        log(LogLevel.DEBUG, tag, format, 2, arg1, arg2, null, null);
+    }
+
+    public static void debug(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        log(LogLevel.DEBUG, tag, format, 3, arg1, arg2, arg3, null);
+    }
 
     public static void info(String tag, String msg) {
-        Logger log = Logger.getLogger("pool log");
-        log.setLevel(Level.ALL);
+        log(LogLevel.INFO, tag, msg, 0, null, null, null, null);
+    }
+
+    public static void info(String tag, String format, Object arg) {
+        log(LogLevel.INFO, tag, format, 1, arg, null, null, null);
+    }
+
+    public static void info(String tag, String format, Object arg1, Object arg2) {
+        log(LogLevel.INFO, tag, format, 2, arg1, arg2, null, null);
+    }
+
+    public static void info(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        log(LogLevel.INFO, tag, format, 3, arg1, arg2, arg3, null);
+    }
+
+    public static void warn(String tag, String msg) {
+        log(LogLevel.WARN, tag, msg, 0, null, null, null, null);
+    }
+
+    public static void warn(String tag, String msg, Throwable t) {
+        log(LogLevel.WARN, tag, msg, 0, null, null, null, t);
+    }
+
+    public static void error(String tag, String msg, Throwable t) {
+        log(LogLevel.ERROR, tag, msg, 0, null, null, null, t);
+    }
+
+    /**
+     * 把日志写入环形缓冲区
+     * 没有args时msg按原样输出，有args时msg作为{@link String#format(String, Object...)}的格式串
+     */
+    private static void log(LogLevel l, String tag, String msg, int argNum, Object arg1, Object arg2, Object arg3, Throwable t) {
+        if (!isEnabled(l)) {
+            return;
+        }
+        long pos;
+        LogEvent e;
+        for (; ; ) {
+            pos = tail.get();
+            int index = (int) (pos & MASK);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    e = events[index];
+                    break;
+                }
+            } else if (diff < 0) {
+                //缓冲区已满，丢弃日志
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        Thread current = Thread.currentThread();
+        e.time = System.currentTimeMillis();
+        e.threadName = current.getName();
+        e.level = l;
+        e.tag = tag;
+        e.msg = msg;
+        e.arg1 = arg1;
+        e.arg2 = arg2;
+        e.arg3 = arg3;
+        e.argNum = argNum;
+        e.thrown = t;
+        sequences.set((int) (pos & MASK), pos + 1);
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * 后台线程的主循环：取出日志，格式化后写入文件
+     */
+    private static void drainLoop() {
+        for (; ; ) {
+            int count;
+            try {
+                count = drain();
+            } catch (Throwable e) {
+                //写出失败时后台线程不能退出，否则之后的日志都会被丢弃
+                e.printStackTrace();
+                count = 0;
+            }
+            if (count == 0) {
+                sleeping = true;
+                //休眠前再检查一次，防止错过刚写入的日志
+                if (!hasPending()) {
+                    LockSupport.parkNanos(100_000_000L);
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    /**
+     * 判断缓冲区中是否有未写出的日志
+     *
+     * @return 是否有未写出的日志
+     */
+    private static boolean hasPending() {
+        return sequences.get((int) (head & MASK)) == head + 1;
+    }
+
+    /**
+     * 写出缓冲区中所有日志
+     *
+     * @return 写出的日志数
+     */
+    private static int drain() {
+        drainLock.lock();
+        try {
+            return drainLocked();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private static int drainLocked() {
+        int count = 0;
+        while (hasPending()) {
+            int index = (int) (head & MASK);
+            LogEvent e = events[index];
+            //先复制出来并释放位置，格式化或写出失败时也不会占住缓冲区
+            draining.copyFrom(e);
+            e.clear();
+            sequences.set(index, head + BUFFER_SIZE);
+            head++;
+            count++;
+            try {
+                write(draining.format(), draining.thrown);
+            } catch (RuntimeException ex) {
+                //参数的toString、格式串或者异常的getMessage出错时只丢弃这一条
+                write("[" + new Date() + "][" + LogLevel.WARN + "] LogUtil failed to write a log record of "
+                        + draining.tag + ": " + ex.getClass().getName(), null);
+            } finally {
+                draining.clear();
+            }
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            write("[" + new Date() + "][" + LogLevel.WARN + "] LogUtil " + lost + " log records dropped, buffer is full", null);
+        }
+        if (count > 0 && out != null) {
+            out.flush();
+        }
+        return count;
+    }
+
+    /**
+     * 立即写出缓冲区中所有日志
+     */
+    public static void flush() {
+        drain();
+    }
+
+    /**
+     * 写入日志文件，文件打不开时输出到标准错误
+     */
+    private static void write(String line, Throwable t) {
+        if (out == null) {
+            try {
+                Writer w = new OutputStreamWriter(new FileOutputStream(LOG_FILE, true), StandardCharsets.UTF_8);
+                out = new PrintWriter(w);
+            } catch (IOException e) {
+                out = new PrintWriter(System.err);
+            }
+        }
+        out.println(line);
+        if (t != null) {
+            t.printStackTrace(out);
+        }
+    }
+
+    private static LogLevel parseLevel(String name) {
+        if (name == null) {
+            return LogLevel.INFO;
+        }
         try {
-            fileHandler.setEncoding("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+            return LogLevel.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return LogLevel.INFO;
         }
-        fileHandler.setLevel(Level.ALL);
-        fileHandler.setFormatter(new LogFormatter());
-        log.addHandler(fileHandler);
-        log.info(tag + " " + msg);
     }
 
-    static class LogFormatter extends Formatter {
-        @Override
-        public String format(LogRecord record) {
-            Date date = new Date();
-            String sDate = date.toString();
-            return "[" + sDate + "]" + "[" + record.getThreadID() + "]" + "[" + record.getLevel() + "]"
-                    + record.getClass() + record.getMessage() + "\n";
+    /**
+     * 环形缓冲区中的日志事件，预先分配，反复使用
+     */
+    static class LogEvent {
+        long time;
+        String threadName;
+        LogLevel level;
+        String tag;
+        String msg;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        int argNum;
+        Throwable thrown;
+
+        String format() {
+            String text;
+            switch (argNum) {
+                case 0:
+                    text = msg;
+                    break;
+                case 1:
+                    text = String.format(msg, arg1);
+                    break;
+                case 2:
+                    text = String.format(msg, arg1, arg2);
+                    break;
+                default:
+                    text = String.format(msg, arg1, arg2, arg3);
+                    break;
+            }
+            return "[" + new Date(time) + "]" + "[" + threadName + "]" + "[" + level + "]" + tag + " " + text;
+        }
+
+        void copyFrom(LogEvent e) {
+            time = e.time;
+            threadName = e.threadName;
+            level = e.level;
+            tag = e.tag;
+            msg = e.msg;
+            arg1 = e.arg1;
+            arg2 = e.arg2;
+            arg3 = e.arg3;
+            argNum = e.argNum;
+            thrown = e.thrown;
+        }
 
+        void clear() {
+            threadName = null;
+            tag = null;
+            msg = null;
+            arg1 = null;
+            arg2 = null;
+            arg3 = null;
+            thrown = null;
         }
     }
 
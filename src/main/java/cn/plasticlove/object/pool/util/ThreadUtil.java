@@ -0,0 +1,90 @@
+package cn.plasticlove.object.pool.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程相关的工具
+ * 对象池以Java 8为目标编译，虚拟线程相关的方法通过反射调用，在JDK 21以下直接返回false；
+ * 对象池的后台线程都是守护线程，通过这里创建，不会阻止JVM退出
+ *
+ * @author luka-seu
+ * @version 1.0
+ **/
+
+public class ThreadUtil {
+    /**
+     * 后台线程池的线程空闲多久后退出
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+    /**
+     * JDK 21的{@code Thread#isVirtual()}，低版本为null
+     */
+    private static final Method IS_VIRTUAL = findIsVirtual();
+
+    private ThreadUtil() {
+    }
+
+    /**
+     * 判断线程是否是虚拟线程
+     *
+     * @param thread 线程
+     * @return 是否是虚拟线程，JDK 21以下总是返回false
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 创建守护线程的线程工厂
+     *
+     * @param name 线程名前缀，线程名为前缀加上从1开始的序号
+     * @return 线程工厂
+     */
+    public static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadNum = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + threadNum.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * 创建固定线程数的守护线程池
+     * 任务队列不限长度，线程空闲一段时间后退出，有新任务时再创建
+     *
+     * @param name    线程名前缀
+     * @param threads 线程数
+     * @return 线程池
+     */
+    public static ThreadPoolExecutor newDaemonExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemonThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static Method findIsVirtual() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}